@@ -0,0 +1,186 @@
+package com.danielremsburg.archinex.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact per-file access history used to warm the cache after a restart. Each file has one
+ * exponentially decaying score: every access adds one, and the score halves every half-life, so
+ * it reflects both how often and how recently the file was read. Only the highest-scoring
+ * {@code maxEntries} files are kept.
+ */
+public class AccessStats {
+
+    private static final int MAGIC = 0x41584153; // "AXAS"
+    private static final int VERSION = 1;
+
+    private static final class Entry {
+        double score;
+        long lastAccess; // epoch millis, so scores survive a restart
+
+        Entry(double score, long lastAccess) {
+            this.score = score;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final int maxEntries;
+    private final double halfLifeMillis;
+    private final ConcurrentMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock trimLock = new ReentrantLock();
+
+    public AccessStats(int maxEntries, long halfLifeMillis) {
+        if (maxEntries <= 0 || halfLifeMillis <= 0) {
+            throw new IllegalArgumentException("Access stats size and half-life must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.halfLifeMillis = halfLifeMillis;
+    }
+
+    public void record(UUID uuid) {
+        long now = System.currentTimeMillis();
+        entries.compute(uuid, (key, entry) -> {
+            if (entry == null) {
+                return new Entry(1.0, now);
+            }
+            synchronized (entry) {
+                entry.score = decayed(entry, now) + 1.0;
+                entry.lastAccess = now;
+            }
+            return entry;
+        });
+        // Trim in bulk once a quarter over the limit, so most records stay lock-free
+        if (entries.size() > maxEntries + maxEntries / 4 && trimLock.tryLock()) {
+            try {
+                trim(now);
+            } finally {
+                trimLock.unlock();
+            }
+        }
+    }
+
+    public void remove(UUID uuid) {
+        entries.remove(uuid);
+    }
+
+    /** Files ordered from the highest current score down, at most {@code limit} of them. */
+    public List<UUID> hottest(int limit) {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<UUID, Double>> scored = new ArrayList<>(entries.size());
+        entries.forEach((uuid, entry) -> scored.add(Map.entry(uuid, score(entry, now))));
+        scored.sort(Map.Entry.<UUID, Double>comparingByValue().reversed());
+        List<UUID> result = new ArrayList<>(Math.min(limit, scored.size()));
+        for (int i = 0; i < scored.size() && i < limit; i++) {
+            result.add(scored.get(i).getKey());
+        }
+        return result;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void trim(long now) {
+        List<Map.Entry<UUID, Double>> scored = new ArrayList<>(entries.size());
+        entries.forEach((uuid, entry) -> scored.add(Map.entry(uuid, score(entry, now))));
+        if (scored.size() <= maxEntries) {
+            return;
+        }
+        scored.sort(Map.Entry.comparingByValue(Comparator.naturalOrder()));
+        for (int i = 0; i < scored.size() - maxEntries; i++) {
+            entries.remove(scored.get(i).getKey());
+        }
+    }
+
+    private double score(Entry entry, long now) {
+        synchronized (entry) {
+            return decayed(entry, now);
+        }
+    }
+
+    private double decayed(Entry entry, long now) {
+        long age = Math.max(0, now - entry.lastAccess);
+        return entry.score * Math.pow(0.5, age / halfLifeMillis);
+    }
+
+    /** Writes the stats to a temporary file and renames it over {@code file}. */
+    public void save(Path file) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Map<UUID, Entry> snapshot = new HashMap<>(entries.size() * 2);
+        entries.forEach((uuid, entry) -> {
+            synchronized (entry) {
+                snapshot.put(uuid, new Entry(entry.score, entry.lastAccess));
+            }
+        });
+        try (OutputStream fileOut = Files.newOutputStream(tempFile)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fileOut), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<UUID, Entry> row : snapshot.entrySet()) {
+                out.writeLong(row.getKey().getMostSignificantBits());
+                out.writeLong(row.getKey().getLeastSignificantBits());
+                out.writeDouble(row.getValue().score);
+                out.writeLong(row.getValue().lastAccess);
+            }
+            out.flush();
+            new DataOutputStream(fileOut).writeInt((int) crc.getValue());
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Merges stats saved by {@link #save}; returns the number of entries read. */
+    public int load(Path file) throws IOException {
+        try (InputStream fileIn = new BufferedInputStream(Files.newInputStream(file))) {
+            CRC32 crc = new CRC32();
+            DataInputStream in = new DataInputStream(new CheckedInputStream(fileIn, crc));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an access stats file: " + file);
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Corrupt access stats file: " + file);
+            }
+            Map<UUID, Entry> rows = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                rows.put(uuid, new Entry(in.readDouble(), in.readLong()));
+            }
+            int expected = (int) crc.getValue();
+            if (new DataInputStream(fileIn).readInt() != expected) {
+                throw new IOException("Access stats checksum mismatch: " + file);
+            }
+            rows.forEach(entries::putIfAbsent); // Accesses recorded since startup win
+            if (entries.size() > maxEntries) {
+                trimLock.lock();
+                try {
+                    trim(System.currentTimeMillis());
+                } finally {
+                    trimLock.unlock();
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.danielremsburg.archinex.cache;
+
+/**
+ * Point-in-time counters of the planner's cache admission decisions, for tuning
+ * {@link CacheAdmissionPolicy} per deployment.
+ */
+public final class AdmissionStats {
+
+    private final long storeAdmitted;
+    private final long storeBypassed;
+    private final long retrieveAdmitted;
+    private final long retrieveDeferred;
+    private final long prefetchAdmitted;
+    private final long rejectedTooLarge;
+    private final long rejectedBytes;
+
+    public AdmissionStats(long storeAdmitted, long storeBypassed, long retrieveAdmitted,
+                          long retrieveDeferred, long prefetchAdmitted, long rejectedTooLarge, long rejectedBytes) {
+        this.storeAdmitted = storeAdmitted;
+        this.storeBypassed = storeBypassed;
+        this.retrieveAdmitted = retrieveAdmitted;
+        this.retrieveDeferred = retrieveDeferred;
+        this.prefetchAdmitted = prefetchAdmitted;
+        this.rejectedTooLarge = rejectedTooLarge;
+        this.rejectedBytes = rejectedBytes;
+    }
+
+    /** Stored files written through to the cache. */
+    public long getStoreAdmitted() {
+        return storeAdmitted;
+    }
+
+    /** Stored files kept out of the cache by write-around. */
+    public long getStoreBypassed() {
+        return storeBypassed;
+    }
+
+    /** Retrieved files put in the cache. */
+    public long getRetrieveAdmitted() {
+        return retrieveAdmitted;
+    }
+
+    /** Retrieved files not cached because they had not yet been read often enough. */
+    public long getRetrieveDeferred() {
+        return retrieveDeferred;
+    }
+
+    /** Files put in the cache by startup warmup or sibling prefetch. */
+    public long getPrefetchAdmitted() {
+        return prefetchAdmitted;
+    }
+
+    /** Files, whether stored, retrieved or prefetched, over the maximum cacheable size. */
+    public long getRejectedTooLarge() {
+        return rejectedTooLarge;
+    }
+
+    public long getRejectedBytes() {
+        return rejectedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "AdmissionStats{" +
+                "storeAdmitted=" + storeAdmitted +
+                ", storeBypassed=" + storeBypassed +
+                ", retrieveAdmitted=" + retrieveAdmitted +
+                ", retrieveDeferred=" + retrieveDeferred +
+                ", prefetchAdmitted=" + prefetchAdmitted +
+                ", rejectedTooLarge=" + rejectedTooLarge +
+                ", rejectedBytes=" + rejectedBytes +
+                '}';
+    }
+}
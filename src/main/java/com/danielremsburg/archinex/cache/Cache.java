@@ -1,5 +1,8 @@
 package com.danielremsburg.archinex.cache;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 public interface Cache {
@@ -10,4 +13,27 @@ public interface Cache {
 
     void remove(UUID uuid);
 
+    /**
+     * Looks up several entries at once; missing entries are absent from the result. Remote
+     * caches override the batch operations to use a single round trip.
+     */
+    default Map<UUID, byte[]> getAll(Collection<UUID> uuids) {
+        Map<UUID, byte[]> found = new HashMap<>();
+        for (UUID uuid : uuids) {
+            byte[] data = get(uuid);
+            if (data != null) {
+                found.put(uuid, data);
+            }
+        }
+        return found;
+    }
+
+    default void putAll(Map<UUID, byte[]> entries) {
+        entries.forEach(this::put);
+    }
+
+    default void removeAll(Collection<UUID> uuids) {
+        uuids.forEach(this::remove);
+    }
+
 }
\ No newline at end of file
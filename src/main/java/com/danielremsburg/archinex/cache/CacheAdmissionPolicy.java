@@ -0,0 +1,124 @@
+package com.danielremsburg.archinex.cache;
+
+import com.danielremsburg.archinex.config.ConfigSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which files the planner puts in the cache, in front of whatever eviction the cache
+ * itself does. Files over the size limit are never cached. Newly stored files are cached only in
+ * write-through mode. Retrieved files are cached once they have missed {@code minAccesses} times,
+ * counted approximately in a frequency sketch, so one-off reads do not churn the cache. Prefetched
+ * files are subject only to the size limit.
+ */
+public class CacheAdmissionPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheAdmissionPolicy.class);
+
+    private static final int TRACKED_KEYS = 1 << 16; // Sketch width; older counts fade as it resets
+
+    private volatile boolean writeThrough;
+    private volatile long maxObjectBytes;
+    private volatile int minAccesses;
+    private final FrequencySketch accesses = new FrequencySketch();
+
+    private final LongAdder storeAdmitted = new LongAdder();
+    private final LongAdder storeBypassed = new LongAdder();
+    private final LongAdder retrieveAdmitted = new LongAdder();
+    private final LongAdder retrieveDeferred = new LongAdder();
+    private final LongAdder prefetchAdmitted = new LongAdder();
+    private final LongAdder rejectedTooLarge = new LongAdder();
+    private final LongAdder rejectedBytes = new LongAdder();
+
+    public CacheAdmissionPolicy(ConfigSnapshot config) {
+        this(config.isCacheWriteThrough(), config.getCacheMaxObjectBytes(), config.getCacheMinAccesses());
+    }
+
+    /**
+     * @param maxObjectBytes largest file ever cached; 0 or less for no limit
+     * @param minAccesses    cache misses needed before a retrieved file is cached; 1 caches on first read
+     */
+    public CacheAdmissionPolicy(boolean writeThrough, long maxObjectBytes, int minAccesses) {
+        reconfigure(writeThrough, maxObjectBytes, minAccesses);
+    }
+
+    /** Applies new settings; access counts gathered so far are kept. */
+    public void reconfigure(boolean writeThrough, long maxObjectBytes, int minAccesses) {
+        // The sketch's 4-bit counters saturate at 15
+        if (minAccesses < 1 || minAccesses > 15) {
+            throw new IllegalArgumentException("cache.admission.minAccesses must be between 1 and 15: " + minAccesses);
+        }
+        if (minAccesses > 1) {
+            synchronized (accesses) {
+                accesses.ensureCapacity(TRACKED_KEYS);
+            }
+        }
+        this.writeThrough = writeThrough;
+        this.maxObjectBytes = maxObjectBytes > 0 ? maxObjectBytes : Long.MAX_VALUE;
+        this.minAccesses = minAccesses;
+        logger.info("Cache admission: {}, max object size {} bytes, admit after {} access(es)",
+                writeThrough ? "write-through" : "write-around", maxObjectBytes, minAccesses);
+    }
+
+    public boolean admitOnStore(UUID uuid, long size) {
+        if (tooLarge(size)) {
+            return false;
+        }
+        if (!writeThrough) {
+            storeBypassed.increment();
+            return false;
+        }
+        storeAdmitted.increment();
+        return true;
+    }
+
+    /** Called for each cache miss that was served from storage. */
+    public boolean admitOnRetrieve(UUID uuid, long size) {
+        if (tooLarge(size)) {
+            return false;
+        }
+        int minAccesses = this.minAccesses;
+        if (minAccesses > 1) {
+            int frequency;
+            synchronized (accesses) {
+                accesses.increment(uuid);
+                frequency = accesses.frequency(uuid);
+            }
+            if (frequency < minAccesses) {
+                retrieveDeferred.increment();
+                return false;
+            }
+        }
+        retrieveAdmitted.increment();
+        return true;
+    }
+
+    /**
+     * Called for files loaded ahead of demand (startup warmup, sibling prefetch). Those are
+     * chosen from access history, so only the size limit applies.
+     */
+    public boolean admitOnPrefetch(UUID uuid, long size) {
+        if (tooLarge(size)) {
+            return false;
+        }
+        prefetchAdmitted.increment();
+        return true;
+    }
+
+    private boolean tooLarge(long size) {
+        if (size <= maxObjectBytes) {
+            return false;
+        }
+        rejectedTooLarge.increment();
+        rejectedBytes.add(size);
+        return true;
+    }
+
+    public AdmissionStats stats() {
+        return new AdmissionStats(storeAdmitted.sum(), storeBypassed.sum(), retrieveAdmitted.sum(),
+                retrieveDeferred.sum(), prefetchAdmitted.sum(), rejectedTooLarge.sum(), rejectedBytes.sum());
+    }
+}
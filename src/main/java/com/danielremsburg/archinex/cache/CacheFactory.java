@@ -0,0 +1,37 @@
+package com.danielremsburg.archinex.cache;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+
+public class CacheFactory {
+
+    public static Cache createCache(ArchinexConfig config) {
+        String cacheType = config.getStringOrDefault("cache.type", "memory");
+
+        if ("tiered".equalsIgnoreCase(cacheType)) {
+            // Memory (or off-heap) first level over the persistent disk cache
+            Cache firstLevel = createLevel(config, config.getStringOrDefault("cache.tiered.firstLevel", "memory"));
+            return new TieredCache(firstLevel, new DiskCache(config));
+        }
+        if ("near".equalsIgnoreCase(cacheType)) {
+            return new NearCache(config); // In-process tier over a shared Redis
+        }
+        return createLevel(config, cacheType);
+    }
+
+    private static Cache createLevel(ArchinexConfig config, String cacheType) {
+        if ("disk".equalsIgnoreCase(cacheType)) {
+            return new DiskCache(config);
+        }
+        if ("offheap".equalsIgnoreCase(cacheType)) {
+            return new OffHeapCache(config); // Payloads in direct memory, outside the GC heap
+        }
+        if ("redis".equalsIgnoreCase(cacheType)) {
+            return new RedisCache(config);
+        }
+        if ("memory".equalsIgnoreCase(cacheType)) {
+            return new MemoryCache(config);
+        }
+
+        throw new IllegalArgumentException("Unknown cache type: " + cacheType);
+    }
+}
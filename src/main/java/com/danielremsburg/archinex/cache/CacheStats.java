@@ -0,0 +1,66 @@
+package com.danielremsburg.archinex.cache;
+
+/**
+ * Point-in-time cache counters. Rejections are entries the admission policy declined to keep;
+ * evictions are entries pushed out to make room.
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long evictionBytes;
+    private final long rejectionCount;
+    private final long expirationCount;
+
+    public CacheStats(long hitCount, long missCount, long evictionCount, long evictionBytes,
+                      long rejectionCount, long expirationCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.evictionBytes = evictionBytes;
+        this.rejectionCount = rejectionCount;
+        this.expirationCount = expirationCount;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getEvictionBytes() {
+        return evictionBytes;
+    }
+
+    public long getRejectionCount() {
+        return rejectionCount;
+    }
+
+    public long getExpirationCount() {
+        return expirationCount;
+    }
+
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                ", evictionBytes=" + evictionBytes +
+                ", rejectionCount=" + rejectionCount +
+                ", expirationCount=" + expirationCount +
+                '}';
+    }
+}
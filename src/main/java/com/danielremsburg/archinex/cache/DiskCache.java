@@ -0,0 +1,513 @@
+package com.danielremsburg.archinex.cache;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent local-disk cache. Payloads are appended to memory-mapped segment files
+ * ({@code segment-<id>.dat}) and located through a compact open-addressing index of primitive
+ * arrays. When the cache grows past its byte limit the oldest segment is dropped as a whole;
+ * entries read since they were written get a second chance and are copied forward first, so the
+ * working set survives while one-off entries age out.
+ *
+ * <p>Each record is {@code [magic][crc32][uuid][length][expiresAt][payload]}; a length of -1
+ * marks a removal. On startup every segment is scanned in order to rebuild the index, stopping at
+ * the first torn or corrupt record.
+ *
+ * <p>A dropped segment's file is still mapped, and a mapping cannot be released on demand, so
+ * the file is kept as a spare ({@code spare-<id>.dat}) and reused for the next new segment
+ * instead of being deleted. The checksum covers the segment id, so records left over from the
+ * file's previous use fail it and are never replayed.
+ */
+public class DiskCache implements Cache, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskCache.class);
+
+    private static final int MAGIC = 0x41584443; // "AXDC"
+    private static final int HEADER_SIZE = 36;
+    private static final int TOMBSTONE = -1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String SPARE_PREFIX = "spare-";
+    private static final int MAX_SPARES = 2;
+
+    private static final class Segment {
+        final int id;
+        final Path file;
+        final MappedByteBuffer buffer;
+        int writePosition;
+        boolean torn;
+
+        Segment(int id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final long maximumBytes;
+    private final int segmentSize;
+    private final long ttlMillis;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final Deque<Segment> spares = new ArrayDeque<>();
+    private final Index index = new Index();
+    private Segment active;
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder evictedBytes = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public DiskCache(ArchinexConfig config) {
+        this(Paths.get(config.getDiskCachePath()),
+                config.getLongOrDefault("cache.disk.maxSize", 10240L) * 1024L * 1024L,
+                config.getIntOrDefault("cache.disk.segmentSizeMB", 64) * 1024 * 1024,
+                config.getLongOrDefault("cache.ttlSeconds", 0L) * 1000L);
+    }
+
+    public DiskCache(Path directory, long maximumBytes, int segmentSize, long ttlMillis) {
+        if (segmentSize <= HEADER_SIZE || maximumBytes < segmentSize) {
+            throw new IllegalArgumentException("Disk cache size " + maximumBytes + " must hold at least one segment of " + segmentSize + " bytes");
+        }
+        this.directory = directory;
+        this.maximumBytes = maximumBytes;
+        this.segmentSize = segmentSize;
+        this.ttlMillis = ttlMillis;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new CacheException("Failed to open disk cache in " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void recover() throws IOException {
+        long started = System.nanoTime();
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    ids.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unexpected file in disk cache directory: {}", file);
+                }
+            }
+        }
+        ids.sort(null);
+        // Spares left by the last run are not mapped yet, so they can simply go
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SPARE_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        long now = System.currentTimeMillis();
+        for (int id : ids) {
+            Path file = segmentFile(id);
+            Segment segment = new Segment(id, file, map(file, Math.max(Files.size(file), HEADER_SIZE)));
+            segments.put(id, segment);
+            replay(segment, now);
+            totalBytes += segment.writePosition;
+        }
+        // Keep appending to the newest segment only if it is intact and has the current segment size.
+        // Appending after a torn record could make older records behind it readable again.
+        Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        active = last != null && !last.torn && last.buffer.capacity() == segmentSize ? last
+                : openSegment(last == null ? 0 : last.id + 1);
+        logger.info("Disk cache recovered {} entries from {} segments ({} MB) in {} ms", index.size(), segments.size(),
+                totalBytes / (1024 * 1024), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void replay(Segment segment, long now) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity() && buffer.getInt(position) == MAGIC) {
+            int length = buffer.getInt(position + 24);
+            int recordSize = HEADER_SIZE + Math.max(length, 0);
+            if (length < TOMBSTONE || position + recordSize > buffer.capacity()
+                    || buffer.getInt(position + 4) != checksum(segment.id, buffer, position, length)) {
+                segment.torn = true; // Torn write from a crash; everything after it is unreachable
+                break;
+            }
+            long msb = buffer.getLong(position + 8);
+            long lsb = buffer.getLong(position + 16);
+            long expiresAt = buffer.getLong(position + 28);
+            if (length == TOMBSTONE || (expiresAt != 0 && expiresAt <= now)) {
+                index.remove(msb, lsb);
+            } else {
+                index.put(msb, lsb, segment.id, position, length);
+            }
+            position += recordSize;
+        }
+        segment.writePosition = position;
+    }
+
+    @Override
+    public byte[] get(UUID uuid) {
+        boolean expired = false;
+        lock.readLock().lock();
+        try {
+            int slot = index.find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (slot >= 0) {
+                Segment segment = segments.get(index.segments[slot]);
+                int position = index.offsets[slot];
+                long expiresAt = segment.buffer.getLong(position + 28);
+                if (expiresAt == 0 || expiresAt > System.currentTimeMillis()) {
+                    index.referenced[slot] = true;
+                    byte[] data = new byte[index.lengths[slot]];
+                    segment.buffer.get(position + HEADER_SIZE, data);
+                    hits.increment();
+                    logger.debug("Cache hit for UUID: {}", uuid);
+                    return data;
+                }
+                expired = true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        misses.increment();
+        if (expired) {
+            expire(uuid);
+        }
+        logger.debug("Cache miss for UUID: {}", uuid);
+        return null;
+    }
+
+    @Override
+    public void put(UUID uuid, byte[] data) {
+        if (HEADER_SIZE + (long) data.length > segmentSize) {
+            rejections.increment(); // Never fits in a segment
+            return;
+        }
+        long expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0;
+        lock.writeLock().lock();
+        try {
+            append(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), data, expiresAt);
+            evictIfNeeded();
+        } catch (IOException e) {
+            logger.error("Error writing to disk cache: {}", e.getMessage(), e);
+            throw new CacheException("Error writing to disk cache: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Added to cache: {}", uuid);
+    }
+
+    @Override
+    public void remove(UUID uuid) {
+        lock.writeLock().lock();
+        try {
+            long msb = uuid.getMostSignificantBits();
+            long lsb = uuid.getLeastSignificantBits();
+            if (index.find(msb, lsb) >= 0) {
+                index.remove(msb, lsb);
+                append(msb, lsb, null, 0); // Tombstone, so a restart does not bring the entry back
+            }
+        } catch (IOException e) {
+            logger.error("Error removing from disk cache: {}", e.getMessage(), e);
+            throw new CacheException("Error removing from disk cache: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Removed from cache: {}", uuid);
+    }
+
+    // Drops the index entry; the record itself ages out with its segment and is skipped on replay
+    private void expire(UUID uuid) {
+        lock.writeLock().lock();
+        try {
+            if (index.find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) >= 0) {
+                index.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+                expirations.increment();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), evictedBytes.sum(),
+                rejections.sum(), expirations.sum());
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Bytes written to live segments, including superseded records not yet dropped
+    public long diskBytes() {
+        lock.readLock().lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            active.buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(long msb, long lsb, byte[] data, long expiresAt) throws IOException {
+        int length = data == null ? TOMBSTONE : data.length;
+        int recordSize = HEADER_SIZE + Math.max(length, 0);
+        if (active.writePosition + recordSize > active.buffer.capacity()) {
+            active.buffer.force();
+            active = openSegment(active.id + 1);
+        }
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.writePosition;
+        buffer.putLong(position + 8, msb);
+        buffer.putLong(position + 16, lsb);
+        buffer.putInt(position + 24, length);
+        buffer.putLong(position + 28, expiresAt);
+        if (data != null) {
+            buffer.put(position + HEADER_SIZE, data);
+        }
+        buffer.putInt(position + 4, checksum(active.id, buffer, position, length));
+        buffer.putInt(position, MAGIC); // Last, so a torn record never looks complete
+        active.writePosition += recordSize;
+        totalBytes += recordSize;
+        if (data != null) {
+            index.put(msb, lsb, active.id, position, length);
+        }
+    }
+
+    private void evictIfNeeded() throws IOException {
+        while (totalBytes > maximumBytes && segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active) {
+                return;
+            }
+            // Second chance: entries read since they were written are copied to the active segment
+            for (int slot : index.slotsIn(oldest.id)) {
+                long msb = index.msbs[slot];
+                long lsb = index.lsbs[slot];
+                int length = index.lengths[slot];
+                if (index.referenced[slot]) {
+                    byte[] data = new byte[length];
+                    oldest.buffer.get(index.offsets[slot] + HEADER_SIZE, data);
+                    long expiresAt = oldest.buffer.getLong(index.offsets[slot] + 28);
+                    append(msb, lsb, data, expiresAt); // Resets the referenced bit
+                } else {
+                    index.remove(msb, lsb);
+                    evictions.increment();
+                    evictedBytes.add(length);
+                }
+            }
+            segments.remove(oldest.id);
+            totalBytes -= oldest.writePosition;
+            retire(oldest);
+        }
+    }
+
+    private void retire(Segment segment) throws IOException {
+        if (segment.buffer.capacity() == segmentSize && spares.size() < MAX_SPARES) {
+            Path spare = directory.resolve(SPARE_PREFIX + segment.id + SEGMENT_SUFFIX);
+            Files.move(segment.file, spare, StandardCopyOption.ATOMIC_MOVE);
+            spares.add(new Segment(segment.id, spare, segment.buffer));
+        } else {
+            // Left over from a different segment size; the space returns when the mapping is collected
+            Files.deleteIfExists(segment.file);
+        }
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Path file = segmentFile(id);
+        Segment spare = spares.poll();
+        Segment segment;
+        if (spare != null) {
+            Files.move(spare.file, file, StandardCopyOption.ATOMIC_MOVE);
+            spare.buffer.putInt(0, 0); // Replay stops at once rather than checking a stale record
+            segment = new Segment(id, file, spare.buffer);
+        } else {
+            segment = new Segment(id, file, map(file, segmentSize));
+        }
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private Path segmentFile(int id) {
+        return directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+    }
+
+    // Covers the segment id and everything after the checksum field: key, length, expiry and payload
+    private static int checksum(int segmentId, MappedByteBuffer buffer, int position, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(4).putInt(0, segmentId));
+        crc.update(buffer.slice(position + 8, HEADER_SIZE - 8 + Math.max(length, 0)));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * UUID to record location map in parallel primitive arrays with linear probing, about 30
+     * bytes per entry instead of several objects.
+     */
+    private static final class Index {
+        private static final int FREE = -1;
+        private static final int DELETED = -2;
+
+        long[] msbs = new long[0];
+        long[] lsbs = new long[0];
+        int[] segments = new int[0];
+        int[] offsets = new int[0];
+        int[] lengths = new int[0];
+        boolean[] referenced = new boolean[0];
+        private int size;
+        private int used; // Including deleted slots
+
+        Index() {
+            resize(1024);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int find(long msb, long lsb) {
+            int mask = segments.length - 1;
+            for (int slot = hash(msb, lsb) & mask; ; slot = (slot + 1) & mask) {
+                if (segments[slot] == FREE) {
+                    return -1;
+                }
+                if (segments[slot] != DELETED && msbs[slot] == msb && lsbs[slot] == lsb) {
+                    return slot;
+                }
+            }
+        }
+
+        void put(long msb, long lsb, int segment, int offset, int length) {
+            int slot = find(msb, lsb);
+            if (slot < 0) {
+                if ((used + 1) * 2 > segments.length) {
+                    resize(size + 1 > segments.length / 4 ? segments.length * 2 : segments.length);
+                }
+                int mask = segments.length - 1;
+                slot = hash(msb, lsb) & mask;
+                while (segments[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                if (segments[slot] == FREE) {
+                    used++;
+                }
+                size++;
+                msbs[slot] = msb;
+                lsbs[slot] = lsb;
+            }
+            segments[slot] = segment;
+            offsets[slot] = offset;
+            lengths[slot] = length;
+            referenced[slot] = false;
+        }
+
+        void remove(long msb, long lsb) {
+            int slot = find(msb, lsb);
+            if (slot >= 0) {
+                segments[slot] = DELETED;
+                referenced[slot] = false;
+                size--;
+            }
+        }
+
+        int[] slotsIn(int segment) {
+            int[] slots = new int[16];
+            int count = 0;
+            for (int slot = 0; slot < segments.length; slot++) {
+                if (segments[slot] == segment) {
+                    if (count == slots.length) {
+                        slots = Arrays.copyOf(slots, count * 2);
+                    }
+                    slots[count++] = slot;
+                }
+            }
+            return Arrays.copyOf(slots, count);
+        }
+
+        private void resize(int capacity) {
+            long[] oldMsbs = msbs;
+            long[] oldLsbs = lsbs;
+            int[] oldSegments = segments;
+            int[] oldOffsets = offsets;
+            int[] oldLengths = lengths;
+            boolean[] oldReferenced = referenced;
+            msbs = new long[capacity];
+            lsbs = new long[capacity];
+            segments = new int[capacity];
+            offsets = new int[capacity];
+            lengths = new int[capacity];
+            referenced = new boolean[capacity];
+            Arrays.fill(segments, FREE);
+            used = size;
+            int mask = capacity - 1;
+            for (int old = 0; old < oldSegments.length; old++) {
+                if (oldSegments[old] >= 0) {
+                    int slot = hash(oldMsbs[old], oldLsbs[old]) & mask;
+                    while (segments[slot] != FREE) {
+                        slot = (slot + 1) & mask;
+                    }
+                    msbs[slot] = oldMsbs[old];
+                    lsbs[slot] = oldLsbs[old];
+                    segments[slot] = oldSegments[old];
+                    offsets[slot] = oldOffsets[old];
+                    lengths[slot] = oldLengths[old];
+                    referenced[slot] = oldReferenced[old];
+                }
+            }
+        }
+
+        private static int hash(long msb, long lsb) {
+            long h = msb ^ lsb;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return (int) h;
+        }
+    }
+}
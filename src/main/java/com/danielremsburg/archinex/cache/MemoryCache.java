@@ -4,42 +4,392 @@ import com.danielremsburg.archinex.config.ArchinexConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * In-process cache bounded by the total size of the cached byte arrays, evicting with W-TinyLFU:
+ * new entries land in a small LRU window, and an entry leaving the window only displaces the
+ * oldest entry of the main segmented LRU if a frequency sketch says it is accessed more often.
+ * One-off reads, such as a bulk scan, therefore cannot flush the frequently used entries.
+ *
+ * <p>Lookups never block: they read a concurrent map and record the access in a bounded buffer
+ * that is replayed into the eviction policy under a lock. When the buffer is full, accesses are
+ * dropped, which only makes the policy slightly less precise.
+ */
 public class MemoryCache implements Cache {
 
     private static final Logger logger = LoggerFactory.getLogger(MemoryCache.class);
-    private final Map<UUID, byte[]> cache = new HashMap<>();
-    private final int maxSize; // Maximum cache size in MB
+
+    private static final int ENTRY_OVERHEAD = 96; // Rough per-entry bytes for the node, key and map slot
+    private static final int READ_BUFFER_SIZE = 1024;
+    private static final int READ_DRAIN_THRESHOLD = 32;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int REMOVED = 3;
+
+    private static final class Node {
+        final UUID key;
+        final byte[] value;
+        final long weight;
+        final long expiresAt; // System.nanoTime() deadline, or 0 for no expiry
+
+        // Guarded by the policy lock
+        int queue = WINDOW;
+        Node prev;
+        Node next;
+
+        Node(UUID key, byte[] value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.weight = (long) value.length + ENTRY_OVERHEAD;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && now - expiresAt > 0;
+        }
+    }
+
+    // Intrusive doubly linked LRU list: head is the eldest
+    private static final class AccessOrder {
+        Node head;
+        Node tail;
+        long weight;
+
+        void add(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        void unlink(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToTail(Node node) {
+            if (node != tail) {
+                unlink(node);
+                add(node);
+            }
+        }
+    }
+
+    // Written under the policy lock; maximumWeight is also read without it
+    private volatile long maximumWeight;
+    private long windowMaximum;
+    private long protectedMaximum;
+    private final long ttlNanos;
+
+    private final ConcurrentMap<UUID, Node> data = new ConcurrentHashMap<>();
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final AccessOrder window = new AccessOrder();
+    private final AccessOrder probation = new AccessOrder();
+    private final AccessOrder protectedSegment = new AccessOrder();
+    private final FrequencySketch sketch = new FrequencySketch();
+
+    private final Queue<Node> readBuffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger readBufferSize = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder evictedBytes = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
 
     public MemoryCache(ArchinexConfig config) {
-        this.maxSize = config.getIntPropertyOrDefault("cache.maxSize", 1024); // Default 1GB
-        logger.info("MemoryCache initialized with max size: {} MB", maxSize);
+        this(config.snapshot().getCacheMaxBytes(),
+                config.getLongOrDefault("cache.ttlSeconds", 0L) * 1000L);
+    }
+
+    public MemoryCache(long maximumBytes, long ttlMillis) {
+        if (maximumBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maximumBytes);
+        }
+        setLimits(maximumBytes);
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        sketch.ensureCapacity(1024);
+        logger.info("MemoryCache initialized with max size: {} MB", maximumBytes / (1024 * 1024));
     }
 
     @Override
     public byte[] get(UUID uuid) {
-        byte[] data = cache.get(uuid);
-        if (data != null) {
-            logger.debug("Cache hit for UUID: {}", uuid);
-        } else {
+        Node node = data.get(uuid);
+        if (node == null) {
+            misses.increment();
             logger.debug("Cache miss for UUID: {}", uuid);
+            return null;
+        }
+        if (node.isExpired(System.nanoTime())) {
+            misses.increment();
+            expire(node);
+            logger.debug("Cache miss for UUID: {} (expired)", uuid);
+            return null;
         }
-        return data;
+        hits.increment();
+        recordRead(node);
+        logger.debug("Cache hit for UUID: {}", uuid);
+        return node.value;
     }
 
     @Override
     public void put(UUID uuid, byte[] data) {
-        // Implement a cache eviction policy if the cache size exceeds maxSize
-        cache.put(uuid, data);
+        Node node = new Node(uuid, data, ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0);
+        if (node.weight > maximumWeight) {
+            remove(uuid); // Never cacheable, but must not leave a stale older value behind
+            rejections.increment();
+            return;
+        }
+        policyLock.lock();
+        try {
+            drainReadBuffer();
+            Node previous = this.data.put(uuid, node);
+            if (previous != null) {
+                unlink(previous);
+            }
+            sketch.ensureCapacity(this.data.size());
+            sketch.increment(uuid);
+            window.add(node);
+            evict();
+        } finally {
+            policyLock.unlock();
+        }
         logger.debug("Added to cache: {}", uuid);
     }
 
     @Override
     public void remove(UUID uuid) {
-        cache.remove(uuid);
+        policyLock.lock();
+        try {
+            Node removed = data.remove(uuid);
+            if (removed != null) {
+                unlink(removed);
+            }
+        } finally {
+            policyLock.unlock();
+        }
         logger.debug("Removed from cache: {}", uuid);
     }
-}
\ No newline at end of file
+
+    public void clear() {
+        policyLock.lock();
+        try {
+            for (Node node : data.values()) {
+                unlink(node);
+            }
+            data.clear();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /** Changes the size limit, evicting at once if the cache is now over it. */
+    public void setMaximumBytes(long maximumBytes) {
+        if (maximumBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maximumBytes);
+        }
+        policyLock.lock();
+        try {
+            setLimits(maximumBytes);
+            drainReadBuffer();
+            evict();
+        } finally {
+            policyLock.unlock();
+        }
+        logger.info("MemoryCache max size changed to: {} MB", maximumBytes / (1024 * 1024));
+    }
+
+    private void setLimits(long maximumBytes) {
+        this.maximumWeight = maximumBytes;
+        // 1% admission window; the main space is 80% protected and 20% probation
+        this.windowMaximum = Math.max(1, maximumBytes / 100);
+        this.protectedMaximum = (long) ((maximumBytes - windowMaximum) * 0.8);
+    }
+
+    public long getMaximumBytes() {
+        return maximumWeight;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), evictedBytes.sum(),
+                rejections.sum(), expirations.sum());
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    // Bytes currently held, including the per-entry overhead estimate
+    public long weightedSize() {
+        policyLock.lock();
+        try {
+            return window.weight + probation.weight + protectedSegment.weight;
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void recordRead(Node node) {
+        if (readBufferSize.get() < READ_BUFFER_SIZE) {
+            readBuffer.offer(node);
+            readBufferSize.incrementAndGet();
+        }
+        if (readBufferSize.get() >= READ_DRAIN_THRESHOLD && policyLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+        Node node;
+        while ((node = readBuffer.poll()) != null) {
+            readBufferSize.decrementAndGet();
+            onAccess(node);
+        }
+    }
+
+    private void onAccess(Node node) {
+        sketch.increment(node.key);
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToTail(node);
+                break;
+            case PROBATION:
+                // A second hit promotes to protected, demoting protected's eldest if it overflows
+                probation.unlink(node);
+                node.queue = PROTECTED;
+                protectedSegment.add(node);
+                while (protectedSegment.weight > protectedMaximum && protectedSegment.head != node) {
+                    Node demoted = protectedSegment.head;
+                    protectedSegment.unlink(demoted);
+                    demoted.queue = PROBATION;
+                    probation.add(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedSegment.moveToTail(node);
+                break;
+            default:
+                break; // Removed since the read was buffered
+        }
+    }
+
+    private void evict() {
+        // Entries leaving the window become admission candidates at probation's tail
+        Node firstCandidate = null;
+        while (window.weight > windowMaximum && window.head != null) {
+            Node node = window.head;
+            window.unlink(node);
+            node.queue = PROBATION;
+            probation.add(node);
+            if (firstCandidate == null) {
+                firstCandidate = node;
+            }
+        }
+
+        while (window.weight + probation.weight + protectedSegment.weight > maximumWeight) {
+            Node victim = probation.head != null ? probation.head
+                    : protectedSegment.head != null ? protectedSegment.head : window.head;
+            Node candidate = firstCandidate;
+            if (candidate == null || candidate == victim) {
+                if (candidate != null) {
+                    firstCandidate = candidate.next;
+                }
+                evictEntry(victim, false);
+            } else if (admit(candidate.key, victim.key)) {
+                evictEntry(victim, false);
+            } else {
+                firstCandidate = candidate.next;
+                evictEntry(candidate, true);
+            }
+        }
+    }
+
+    // TinyLFU: keep the more frequently used of the two. A little randomness for warm candidates
+    // stops an attacker from pinning the victim by inflating its count.
+    private boolean admit(UUID candidateKey, UUID victimKey) {
+        int candidateFrequency = sketch.frequency(candidateKey);
+        int victimFrequency = sketch.frequency(victimKey);
+        if (candidateFrequency > victimFrequency) {
+            return true;
+        }
+        if (candidateFrequency <= 5) {
+            return false;
+        }
+        return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+    }
+
+    private void evictEntry(Node node, boolean rejected) {
+        if (data.remove(node.key, node)) {
+            unlink(node);
+            if (rejected) {
+                rejections.increment();
+            } else {
+                evictions.increment();
+                evictedBytes.add(node.value.length);
+            }
+        } else {
+            unlink(node);
+        }
+    }
+
+    private void expire(Node node) {
+        policyLock.lock();
+        try {
+            if (data.remove(node.key, node)) {
+                unlink(node);
+                expirations.increment();
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void unlink(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.unlink(node);
+                break;
+            case PROBATION:
+                probation.unlink(node);
+                break;
+            case PROTECTED:
+                protectedSegment.unlink(node);
+                break;
+            default:
+                return;
+        }
+        node.queue = REMOVED;
+    }
+}
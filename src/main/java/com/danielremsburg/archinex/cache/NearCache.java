@@ -0,0 +1,74 @@
+package com.danielremsburg.archinex.cache;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Small in-process cache in front of a shared {@link RedisCache}, so each daemon serves its
+ * hottest entries without a network round trip. Every local write or removal is broadcast over
+ * Redis pub/sub and evicts the entry from the other daemons' local tier. A short local TTL bounds
+ * staleness if a broadcast is missed.
+ */
+public class NearCache extends TieredCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearCache.class);
+
+    private final MemoryCache local;
+    private final RedisCache remote;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final RedisInvalidationListener listener;
+
+    public NearCache(ArchinexConfig config) {
+        this(new MemoryCache(config.getIntOrDefault("cache.near.maxSize", 64) * 1024L * 1024L,
+                        config.getLongOrDefault("cache.near.ttlSeconds", 60L) * 1000L),
+                new RedisCache(config));
+    }
+
+    public NearCache(MemoryCache local, RedisCache remote) {
+        super(local, remote);
+        this.local = local;
+        this.remote = remote;
+        this.listener = remote.listenForInvalidations(nodeId, local::remove, local::clear);
+        logger.info("NearCache initialized with node id {}", nodeId);
+    }
+
+    @Override
+    public void put(UUID uuid, byte[] data) {
+        super.put(uuid, data);
+        remote.publishInvalidation(nodeId, uuid);
+    }
+
+    @Override
+    public void remove(UUID uuid) {
+        super.remove(uuid);
+        remote.publishInvalidation(nodeId, uuid);
+    }
+
+    @Override
+    public void putAll(Map<UUID, byte[]> entries) {
+        super.putAll(entries);
+        remote.publishInvalidations(nodeId, entries.keySet());
+    }
+
+    @Override
+    public void removeAll(Collection<UUID> uuids) {
+        super.removeAll(uuids);
+        remote.publishInvalidations(nodeId, uuids);
+    }
+
+    public CacheStats localStats() {
+        return local.stats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        listener.close();
+        super.close();
+    }
+}
@@ -0,0 +1,506 @@
+package com.danielremsburg.archinex.cache;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Cache that keeps payloads outside the Java heap, so gigabytes of cached files add nothing to
+ * GC work. Memory is a fixed budget of direct-buffer pages. Each page in use is carved into equal
+ * chunks of one size class (classes grow by 25% up to a whole page); a payload is stored as whole
+ * pages plus one best-fit chunk for its tail, so internal waste is bounded by the tail.
+ *
+ * <p>Pages whose chunks are all free go back to a shared pool. When a class runs out of chunks
+ * and the pool is empty, classes holding more than a page of free chunks are compacted, moving
+ * live chunks out of their emptiest page so it can be reused by another class. Only then are
+ * entries evicted, in CLOCK (second chance) order.
+ *
+ * <p>{@link #get} returns a copy. {@link #read} hands out read-only views of the stored chunks
+ * instead, valid only until the callback returns.
+ */
+public class OffHeapCache implements Cache {
+
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapCache.class);
+
+    private static final int MIN_CHUNK_SIZE = 1024;
+    private static final double GROWTH_FACTOR = 1.25;
+
+    private static final class Page {
+        final int index;
+        final ByteBuffer buffer;
+        int sizeClass = -1;
+        int chunkSize;
+        int chunkCount;
+        int used;
+        int[] freeChunks;
+        int freeCount;
+        Node[] owners;
+        int[] ownerPositions; // Index of the chunk within its owner's chunk list
+
+        Page(int index, int pageSize) {
+            this.index = index;
+            this.buffer = ByteBuffer.allocateDirect(pageSize);
+        }
+
+        void assign(int sizeClass, int chunkSize) {
+            this.sizeClass = sizeClass;
+            this.chunkSize = chunkSize;
+            this.chunkCount = buffer.capacity() / chunkSize;
+            this.used = 0;
+            this.freeChunks = new int[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                freeChunks[i] = chunkCount - 1 - i; // Hand out low offsets first
+            }
+            this.freeCount = chunkCount;
+            this.owners = new Node[chunkCount];
+            this.ownerPositions = new int[chunkCount];
+        }
+    }
+
+    private static final class Node {
+        final UUID key;
+        final int length;
+        final long expiresAt; // System.nanoTime() deadline, or 0 for no expiry
+        final long[] chunks;  // page index << 32 | chunk index
+        volatile boolean referenced;
+        Node prev;
+        Node next;
+
+        Node(UUID key, int length, int chunkCount, long expiresAt) {
+            this.key = key;
+            this.length = length;
+            this.chunks = new long[chunkCount];
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && now - expiresAt > 0;
+        }
+    }
+
+    private final int pageSize;
+    private final int maxPages;
+    private final long ttlNanos;
+    private final int[] classSizes;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Node> entries = new HashMap<>();
+    private final List<Page> pages = new ArrayList<>();
+    private final Deque<Page> freePages = new ArrayDeque<>();
+    private final List<LinkedHashSet<Page>> partialPages = new ArrayList<>(); // Per class, pages with a free chunk
+    private final long[] classFreeChunks;
+
+    // CLOCK order; head is the next eviction candidate
+    private Node clockHead;
+    private Node clockTail;
+    private long storedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder evictedBytes = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public OffHeapCache(ArchinexConfig config) {
+        this(config.snapshot().getCacheMaxBytes(),
+                config.getIntOrDefault("cache.offHeap.pageSizeKB", 1024) * 1024,
+                config.getLongOrDefault("cache.ttlSeconds", 0L) * 1000L);
+    }
+
+    public OffHeapCache(long maximumBytes, int pageSize, long ttlMillis) {
+        if (pageSize < MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Off-heap cache page size must be at least " + MIN_CHUNK_SIZE + " bytes: " + pageSize);
+        }
+        this.pageSize = pageSize;
+        this.maxPages = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maximumBytes / pageSize));
+        this.ttlNanos = ttlMillis * 1_000_000L;
+
+        List<Integer> sizes = new ArrayList<>();
+        for (double size = MIN_CHUNK_SIZE; size < pageSize; size *= GROWTH_FACTOR) {
+            sizes.add(((int) size + 7) & ~7);
+        }
+        sizes.add(pageSize);
+        this.classSizes = sizes.stream().mapToInt(Integer::intValue).distinct().toArray();
+        this.classFreeChunks = new long[classSizes.length];
+        for (int i = 0; i < classSizes.length; i++) {
+            partialPages.add(new LinkedHashSet<>());
+        }
+        logger.info("OffHeapCache initialized with {} pages of {} KB ({} size classes)", maxPages, pageSize / 1024, classSizes.length);
+    }
+
+    @Override
+    public byte[] get(UUID uuid) {
+        boolean expired = false;
+        lock.readLock().lock();
+        try {
+            Node node = entries.get(uuid);
+            if (node != null && !(expired = node.isExpired(System.nanoTime()))) {
+                node.referenced = true;
+                hits.increment();
+                byte[] data = new byte[node.length];
+                int offset = 0;
+                for (long chunk : node.chunks) {
+                    Page page = pages.get(pageIndex(chunk));
+                    int length = Math.min(page.chunkSize, node.length - offset);
+                    page.buffer.get(chunkIndex(chunk) * page.chunkSize, data, offset, length);
+                    offset += length;
+                }
+                logger.debug("Cache hit for UUID: {}", uuid);
+                return data;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        misses.increment();
+        if (expired) {
+            expire(uuid);
+        }
+        logger.debug("Cache miss for UUID: {}", uuid);
+        return null;
+    }
+
+    /**
+     * Passes read-only views of the cached payload, in order, to the reader without copying it.
+     * The views must not be used after the reader returns. Returns {@code false} on a miss.
+     */
+    public boolean read(UUID uuid, Consumer<ByteBuffer> reader) {
+        boolean expired = false;
+        lock.readLock().lock();
+        try {
+            Node node = entries.get(uuid);
+            if (node != null && !(expired = node.isExpired(System.nanoTime()))) {
+                node.referenced = true;
+                hits.increment();
+                int offset = 0;
+                for (long chunk : node.chunks) {
+                    Page page = pages.get(pageIndex(chunk));
+                    int length = Math.min(page.chunkSize, node.length - offset);
+                    reader.accept(page.buffer.slice(chunkIndex(chunk) * page.chunkSize, length).asReadOnlyBuffer());
+                    offset += length;
+                }
+                return true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        misses.increment();
+        if (expired) {
+            expire(uuid);
+        }
+        return false;
+    }
+
+    @Override
+    public void put(UUID uuid, byte[] data) {
+        int fullPages = data.length / pageSize;
+        int tail = data.length % pageSize;
+        Node node = new Node(uuid, data.length, fullPages + (tail > 0 || data.length == 0 ? 1 : 0),
+                ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0);
+
+        lock.writeLock().lock();
+        try {
+            Node previous = entries.remove(uuid);
+            if (previous != null) {
+                release(previous);
+            }
+            if (node.chunks.length > maxPages) {
+                rejections.increment();
+                return;
+            }
+            for (int i = 0; i < node.chunks.length; i++) {
+                int length = Math.min(pageSize, data.length - i * pageSize);
+                long chunk = allocate(classFor(length));
+                if (chunk < 0) {
+                    for (int j = 0; j < i; j++) {
+                        freeChunk(node.chunks[j]);
+                    }
+                    rejections.increment();
+                    logger.debug("No off-heap space for UUID: {}", uuid);
+                    return;
+                }
+                Page page = pages.get(pageIndex(chunk));
+                page.owners[chunkIndex(chunk)] = node;
+                page.ownerPositions[chunkIndex(chunk)] = i;
+                page.buffer.put(chunkIndex(chunk) * page.chunkSize, data, i * pageSize, length);
+                node.chunks[i] = chunk;
+            }
+            entries.put(uuid, node);
+            linkLast(node);
+            storedBytes += data.length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Added to cache: {}", uuid);
+    }
+
+    @Override
+    public void remove(UUID uuid) {
+        lock.writeLock().lock();
+        try {
+            Node node = entries.remove(uuid);
+            if (node != null) {
+                release(node);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Removed from cache: {}", uuid);
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            for (Node node : new ArrayList<>(entries.values())) {
+                entries.remove(node.key);
+                release(node);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), evictedBytes.sum(),
+                rejections.sum(), expirations.sum());
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Payload bytes cached, excluding chunk and page slack
+    public long storedBytes() {
+        lock.readLock().lock();
+        try {
+            return storedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Off-heap bytes held by pages currently assigned to a size class
+    public long allocatedBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) (pages.size() - freePages.size()) * pageSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void expire(UUID uuid) {
+        lock.writeLock().lock();
+        try {
+            Node node = entries.get(uuid);
+            if (node != null && node.isExpired(System.nanoTime())) {
+                entries.remove(uuid);
+                release(node);
+                expirations.increment();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int classFor(int length) {
+        int low = 0;
+        int high = classSizes.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (classSizes[middle] >= length) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    // Returns a chunk of the class, or -1 once nothing is left to evict
+    private long allocate(int sizeClass) {
+        while (true) {
+            Iterator<Page> partial = partialPages.get(sizeClass).iterator();
+            if (partial.hasNext()) {
+                return takeChunk(partial.next());
+            }
+            Page page = freePages.poll();
+            if (page == null && pages.size() < maxPages) {
+                page = new Page(pages.size(), pageSize);
+                pages.add(page);
+            }
+            if (page != null) {
+                page.assign(sizeClass, classSizes[sizeClass]);
+                partialPages.get(sizeClass).add(page);
+                classFreeChunks[sizeClass] += page.chunkCount;
+                continue;
+            }
+            if (reclaimSlackPage()) {
+                continue;
+            }
+            if (!evictOne()) {
+                return -1;
+            }
+        }
+    }
+
+    private long takeChunk(Page page) {
+        int chunk = page.freeChunks[--page.freeCount];
+        page.used++;
+        classFreeChunks[page.sizeClass]--;
+        if (page.freeCount == 0) {
+            partialPages.get(page.sizeClass).remove(page);
+        }
+        return ((long) page.index << 32) | chunk;
+    }
+
+    private void freeChunk(long reference) {
+        Page page = pages.get(pageIndex(reference));
+        int chunk = chunkIndex(reference);
+        page.owners[chunk] = null;
+        page.freeChunks[page.freeCount++] = chunk;
+        page.used--;
+        classFreeChunks[page.sizeClass]++;
+        if (page.used == 0) {
+            partialPages.get(page.sizeClass).remove(page);
+            classFreeChunks[page.sizeClass] -= page.chunkCount;
+            page.sizeClass = -1;
+            page.owners = null;
+            freePages.push(page);
+        } else if (page.freeCount == 1) {
+            partialPages.get(page.sizeClass).add(page);
+        }
+    }
+
+    /**
+     * Frees a page by compacting a class with at least a page worth of free chunks: the live chunks
+     * of its emptiest page are copied into free chunks elsewhere in the class.
+     */
+    private boolean reclaimSlackPage() {
+        for (int sizeClass = 0; sizeClass < classSizes.length; sizeClass++) {
+            LinkedHashSet<Page> partial = partialPages.get(sizeClass);
+            if (partial.size() < 2 || classFreeChunks[sizeClass] < partial.iterator().next().chunkCount) {
+                continue;
+            }
+            Page emptiest = null;
+            for (Page page : partial) {
+                if (emptiest == null || page.used < emptiest.used) {
+                    emptiest = page;
+                }
+            }
+            // Take the page out of the allocation set so relocated chunks land on other pages
+            partial.remove(emptiest);
+            classFreeChunks[sizeClass] -= emptiest.freeCount;
+            for (int chunk = 0; chunk < emptiest.chunkCount && emptiest.used > 0; chunk++) {
+                Node owner = emptiest.owners[chunk];
+                if (owner == null) {
+                    continue;
+                }
+                int position = emptiest.ownerPositions[chunk];
+                long target = takeChunk(partial.iterator().next());
+                Page targetPage = pages.get(pageIndex(target));
+                targetPage.buffer.put(chunkIndex(target) * targetPage.chunkSize,
+                        emptiest.buffer, chunk * emptiest.chunkSize, emptiest.chunkSize);
+                targetPage.owners[chunkIndex(target)] = owner;
+                targetPage.ownerPositions[chunkIndex(target)] = position;
+                owner.chunks[position] = target;
+                emptiest.owners[chunk] = null;
+                emptiest.used--;
+            }
+            emptiest.sizeClass = -1;
+            emptiest.owners = null;
+            freePages.push(emptiest);
+            logger.debug("Compacted off-heap size class {} ({} bytes) to free page {}", sizeClass, classSizes[sizeClass], emptiest.index);
+            return true;
+        }
+        return false;
+    }
+
+    // CLOCK sweep: referenced entries get a second chance at the tail
+    private boolean evictOne() {
+        while (clockHead != null) {
+            Node candidate = clockHead;
+            unlinkClock(candidate);
+            if (candidate.referenced) {
+                candidate.referenced = false;
+                linkLast(candidate);
+                continue;
+            }
+            entries.remove(candidate.key);
+            releaseChunks(candidate);
+            evictions.increment();
+            evictedBytes.add(candidate.length);
+            return true;
+        }
+        return false;
+    }
+
+    private void release(Node node) {
+        unlinkClock(node);
+        releaseChunks(node);
+    }
+
+    private void releaseChunks(Node node) {
+        for (long chunk : node.chunks) {
+            freeChunk(chunk);
+        }
+        storedBytes -= node.length;
+    }
+
+    private void linkLast(Node node) {
+        node.prev = clockTail;
+        node.next = null;
+        if (clockTail == null) {
+            clockHead = node;
+        } else {
+            clockTail.next = node;
+        }
+        clockTail = node;
+    }
+
+    private void unlinkClock(Node node) {
+        if (node.prev == null) {
+            if (clockHead != node) {
+                return; // Not linked
+            }
+            clockHead = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            clockTail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static int pageIndex(long chunk) {
+        return (int) (chunk >>> 32);
+    }
+
+    private static int chunkIndex(long chunk) {
+        return (int) chunk;
+    }
+}
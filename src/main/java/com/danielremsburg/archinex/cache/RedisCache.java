@@ -6,14 +6,37 @@ import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
-public class RedisCache implements Cache {
+public class RedisCache implements Cache, Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisCache.class);
 
+    static final String INVALIDATION_CHANNEL = "archinex:cache:invalidate";
+
+    // First byte of every stored value
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+
+    private static final int BATCH_SIZE = 500; // Keys per MGET/UNLINK/pipeline flush
+
     private final JedisPool jedisPool;
+    private final long ttlSeconds;
+    private final int compressionThreshold;
 
     public RedisCache(ArchinexConfig config) {
         String host = config.getStringOrDefault("redis.host", "localhost");
@@ -27,20 +50,25 @@ public class RedisCache implements Cache {
         } else {
             jedisPool = new JedisPool(poolConfig, host, port, 10000);
         }
+        this.ttlSeconds = config.getLongOrDefault("redis.ttlSeconds", 0L);
+        this.compressionThreshold = config.getIntOrDefault("redis.compressionThreshold", 0);
 
-        logger.info("RedisCache initialized. Host: {}, Port: {}", host, port);
+        logger.info("RedisCache initialized. Host: {}, Port: {}, TTL: {}s, compression threshold: {} bytes",
+                host, port, ttlSeconds, compressionThreshold);
     }
 
     @Override
     public byte[] get(UUID uuid) {
         try (Jedis jedis = jedisPool.getResource()) {
-            byte[] data = jedis.get(uuid.toString().getBytes());
+            byte[] data = decode(jedis.get(key(uuid)));
             if (data != null) {
                 logger.debug("Cache hit for UUID: {}", uuid);
             } else {
                 logger.debug("Cache miss for UUID: {}", uuid);
             }
             return data;
+        } catch (CacheException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error getting from Redis: {}", e.getMessage(), e);
             throw new CacheException("Error getting from Redis: " + e.getMessage(), e);
@@ -50,7 +78,11 @@ public class RedisCache implements Cache {
     @Override
     public void put(UUID uuid, byte[] data) {
         try (Jedis jedis = jedisPool.getResource()) {
-            jedis.set(uuid.toString().getBytes(), data);
+            if (ttlSeconds > 0) {
+                jedis.setex(key(uuid), ttlSeconds, encode(data));
+            } else {
+                jedis.set(key(uuid), encode(data));
+            }
             logger.debug("Added to cache: {}", uuid);
         } catch (Exception e) {
             logger.error("Error putting into Redis: {}", e.getMessage(), e);
@@ -61,11 +93,194 @@ public class RedisCache implements Cache {
     @Override
     public void remove(UUID uuid) {
         try (Jedis jedis = jedisPool.getResource()) {
-            jedis.del(uuid.toString().getBytes());
+            jedis.unlink(key(uuid)); // Frees the value in the background on the server
             logger.debug("Removed from cache: {}", uuid);
         } catch (Exception e) {
             logger.error("Error removing from Redis: {}", e.getMessage(), e);
             throw new CacheException("Error removing from Redis: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public Map<UUID, byte[]> getAll(Collection<UUID> uuids) {
+        Map<UUID, byte[]> found = new HashMap<>();
+        List<UUID> batch = new ArrayList<>(Math.min(uuids.size(), BATCH_SIZE));
+        try (Jedis jedis = jedisPool.getResource()) {
+            for (UUID uuid : uuids) {
+                batch.add(uuid);
+                if (batch.size() == BATCH_SIZE) {
+                    mget(jedis, batch, found);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                mget(jedis, batch, found);
+            }
+            logger.debug("Batch lookup of {} keys found {}", uuids.size(), found.size());
+            return found;
+        } catch (CacheException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error getting batch from Redis: {}", e.getMessage(), e);
+            throw new CacheException("Error getting batch from Redis: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void putAll(Map<UUID, byte[]> entries) {
+        try (Jedis jedis = jedisPool.getResource(); Pipeline pipeline = jedis.pipelined()) {
+            int pending = 0;
+            for (Map.Entry<UUID, byte[]> entry : entries.entrySet()) {
+                if (ttlSeconds > 0) {
+                    pipeline.setex(key(entry.getKey()), ttlSeconds, encode(entry.getValue()));
+                } else {
+                    pipeline.set(key(entry.getKey()), encode(entry.getValue()));
+                }
+                if (++pending == BATCH_SIZE) {
+                    pipeline.sync(); // Bound the replies buffered on both sides
+                    pending = 0;
+                }
+            }
+            pipeline.sync();
+            logger.debug("Added {} entries to cache", entries.size());
+        } catch (Exception e) {
+            logger.error("Error putting batch into Redis: {}", e.getMessage(), e);
+            throw new CacheException("Error putting batch into Redis: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<UUID> uuids) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            List<byte[]> batch = new ArrayList<>(Math.min(uuids.size(), BATCH_SIZE));
+            for (UUID uuid : uuids) {
+                batch.add(key(uuid));
+                if (batch.size() == BATCH_SIZE) {
+                    jedis.unlink(batch.toArray(new byte[0][]));
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                jedis.unlink(batch.toArray(new byte[0][]));
+            }
+            logger.debug("Removed {} entries from cache", uuids.size());
+        } catch (Exception e) {
+            logger.error("Error removing batch from Redis: {}", e.getMessage(), e);
+            throw new CacheException("Error removing batch from Redis: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Tells the other daemons' near caches that the entry changed. A {@code null} UUID means
+     * every entry.
+     */
+    public void publishInvalidation(String nodeId, UUID uuid) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.publish(INVALIDATION_CHANNEL, nodeId + " " + (uuid == null ? "*" : uuid.toString()));
+        } catch (Exception e) {
+            logger.error("Error publishing cache invalidation: {}", e.getMessage(), e);
+            throw new CacheException("Error publishing cache invalidation: " + e.getMessage(), e);
+        }
+    }
+
+    public void publishInvalidations(String nodeId, Collection<UUID> uuids) {
+        try (Jedis jedis = jedisPool.getResource(); Pipeline pipeline = jedis.pipelined()) {
+            for (UUID uuid : uuids) {
+                pipeline.publish(INVALIDATION_CHANNEL, nodeId + " " + uuid);
+            }
+            pipeline.sync();
+        } catch (Exception e) {
+            logger.error("Error publishing cache invalidations: {}", e.getMessage(), e);
+            throw new CacheException("Error publishing cache invalidations: " + e.getMessage(), e);
+        }
+    }
+
+    public RedisInvalidationListener listenForInvalidations(String nodeId, Consumer<UUID> onInvalidate, Runnable onReset) {
+        return new RedisInvalidationListener(jedisPool, INVALIDATION_CHANNEL, nodeId, onInvalidate, onReset);
+    }
+
+    @Override
+    public void close() {
+        jedisPool.close();
+    }
+
+    private void mget(Jedis jedis, List<UUID> batch, Map<UUID, byte[]> found) {
+        byte[][] keys = new byte[batch.size()][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(batch.get(i));
+        }
+        List<byte[]> values = jedis.mget(keys);
+        for (int i = 0; i < keys.length; i++) {
+            byte[] data = decode(values.get(i));
+            if (data != null) {
+                found.put(batch.get(i), data);
+            }
+        }
+    }
+
+    // The UUID's 16 raw bytes rather than its 36-character string form
+    static byte[] key(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    private byte[] encode(byte[] data) {
+        if (compressionThreshold > 0 && data.length >= compressionThreshold) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+                out.write(DEFLATED);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished() && out.size() <= data.length) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                if (deflater.finished() && out.size() <= data.length) {
+                    return out.toByteArray();
+                }
+                // Incompressible (already compressed media, archives): store as is
+            } finally {
+                deflater.end();
+            }
+        }
+        byte[] value = new byte[data.length + 1];
+        value[0] = RAW;
+        System.arraycopy(data, 0, value, 1, data.length);
+        return value;
+    }
+
+    private static byte[] decode(byte[] value) {
+        if (value == null || value.length == 0) {
+            return null;
+        }
+        if (value[0] == RAW) {
+            byte[] data = new byte[value.length - 1];
+            System.arraycopy(value, 1, data, 0, data.length);
+            return data;
+        }
+        if (value[0] != DEFLATED) {
+            throw new CacheException("Unknown Redis cache value encoding: " + value[0]);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(value, 1, value.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(value.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new CacheException("Truncated compressed value in Redis cache");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new CacheException("Corrupt compressed value in Redis cache: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
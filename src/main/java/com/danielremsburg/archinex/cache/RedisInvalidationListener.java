@@ -0,0 +1,108 @@
+package com.danielremsburg.archinex.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+import java.io.Closeable;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Background SUBSCRIBE on the cache invalidation channel. Each message is
+ * {@code <node id> <uuid>}, or {@code <node id> *} when everything changed; messages published by
+ * this node are ignored. Messages may be lost while disconnected, so {@code onReset} runs every
+ * time the subscription is (re)established.
+ */
+public class RedisInvalidationListener implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisInvalidationListener.class);
+
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final JedisPool jedisPool;
+    private final String channel;
+    private final String nodeId;
+    private final Consumer<UUID> onInvalidate;
+    private final Runnable onReset;
+    private final Thread thread;
+    private volatile JedisPubSub subscription;
+    private volatile boolean running = true;
+
+    RedisInvalidationListener(JedisPool jedisPool, String channel, String nodeId,
+                              Consumer<UUID> onInvalidate, Runnable onReset) {
+        this.jedisPool = jedisPool;
+        this.channel = channel;
+        this.nodeId = nodeId;
+        this.onInvalidate = onInvalidate;
+        this.onReset = onReset;
+        this.thread = new Thread(this::run, "cache-invalidation-listener");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void run() {
+        while (running) {
+            JedisPubSub pubSub = new JedisPubSub() {
+                @Override
+                public void onSubscribe(String subscribedChannel, int subscribedChannels) {
+                    onReset.run();
+                    logger.info("Listening for cache invalidations on channel {}", subscribedChannel);
+                }
+
+                @Override
+                public void onMessage(String messageChannel, String message) {
+                    dispatch(message);
+                }
+            };
+            subscription = pubSub;
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.subscribe(pubSub, channel); // Blocks until unsubscribed or disconnected
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                logger.error("Cache invalidation listener failed, reconnecting: {}", e.getMessage(), e);
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private void dispatch(String message) {
+        int separator = message.indexOf(' ');
+        if (separator < 0) {
+            logger.warn("Ignoring malformed cache invalidation: {}", message);
+            return;
+        }
+        if (nodeId.equals(message.substring(0, separator))) {
+            return; // Our own write; the local tier is already up to date
+        }
+        String payload = message.substring(separator + 1);
+        if ("*".equals(payload)) {
+            onReset.run();
+            return;
+        }
+        try {
+            onInvalidate.accept(UUID.fromString(payload));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Ignoring malformed cache invalidation: {}", message);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        JedisPubSub pubSub = subscription;
+        if (pubSub != null && pubSub.isSubscribed()) {
+            pubSub.unsubscribe();
+        }
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,103 @@
+package com.danielremsburg.archinex.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Two-level cache: a fast, small first level (memory or off-heap) in front of a larger second
+ * level such as {@link DiskCache}. Second-level hits are promoted; writes go to both levels so
+ * the second level keeps the working set across restarts.
+ */
+public class TieredCache implements Cache, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TieredCache.class);
+
+    private final Cache first;
+    private final Cache second;
+
+    public TieredCache(Cache first, Cache second) {
+        this.first = first;
+        this.second = second;
+        logger.info("TieredCache initialized: {} in front of {}", first.getClass().getSimpleName(), second.getClass().getSimpleName());
+    }
+
+    @Override
+    public byte[] get(UUID uuid) {
+        byte[] data = first.get(uuid);
+        if (data != null) {
+            return data;
+        }
+        data = second.get(uuid);
+        if (data != null) {
+            first.put(uuid, data);
+        }
+        return data;
+    }
+
+    @Override
+    public void put(UUID uuid, byte[] data) {
+        second.put(uuid, data);
+        first.put(uuid, data);
+    }
+
+    @Override
+    public void remove(UUID uuid) {
+        first.remove(uuid);
+        second.remove(uuid);
+    }
+
+    @Override
+    public Map<UUID, byte[]> getAll(Collection<UUID> uuids) {
+        Map<UUID, byte[]> found = first.getAll(uuids);
+        if (found.size() < uuids.size()) {
+            List<UUID> missing = new ArrayList<>(uuids.size() - found.size());
+            for (UUID uuid : uuids) {
+                if (!found.containsKey(uuid)) {
+                    missing.add(uuid);
+                }
+            }
+            Map<UUID, byte[]> promoted = second.getAll(missing);
+            first.putAll(promoted);
+            found.putAll(promoted);
+        }
+        return found;
+    }
+
+    @Override
+    public void putAll(Map<UUID, byte[]> entries) {
+        second.putAll(entries);
+        first.putAll(entries);
+    }
+
+    @Override
+    public void removeAll(Collection<UUID> uuids) {
+        first.removeAll(uuids);
+        second.removeAll(uuids);
+    }
+
+    public Cache getFirstLevel() {
+        return first;
+    }
+
+    public Cache getSecondLevel() {
+        return second;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (first instanceof Closeable) {
+            ((Closeable) first).close();
+        }
+        if (second instanceof Closeable) {
+            ((Closeable) second).close();
+        }
+    }
+}
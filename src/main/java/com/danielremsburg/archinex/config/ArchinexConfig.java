@@ -2,8 +2,10 @@ package com.danielremsburg.archinex.config;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,6 +16,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 public class ArchinexConfig {
 
@@ -23,7 +30,12 @@ public class ArchinexConfig {
     private static final String CONFIG_FILE = ARCHINEX_HOME + "/config/archinex.json";
     private static final String DEFAULT_CONFIG_FILE = "archinex_default.json"; // Path to default config in resources
 
-    private final JsonObject config;
+    // Split paths are cached; the set of keys the code asks for is small and fixed
+    private static final ConcurrentMap<String, String[]> SPLIT_PATHS = new ConcurrentHashMap<>();
+
+    private final String configFile;
+    private volatile ConfigSnapshot snapshot;
+    private final List<Consumer<ConfigSnapshot>> reloadListeners = new CopyOnWriteArrayList<>();
 
     public ArchinexConfig() throws IOException {
         this(CONFIG_FILE);
@@ -31,15 +43,65 @@ public class ArchinexConfig {
 
     public ArchinexConfig(String configFile) throws IOException {
         createDirectoriesAndCopyDefaultConfig(); // Combined directory creation and default config copy
+        this.configFile = configFile;
+        this.snapshot = new ConfigSnapshot(read(configFile), 0);
+    }
+
+    private static JsonObject read(String configFile) throws IOException {
         Gson gson = new GsonBuilder().create();
+        JsonObject config;
         try (FileReader reader = new FileReader(configFile)) {
             config = gson.fromJson(reader, JsonObject.class);
         } catch (IOException e) {
             logger.error("Error reading configuration file: {}", configFile, e);
             throw e; // Re-throw after logging
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid configuration file " + configFile + ": " + e.getMessage(), e);
+        }
+        if (config == null) {
+            throw new IOException("Empty configuration file: " + configFile);
         }
         // Expand the paths with ~ after reading the config
-        expandTildeInPaths();
+        expandTildeInJsonObject(config);
+        return config;
+    }
+
+    /** The current configuration version. Hot paths should read tunables from here. */
+    public ConfigSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Re-reads the configuration file and atomically replaces the current snapshot. If the file
+     * cannot be read or a value is invalid, the current snapshot is kept and the error is
+     * thrown. Listeners run on the calling thread after the swap.
+     */
+    public synchronized ConfigSnapshot reload() throws IOException {
+        ConfigSnapshot reloaded;
+        try {
+            reloaded = new ConfigSnapshot(read(configFile), snapshot.getGeneration() + 1);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid configuration in " + configFile + ": " + e.getMessage(), e);
+        }
+        snapshot = reloaded;
+        logger.info("Configuration reloaded from {} (generation {})", configFile, reloaded.getGeneration());
+        for (Consumer<ConfigSnapshot> listener : reloadListeners) {
+            try {
+                listener.accept(reloaded);
+            } catch (RuntimeException e) {
+                logger.error("Error applying reloaded configuration: {}", e.getMessage(), e);
+            }
+        }
+        return reloaded;
+    }
+
+    public void addReloadListener(Consumer<ConfigSnapshot> listener) {
+        reloadListeners.add(listener);
+    }
+
+    /** Reloads the configuration whenever its file changes, until the watcher is closed. */
+    public ConfigWatcher watch() throws IOException {
+        return new ConfigWatcher(this, Paths.get(configFile));
     }
 
     private void createDirectoriesAndCopyDefaultConfig() throws IOException {
@@ -71,23 +133,7 @@ public class ArchinexConfig {
         }
     }
 
-    private void expandTildeInPaths() {
-        // Traverse all keys in the config and expand ~ if it exists
-        for (String key : config.keySet()) {
-            JsonElement element = config.get(key);
-            if (element != null && element.isJsonPrimitive() && element.getAsString().contains("~")) {
-                String value = element.getAsString();
-                // Expand the ~ to the user's home directory
-                value = value.replace("~", System.getProperty("user.home"));
-                config.addProperty(key, value);
-            } else if (element != null && element.isJsonObject()) {
-                // Recursively expand in nested objects
-                expandTildeInJsonObject(element.getAsJsonObject());
-            }
-        }
-    }
-
-    private void expandTildeInJsonObject(JsonObject jsonObject) {
+    private static void expandTildeInJsonObject(JsonObject jsonObject) {
         for (String key : jsonObject.keySet()) {
             JsonElement element = jsonObject.get(key);
             if (element != null && element.isJsonPrimitive() && element.getAsString().contains("~")) {
@@ -148,12 +194,18 @@ public class ArchinexConfig {
     }
 
     private JsonElement getJsonElement(String path) {
-        if (config == null) {
-            return null; // Handle the case where the config is not loaded
-        }
-        String[] parts = path.split("\\.");
+        return find(snapshot.getTree(), path);
+    }
+
+    static JsonElement find(JsonObject config, String path) {
+        String[] parts = SPLIT_PATHS.computeIfAbsent(path, key -> key.split("\\."));
         JsonElement current = config;
         for (String part : parts) {
+            if (current != null && current.isJsonArray()) {
+                // Numeric path segments index into arrays, e.g. "postgres.shards.0.jdbcUrl"
+                current = getArrayElement(current.getAsJsonArray(), part);
+                continue;
+            }
             if (current == null || !current.isJsonObject() || !current.getAsJsonObject().has(part)) {
                 return null;
             }
@@ -162,6 +214,20 @@ public class ArchinexConfig {
         return current;
     }
 
+    private static JsonElement getArrayElement(JsonArray array, String index) {
+        try {
+            int i = Integer.parseInt(index);
+            return i >= 0 && i < array.size() ? array.get(i) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public int getArrayLength(String path) {
+        JsonElement element = getJsonElement(path);
+        return element != null && element.isJsonArray() ? element.getAsJsonArray().size() : 0;
+    }
+
     // Getter methods for specific config fields:
     public String getStorageType() {
         return getStringOrDefault("storage.type", "local");
@@ -175,6 +241,10 @@ public class ArchinexConfig {
         return getStringOrDefault("metadata.store.path", ARCHINEX_HOME + "/data/metadata/metadata.db"); // Example DB path
     }
 
+    public String getMetadataSnapshotPath() {
+        return getStringOrDefault("metadata.snapshot.path", ARCHINEX_HOME + "/data/metadata/snapshots");
+    }
+
     public String getJournalFilePath() {
         return getStringOrDefault("journal.file.path", ARCHINEX_HOME + "/data/journal/journal.log");
     }
@@ -187,6 +257,14 @@ public class ArchinexConfig {
         return getStringOrDefault("cache.config.path", ARCHINEX_HOME + "/config/cache_config.json"); // Example
     }
 
+    public String getDiskCachePath() {
+        return getStringOrDefault("cache.disk.path", ARCHINEX_HOME + "/data/cache");
+    }
+
+    public String getAccessStatsPath() {
+        return getStringOrDefault("cache.accessStats.path", ARCHINEX_HOME + "/data/access-stats.bin");
+    }
+
     public String getCloudStorageProvider() {
         return getString("storage.cloud.provider");
     }
@@ -207,6 +285,10 @@ public class ArchinexConfig {
         return getStringOrDefault("metadata.store.type", "memory");
     }
 
+    public int getMetadataScanFetchSize() {
+        return getIntOrDefault("metadata.scan.fetchSize", 1000);
+    }
+
     public String getJournalType() {
         return getStringOrDefault("journal.type", "memory");
     }
@@ -219,6 +301,7 @@ public class ArchinexConfig {
         return getStringOrDefault("cache.type", "memory");
     }
 
+    // In megabytes; see ConfigSnapshot.getCacheMaxBytes
     public int getMaxCacheSize() {
         return getIntOrDefault("cache.maxSize", 1024);
     }
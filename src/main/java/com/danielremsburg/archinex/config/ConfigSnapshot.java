@@ -0,0 +1,184 @@
+package com.danielremsburg.archinex.config;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Immutable, typed view of one version of the configuration. Tunables read on hot paths are bound
+ * to fields once, when the file is loaded, so reading them is a field access with no path
+ * parsing or JSON lookup. {@link ArchinexConfig} swaps in a new snapshot atomically on reload.
+ * Hold on to the snapshot only for the duration of one operation, so later reloads are seen.
+ */
+public final class ConfigSnapshot {
+
+    // Largest sizes that still fit in a long once converted to bytes
+    private static final long MAX_KB = Long.MAX_VALUE / 1024L;
+    private static final long MAX_MB = Long.MAX_VALUE / (1024L * 1024L);
+
+    private final JsonObject tree;
+    private final long generation;
+
+    private final int plannerThreadPoolSize;
+    private final int policyEngineInterval;
+    private final long planFileSizeThreshold;
+    private final long compressionSampleBytes;
+    private final double compressionMinSavings;
+    private final long multipartPartBytes;
+    private final int multipartMaxParallel;
+    private final boolean deleteEnabled;
+    private final int metadataScanFetchSize;
+    private final long retrieveTimeoutMillis;
+    private final long cacheMaxBytes;
+    private final boolean cacheWriteThrough;
+    private final long cacheMaxObjectBytes;
+    private final int cacheMinAccesses;
+    private final int prefetchSiblings;
+
+    ConfigSnapshot(JsonObject tree, long generation) {
+        this.tree = tree;
+        this.generation = generation;
+
+        // Ranges are checked here, so a reload with a bad value is rejected before it is swapped in
+        this.plannerThreadPoolSize = intValue("planner.threadPoolSize", 4, 1, Integer.MAX_VALUE);
+        this.policyEngineInterval = intValue("policyEngine.interval", 3600, 1, Integer.MAX_VALUE);
+        this.planFileSizeThreshold = longValue("plan.fileSizeThreshold", 1024 * 1024, 0, Long.MAX_VALUE);
+        this.compressionSampleBytes = longValue("plan.compression.sampleKB", 64L, 1, MAX_KB) * 1024L;
+        this.compressionMinSavings = doubleValue("plan.compression.minSavings", 0.1);
+        if (!(compressionMinSavings >= 0 && compressionMinSavings < 1)) {
+            throw new IllegalArgumentException("plan.compression.minSavings must be at least 0 and below 1: " + compressionMinSavings);
+        }
+        this.multipartPartBytes = longValue("plan.multipart.partSizeMB", 16L, 1, MAX_MB) * 1024L * 1024L;
+        this.multipartMaxParallel = intValue("plan.multipart.maxParallel", 4, 1, Integer.MAX_VALUE);
+        this.deleteEnabled = booleanValue("storage.enableDelete", true);
+        this.metadataScanFetchSize = intValue("metadata.scan.fetchSize", 1000, 1, Integer.MAX_VALUE);
+        this.retrieveTimeoutMillis = longValue("planner.retrieveTimeoutMillis", 0L, 0, Long.MAX_VALUE);
+        this.cacheMaxBytes = longValue("cache.maxSize", 1024L, 1, MAX_MB) * 1024L * 1024L;
+        this.cacheWriteThrough = parseStoreMode(stringValue("cache.admission.storeMode", "write-through"));
+        this.cacheMaxObjectBytes = longValue("cache.admission.maxObjectSizeMB", 64L, 0, MAX_MB) * 1024L * 1024L;
+        // The admission sketch's 4-bit counters saturate at 15
+        this.cacheMinAccesses = intValue("cache.admission.minAccesses", 1, 1, 15);
+        this.prefetchSiblings = intValue("cache.prefetch.siblings", 0, 0, Integer.MAX_VALUE);
+    }
+
+    private static boolean parseStoreMode(String mode) {
+        if ("write-through".equalsIgnoreCase(mode)) {
+            return true;
+        }
+        if ("write-around".equalsIgnoreCase(mode)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown cache admission store mode: " + mode);
+    }
+
+    JsonObject getTree() {
+        return tree;
+    }
+
+    /** Incremented on every successful reload; 0 for the configuration loaded at startup. */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int getPlannerThreadPoolSize() {
+        return plannerThreadPoolSize;
+    }
+
+    public int getPolicyEngineInterval() {
+        return policyEngineInterval;
+    }
+
+    public long getPlanFileSizeThreshold() {
+        return planFileSizeThreshold;
+    }
+
+    public long getCompressionSampleBytes() {
+        return compressionSampleBytes;
+    }
+
+    public double getCompressionMinSavings() {
+        return compressionMinSavings;
+    }
+
+    public long getMultipartPartBytes() {
+        return multipartPartBytes;
+    }
+
+    public int getMultipartMaxParallel() {
+        return multipartMaxParallel;
+    }
+
+    public boolean isDeleteEnabled() {
+        return deleteEnabled;
+    }
+
+    public int getMetadataScanFetchSize() {
+        return metadataScanFetchSize;
+    }
+
+    public long getRetrieveTimeoutMillis() {
+        return retrieveTimeoutMillis;
+    }
+
+    /** {@code cache.maxSize}, which is configured in megabytes, converted to bytes. */
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    public boolean isCacheWriteThrough() {
+        return cacheWriteThrough;
+    }
+
+    public long getCacheMaxObjectBytes() {
+        return cacheMaxObjectBytes;
+    }
+
+    public int getCacheMinAccesses() {
+        return cacheMinAccesses;
+    }
+
+    public int getPrefetchSiblings() {
+        return prefetchSiblings;
+    }
+
+    private String stringValue(String path, String defaultValue) {
+        JsonElement element = ArchinexConfig.find(tree, path);
+        return element != null && !element.isJsonNull() ? element.getAsString() : defaultValue;
+    }
+
+    private int intValue(String path, int defaultValue) {
+        JsonElement element = ArchinexConfig.find(tree, path);
+        return element != null && !element.isJsonNull() ? element.getAsInt() : defaultValue;
+    }
+
+    private int intValue(String path, int defaultValue, int min, int max) {
+        return (int) checkRange(path, intValue(path, defaultValue), min, max);
+    }
+
+    private long longValue(String path, long defaultValue, long min, long max) {
+        return checkRange(path, longValue(path, defaultValue), min, max);
+    }
+
+    private static long checkRange(String path, long value, long min, long max) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(max == Integer.MAX_VALUE || max == Long.MAX_VALUE
+                    ? path + " must be at least " + min + ": " + value
+                    : path + " must be between " + min + " and " + max + ": " + value);
+        }
+        return value;
+    }
+
+    private long longValue(String path, long defaultValue) {
+        JsonElement element = ArchinexConfig.find(tree, path);
+        return element != null && !element.isJsonNull() ? element.getAsLong() : defaultValue;
+    }
+
+    private double doubleValue(String path, double defaultValue) {
+        JsonElement element = ArchinexConfig.find(tree, path);
+        return element != null && !element.isJsonNull() ? element.getAsDouble() : defaultValue;
+    }
+
+    private boolean booleanValue(String path, boolean defaultValue) {
+        JsonElement element = ArchinexConfig.find(tree, path);
+        return element != null && !element.isJsonNull() ? element.getAsBoolean() : defaultValue;
+    }
+}
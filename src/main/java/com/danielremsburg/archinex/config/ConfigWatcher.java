@@ -0,0 +1,85 @@
+package com.danielremsburg.archinex.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the configuration file's directory and reloads the configuration when the file is
+ * written or replaced. Events are debounced, because editors and deployment tools often write a
+ * file in several steps. A file that fails to parse is logged, and the previous configuration
+ * stays in effect.
+ */
+public class ConfigWatcher implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigWatcher.class);
+
+    private static final long DEBOUNCE_MS = 250;
+
+    private final ArchinexConfig config;
+    private final Path file;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    ConfigWatcher(ArchinexConfig config, Path file) throws IOException {
+        this.config = config;
+        this.file = file.toAbsolutePath();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::run, "config-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        logger.info("Watching {} for configuration changes", this.file);
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = touchesFile(key);
+                // Collect the rest of a burst of writes before reloading once
+                WatchKey next;
+                while ((next = watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= touchesFile(next);
+                }
+                if (changed) {
+                    try {
+                        config.reload();
+                    } catch (IOException e) {
+                        logger.error("Keeping previous configuration: {}", e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private boolean touchesFile(WatchKey key) {
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                touched = true;
+            }
+        }
+        key.reset();
+        return touched;
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+}
@@ -0,0 +1,87 @@
+package com.danielremsburg.archinex.core;
+
+/**
+ * Finds how many I/O tasks can run at once before the backends slow down, using additive
+ * increase and multiplicative decrease (AIMD) on task latency.
+ * <p>
+ * Latency is tracked as a moving average, compared with a baseline: the lowest average seen,
+ * creeping upward very slowly. Averaging keeps a workload of mixed task sizes from looking
+ * overloaded. If latency stays high even at the minimum limit, concurrency is not the cause, and
+ * the current latency becomes the new baseline. While the average stays within
+ * {@code tolerance} times the baseline and the limit is in use, the limit grows by about one
+ * per round of tasks. When latency rises past that, the limit is cut by {@code backoff}, at most
+ * once per round, so a burst of slow completions counts as one signal.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double ALPHA = 0.1;
+    private static final double BASELINE_DRIFT = 1.00001; // Per task, about 10% per ten thousand tasks
+
+    private int minLimit;
+    private int maxLimit;
+    private double tolerance;
+    private double backoff;
+
+    private double limit;
+    private double latencyMillis = Double.NaN;
+    private double baselineMillis = Double.NaN;
+    private long sinceDecrease;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoff) {
+        configure(minLimit, maxLimit, tolerance, backoff);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+    }
+
+    public synchronized void configure(int minLimit, int maxLimit, double tolerance, double backoff) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.tolerance = Math.max(1.0, tolerance);
+        this.backoff = Math.min(0.99, Math.max(0.1, backoff));
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, limit));
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Records a finished task.
+     *
+     * @param inFlight tasks still running when it finished, to tell whether the limit was in use
+     */
+    public synchronized void onCompleted(long elapsedNanos, int inFlight) {
+        double millis = elapsedNanos / 1e6;
+        if (Double.isNaN(latencyMillis)) {
+            latencyMillis = millis;
+            baselineMillis = millis;
+            return;
+        }
+        latencyMillis += ALPHA * (millis - latencyMillis);
+        baselineMillis = Math.min(baselineMillis * BASELINE_DRIFT, latencyMillis);
+        sinceDecrease++;
+
+        if (latencyMillis > baselineMillis * tolerance) {
+            if (sinceDecrease >= limit) {
+                if (limit <= minLimit) {
+                    baselineMillis = latencyMillis; // The backend itself got slower
+                }
+                limit = Math.max(minLimit, limit * backoff);
+                sinceDecrease = 0;
+            }
+        } else if (inFlight + 1 >= limit / 2) {
+            // Only grow while the limit is what holds work back
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    /** Latency moving average, for monitoring. */
+    public synchronized double getLatencyMillis() {
+        return Double.isNaN(latencyMillis) ? 0.0 : latencyMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("AdaptiveConcurrencyLimit{limit=%d, min=%d, max=%d, latency=%.1fms, baseline=%.1fms}",
+                (int) limit, minLimit, maxLimit, getLatencyMillis(), Double.isNaN(baselineMillis) ? 0.0 : baselineMillis);
+    }
+}
@@ -98,6 +98,9 @@ public class ArchinexDaemon {
         try {
             // Load configuration
             ArchinexConfig config = new ArchinexConfig(); // Assuming constructor loads config from file or environment
+            if (config.getBooleanOrDefault("config.hotReload", true)) {
+                config.watch(); // Daemon thread; lives as long as the process
+            }
             ArchinexDaemon daemon = new ArchinexDaemon(config);
 
             // Start the daemon
@@ -0,0 +1,92 @@
+package com.danielremsburg.archinex.core;
+
+import com.danielremsburg.archinex.cache.AccessStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refills the cache after a restart from recorded access history. The hottest files are loaded in
+ * score order on a background thread until a byte budget is spent, paced so warmup traffic stays
+ * under a fixed bandwidth and does not compete with foreground retrieves.
+ */
+public class CacheWarmer implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+
+    @FunctionalInterface
+    public interface Loader {
+        /** Loads the file into the cache and returns it, or null if it could not be cached. */
+        byte[] load(UUID uuid) throws IOException;
+    }
+
+    private final AccessStats accessStats;
+    private final Loader loader;
+    private final int maxFiles;
+    private final long maxBytes;
+    private final long bytesPerSecond;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public CacheWarmer(AccessStats accessStats, Loader loader, int maxFiles, long maxBytes, long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("Cache warmup rate must be positive: " + bytesPerSecond);
+        }
+        this.accessStats = accessStats;
+        this.loader = loader;
+        this.maxFiles = maxFiles;
+        this.maxBytes = maxBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.thread = new Thread(this::run, "cache-warmup");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void run() {
+        long started = System.nanoTime();
+        List<UUID> hottest = accessStats.hottest(maxFiles);
+        long loadedBytes = 0;
+        int loadedFiles = 0;
+        for (UUID uuid : hottest) {
+            if (closed || loadedBytes >= maxBytes) {
+                break;
+            }
+            try {
+                byte[] data = loader.load(uuid);
+                if (data != null) {
+                    loadedBytes += data.length;
+                    loadedFiles++;
+                }
+            } catch (IOException e) {
+                logger.debug("Skipping cache warmup of {}: {}", uuid, e.getMessage());
+                continue;
+            }
+            // Sleep until the average rate since the start is back under the limit
+            long dueNanos = (long) (loadedBytes * 1e9 / bytesPerSecond);
+            long aheadNanos = dueNanos - (System.nanoTime() - started);
+            if (aheadNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(aheadNanos);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+        logger.info("Cache warmup loaded {} of {} tracked files ({} bytes) in {} ms", loadedFiles, hottest.size(),
+                loadedBytes, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,70 @@
+package com.danielremsburg.archinex.core;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the planner's two pools. CPU-bound work (compression, transforms) runs on a pool with
+ * one thread per core. Blocking storage and database calls run on the I/O pool, where the
+ * {@link WorkloadScheduler} limits how many run at once.
+ */
+public final class ExecutorPools {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorPools.class);
+
+    private ExecutorPools() {
+    }
+
+    public static ExecutorService newCpuPool(ArchinexConfig config) {
+        int threads = config.getIntOrDefault("planner.cpuThreads", Runtime.getRuntime().availableProcessors());
+        return Executors.newFixedThreadPool(Math.max(1, threads), daemonThreads("archinex-cpu-"));
+    }
+
+    /**
+     * Uses a virtual thread per task where the runtime supports it (Java 21 and later) and
+     * {@code planner.io.virtualThreads} is on, since blocked virtual threads cost no platform
+     * thread. Otherwise, a pool that starts threads as needed, up to the concurrency limit, and stops
+     * them after a minute idle.
+     */
+    public static ExecutorService newIoPool(ArchinexConfig config) {
+        if (config.getBooleanOrDefault("planner.io.virtualThreads", true)) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                logger.info("Using virtual threads for planner I/O");
+                return (ExecutorService) factory.invoke(null);
+            } catch (NoSuchMethodException e) {
+                logger.debug("Virtual threads are not available on this runtime");
+            } catch (ReflectiveOperationException e) {
+                logger.warn("Could not create a virtual thread executor: {}", e.getMessage());
+            }
+        }
+        int maxThreads = config.getBooleanOrDefault("planner.io.adaptive", true)
+                ? config.getIntOrDefault("planner.io.maxConcurrency", 256)
+                : config.snapshot().getPlannerThreadPoolSize();
+        // The scheduler admits no more tasks than threads, but a thread that has just finished a
+        // task is briefly still busy, so the pool needs a queue to hold a hand-off until it returns
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(Math.max(1, maxThreads), Math.max(1, maxThreads),
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonThreads("archinex-io-"));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,175 +1,728 @@
 package com.danielremsburg.archinex.core;
 
+import com.danielremsburg.archinex.cache.AccessStats;
+import com.danielremsburg.archinex.cache.AdmissionStats;
 import com.danielremsburg.archinex.cache.Cache;
+import com.danielremsburg.archinex.cache.CacheAdmissionPolicy;
+import com.danielremsburg.archinex.cache.CacheFactory;
+import com.danielremsburg.archinex.cache.MemoryCache;
+import com.danielremsburg.archinex.cache.NearCache;
+import com.danielremsburg.archinex.cache.TieredCache;
 import com.danielremsburg.archinex.config.ArchinexConfig;
+import com.danielremsburg.archinex.config.ConfigSnapshot;
 import com.danielremsburg.archinex.journal.Journal;
 import com.danielremsburg.archinex.metadata.FileMetadata;
+import com.danielremsburg.archinex.metadata.MetadataQuery;
 import com.danielremsburg.archinex.metadata.MetadataStore;
 import com.danielremsburg.archinex.metadata.MetadataStoreException;
+import com.danielremsburg.archinex.retention.BasicRetentionPolicy;
 import com.danielremsburg.archinex.retention.RetentionPolicy;
+import com.danielremsburg.archinex.retention.RetentionRule;
+import com.danielremsburg.archinex.storage.BackendStats;
+import com.danielremsburg.archinex.storage.CircuitBreakerStorage;
+import com.danielremsburg.archinex.storage.MonitoredStorage;
 import com.danielremsburg.archinex.storage.Storage;
 import com.danielremsburg.archinex.plan.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class Planner {
 
     private static final Logger logger = LoggerFactory.getLogger(Planner.class);
 
+    private static final long PREFETCH_COOLDOWN_MS = 60_000;
+    private static final long POOL_SHUTDOWN_SECONDS = 30;
+
+    // A file on its way through storeFile; completed individually even when stored in a batch
+    private static final class StoreRequest {
+        final String path;
+        final byte[] data;
+        final Map<String, String> metadata;
+        final FileMetadata fileMetadata;
+        final StoreDecision decision;
+        final CompletableFuture<Void> metadataStored = new CompletableFuture<>();
+        final CompletableFuture<UUID> stored = new CompletableFuture<>();
+
+        StoreRequest(String path, byte[] data, Map<String, String> metadata, FileMetadata fileMetadata,
+                     StoreDecision decision) {
+            this.path = path;
+            this.data = data;
+            this.metadata = metadata;
+            this.fileMetadata = fileMetadata;
+            this.decision = decision;
+        }
+    }
+
     private final ArchinexConfig config;
     private final Storage storage;
+    private final BackendStats backendStats;
     private final MetadataStore metadataStore;
     private final Journal journal;
     private final RetentionPolicy retentionPolicy;
     private final Cache cache;
+    private final CacheAdmissionPolicy cacheAdmission;
+    private final SingleFlight<UUID, byte[]> retrievals = new SingleFlight<>();
+    private final MemoryCache staleCopies; // null unless stale-while-revalidate is enabled
+    private final AccessStats accessStats;
+    private final Path accessStatsPath;
+    private final Map<String, Long> recentPrefetches = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > 1024;
+        }
+    };
+    private CacheWarmer cacheWarmer;
+    private ScheduledExecutorService accessStatsSaver;
+    private final List<Closeable> ownedResources = new ArrayList<>(); // Built by fromConfig, closed on stop
     private final ExecutorService executorService;
+    private final WorkloadScheduler scheduler;
+    private final ExecutorService interactive;
+    private final ExecutorService background;
     private final PlanFactory planFactory;
     private final PlanExecutor planExecutor;
     private final DecisionMaker decisionMaker;
+    private final StoreBatcher<StoreRequest> storeBatcher; // null unless batching is enabled
+    private final long batchMaxFileBytes;
+
+    /**
+     * Builds a planner with the cache selected by {@code cache.type}, a basic retention policy over
+     * the given rules, and the I/O and CPU pools from {@link ExecutorPools}. The planner shuts the
+     * pools down and closes the cache when it stops.
+     */
+    public static Planner fromConfig(ArchinexConfig config, Storage storage, MetadataStore metadataStore, Journal journal,
+                                     List<RetentionRule> retentionRules) {
+        Cache cache = CacheFactory.createCache(config);
+        RetentionPolicy retentionPolicy = new BasicRetentionPolicy(config.getRetentionPolicyType(),
+                "Retention rules from the configuration", retentionRules, metadataStore, cache, storage);
+        ExecutorService ioPool = ExecutorPools.newIoPool(config);
+        ExecutorService cpuPool = ExecutorPools.newCpuPool(config);
+        Planner planner = new Planner(config, storage, metadataStore, journal, retentionPolicy, cache, ioPool, cpuPool);
+        // Pools first, so no plan step is still writing to the cache when it closes
+        planner.ownedResources.add(() -> shutdown(cpuPool));
+        planner.ownedResources.add(() -> shutdown(ioPool));
+        if (cache instanceof Closeable) {
+            planner.ownedResources.add((Closeable) cache);
+        }
+        return planner;
+    }
+
+    private static void shutdown(ExecutorService pool) {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(POOL_SHUTDOWN_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Planner tasks still running after {} s; interrupting them", POOL_SHUTDOWN_SECONDS);
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
 
     public Planner(ArchinexConfig config, Storage storage, MetadataStore metadataStore,
                    Journal journal, RetentionPolicy retentionPolicy, Cache cache, ExecutorService executorService) {
+        this(config, storage, metadataStore, journal, retentionPolicy, cache, executorService, null);
+    }
+
+    /**
+     * @param executorService     runs blocking I/O, as scheduled by the {@link WorkloadScheduler};
+     *                            see {@link ExecutorPools#newIoPool}
+     * @param cpuExecutorService  runs CPU-bound plan steps; null to run them as ingest work on
+     *                            {@code executorService}
+     */
+    public Planner(ArchinexConfig config, Storage storage, MetadataStore metadataStore, Journal journal,
+                   RetentionPolicy retentionPolicy, Cache cache, ExecutorService executorService,
+                   ExecutorService cpuExecutorService) {
         this.config = config;
-        this.storage = storage;
+        this.backendStats = new BackendStats(config.getDoubleOrDefault("storage.stats.initialLatencyMillis", 20.0),
+                config.getDoubleOrDefault("storage.stats.initialThroughputMB", 50.0) * 1024 * 1024);
+        // Outermost, so calls rejected by an open breaker are not timed as backend calls
+        this.storage = new MonitoredStorage(CircuitBreakerStorage.wrap(storage, config), backendStats);
         this.metadataStore = metadataStore;
         this.journal = journal;
         this.retentionPolicy = retentionPolicy;
         this.cache = cache;
+        this.cacheAdmission = new CacheAdmissionPolicy(config.snapshot());
+
+        long staleSeconds = config.getLongOrDefault("cache.staleWhileRevalidate.seconds", 0L);
+        this.staleCopies = staleSeconds > 0
+                ? new MemoryCache(config.getLongOrDefault("cache.staleWhileRevalidate.maxSize", 256L) * 1024L * 1024L,
+                        staleSeconds * 1000L)
+                : null;
+
+        this.accessStats = new AccessStats(config.getIntOrDefault("cache.accessStats.maxEntries", 10_000),
+                TimeUnit.HOURS.toMillis(config.getLongOrDefault("cache.accessStats.halfLifeHours", 24L)));
+        this.accessStatsPath = Paths.get(expandHomeDirectory(config.getAccessStatsPath()));
         this.executorService = executorService;
+        this.scheduler = new WorkloadScheduler(executorService, config);
+        this.interactive = scheduler.executor(WorkloadClass.INTERACTIVE);
+        this.background = scheduler.executor(WorkloadClass.BACKGROUND);
+
+        this.planFactory = new PlanFactory(this.storage);
+        ExecutorService ingest = scheduler.executor(WorkloadClass.INGEST);
+        this.planExecutor = new PlanExecutor(ingest, cpuExecutorService != null ? cpuExecutorService : ingest, config);
+        this.decisionMaker = new DecisionMaker(planFactory, config, backendStats);
+
+        long batchWindowMillis = config.getLongOrDefault("planner.batch.windowMillis", 5L);
+        this.batchMaxFileBytes = config.getLongOrDefault("planner.batch.maxFileSizeKB", 256L) * 1024L;
+        this.storeBatcher = batchWindowMillis > 0
+                ? new StoreBatcher<>(batchWindowMillis, config.getIntOrDefault("planner.batch.maxFiles", 256),
+                        config.getLongOrDefault("planner.batch.maxSizeKB", 8192L) * 1024L,
+                        request -> request.data.length, this::storeBatch, ingest)
+                : null;
+
+        config.addReloadListener(this::applyConfig);
+    }
+
+    // Applies the tunables that can change without a restart; the rest are read per call
+    private void applyConfig(ConfigSnapshot snapshot) {
+        cacheAdmission.reconfigure(snapshot.isCacheWriteThrough(), snapshot.getCacheMaxObjectBytes(),
+                snapshot.getCacheMinAccesses());
+
+        Cache memoryLevel = cache instanceof TieredCache ? ((TieredCache) cache).getFirstLevel() : cache;
+        if (memoryLevel instanceof MemoryCache && ((MemoryCache) memoryLevel).getMaximumBytes() != snapshot.getCacheMaxBytes()
+                && !(cache instanceof NearCache)) {
+            ((MemoryCache) memoryLevel).setMaximumBytes(snapshot.getCacheMaxBytes());
+        }
 
-        this.planFactory = new PlanFactory(storage);
-        this.planExecutor = new PlanExecutor(executorService);
-        this.decisionMaker = new DecisionMaker(planFactory, config);
+        // An adaptive scheduler sizes itself; otherwise planner.threadPoolSize is the fixed limit
+        int size = snapshot.getPlannerThreadPoolSize();
+        if (!scheduler.isAdaptive() && size > 0 && size != scheduler.getConcurrencyLimit()) {
+            if (executorService instanceof ThreadPoolExecutor) {
+                ThreadPoolExecutor pool = (ThreadPoolExecutor) executorService;
+                // Order matters: core may never exceed maximum
+                if (size > pool.getMaximumPoolSize()) {
+                    pool.setMaximumPoolSize(size);
+                    pool.setCorePoolSize(size);
+                } else {
+                    pool.setCorePoolSize(size);
+                    pool.setMaximumPoolSize(size);
+                }
+            }
+            scheduler.setMaxConcurrency(size);
+            logger.info("Planner concurrency set to {}", size);
+        }
+        scheduler.reconfigure();
     }
 
     public void start() {
         logger.info("Starting Planner...");
+
+        if (Files.exists(accessStatsPath)) {
+            try {
+                logger.info("Loaded access stats for {} files", accessStats.load(accessStatsPath));
+            } catch (IOException e) {
+                logger.warn("Ignoring unreadable access stats {}: {}", accessStatsPath, e.getMessage());
+            }
+        }
+        long warmupRateMB = config.getLongOrDefault("cache.warmup.rateMB", 32L);
+        if (config.getBooleanOrDefault("cache.warmup.enabled", true) && warmupRateMB != 0 && accessStats.size() > 0) {
+            cacheWarmer = new CacheWarmer(accessStats, this::prefetch,
+                    config.getIntOrDefault("cache.accessStats.maxEntries", 10_000),
+                    config.getLongOrDefault("cache.warmup.maxSize", 512L) * 1024L * 1024L,
+                    warmupRateMB * 1024L * 1024L);
+            cacheWarmer.start();
+        }
+
+        long saveInterval = config.getLongOrDefault("cache.accessStats.saveIntervalSeconds", 300L);
+        if (saveInterval > 0) {
+            accessStatsSaver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "access-stats-save");
+                thread.setDaemon(true);
+                return thread;
+            });
+            accessStatsSaver.scheduleWithFixedDelay(this::saveAccessStats, saveInterval, saveInterval, TimeUnit.SECONDS);
+        }
     }
 
+    public void stop() {
+        logger.info("Stopping Planner...");
+        if (cacheWarmer != null) {
+            cacheWarmer.close();
+        }
+        if (accessStatsSaver != null) {
+            accessStatsSaver.shutdownNow();
+        }
+        if (storeBatcher != null) {
+            storeBatcher.close();
+        }
+        saveAccessStats();
+        for (Closeable resource : ownedResources) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                logger.warn("Error closing {}: {}", resource.getClass().getSimpleName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void saveAccessStats() {
+        try {
+            Files.createDirectories(accessStatsPath.getParent());
+            accessStats.save(accessStatsPath);
+        } catch (IOException e) {
+            logger.warn("Error saving access stats: {}", e.getMessage(), e);
+        }
+    }
+
+    // Waits for the background tasks it queues, so it must not run on the planner's own pool
     public void runPolicyEngine() {
         logger.info("Running Policy Engine...");
+        Instant cutoff = retentionPolicy.getDeletionCutoff(Instant.now());
+        if (cutoff == null) {
+            return; // No rule can expire anything
+        }
         try {
-            metadataStore.getAllFiles().forEach(fileMetadata -> {
-                if (retentionPolicy.shouldDelete(fileMetadata)) {
-                    try {
-                        // Use config to check if deletion should proceed
-                        boolean enableDelete = config.getBooleanOrDefault("storage.enableDelete", true);
-
-                        if (enableDelete) {
-                            storage.delete(fileMetadata.getUuid());
+            // Page through only the files old enough to be due, using the creation date index
+            MetadataQuery query = new MetadataQuery().createdBefore(cutoff).limit(config.snapshot().getMetadataScanFetchSize());
+            List<FileMetadata> page = metadataStore.query(query);
+            while (!page.isEmpty()) {
+                // Deletes queue as background work, behind retrieves and stores; a page at a time
+                List<CompletableFuture<Void>> expiries = new ArrayList<>();
+                for (FileMetadata fileMetadata : page) {
+                    if (retentionPolicy.shouldDelete(fileMetadata)) {
+                        try {
+                            expiries.add(CompletableFuture.runAsync(() -> expire(fileMetadata), background));
+                        } catch (RejectedExecutionException e) {
+                            expire(fileMetadata);
                         }
-                        metadataStore.delete(fileMetadata.getUuid());
-                        journal.log("File deleted: " + fileMetadata.getUuid());
-                        cache.remove(fileMetadata.getUuid());
-                    } catch (Exception e) {
-                        logger.error("Error deleting file: " + fileMetadata.getUuid(), e);
-                        journal.log("Error deleting file: " + fileMetadata.getUuid() + ": " + e.getMessage());
                     }
                 }
-            });
+                try {
+                    CompletableFuture.allOf(expiries.toArray(new CompletableFuture<?>[0])).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    logger.error("Error expiring files: {}", e.getCause().getMessage(), e.getCause());
+                }
+                page = metadataStore.query(query.startAfter(page.get(page.size() - 1)));
+            }
         } catch (MetadataStoreException e) {
             logger.error("Error retrieving all files from metadata store: {}", e.getMessage(), e);
             journal.log("Error retrieving all files from metadata store: " + e.getMessage());
         }
     }
 
+    private void expire(FileMetadata fileMetadata) {
+        try {
+            // Use config to check if deletion should proceed
+            boolean enableDelete = config.snapshot().isDeleteEnabled();
+
+            if (enableDelete) {
+                for (UUID key : StoreStrategy.storageKeys(fileMetadata)) {
+                    storage.delete(key);
+                }
+            }
+            metadataStore.delete(fileMetadata.getUuid());
+            journal.log("File deleted: " + fileMetadata.getUuid());
+            cache.remove(fileMetadata.getUuid());
+            accessStats.remove(fileMetadata.getUuid());
+            if (staleCopies != null) {
+                staleCopies.remove(fileMetadata.getUuid());
+            }
+        } catch (Exception e) {
+            logger.error("Error deleting file: " + fileMetadata.getUuid(), e);
+            journal.log("Error deleting file: " + fileMetadata.getUuid() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stores a file and returns once its metadata is stored; the data is written in the
+     * background. Use {@link #storeFileAsync} to learn when the data is stored too.
+     */
     public void storeFile(String path, byte[] data, Map<String, String> metadata) throws IOException {
+        StoreRequest request = submitStore(path, data, metadata);
+        try {
+            request.metadataStored.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while storing file: " + path, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error storing file: " + path, e.getCause());
+        }
+    }
+
+    /**
+     * Stores a file. The returned future completes with the file's UUID once its data, metadata
+     * and journal entry are written, or fails with the error that stopped it. Small files are
+     * batched with other stores (see {@code planner.batch.*}), but each one completes on its own.
+     */
+    public CompletableFuture<UUID> storeFileAsync(String path, byte[] data, Map<String, String> metadata) {
+        try {
+            return submitStore(path, data, metadata).stored;
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private StoreRequest submitStore(String path, byte[] data, Map<String, String> metadata) {
         UUID uuid = UUID.randomUUID();
         FileMetadata fileMetadata = new FileMetadata(uuid, path, data.length);
+        fileMetadata.setUserMetadata(metadata);
 
-        // Store metadata
-        try {
-            metadataStore.store(fileMetadata);
-        } catch (MetadataStoreException e) {
-            logger.error("Error storing metadata: {}", e.getMessage(), e);
-            throw new IOException("Error storing metadata: " + e.getMessage(), e);
+        // Decided before the metadata is stored, since the layout is recorded in its tags
+        StoreDecision decision = decisionMaker.decide(fileMetadata, data);
+        if (decision.getStrategy() != StoreStrategy.DIRECT) {
+            Map<String, String> tags = new HashMap<>(fileMetadata.getTags());
+            tags.put(StoreStrategy.STRATEGY_TAG, decision.getStrategy().name().toLowerCase(Locale.ROOT));
+            if (decision.getStrategy() == StoreStrategy.MULTIPART) {
+                tags.put(StoreStrategy.PARTS_TAG, Integer.toString(decision.getPartCount()));
+            }
+            fileMetadata.setTags(tags);
+        }
+
+        StoreRequest request = new StoreRequest(path, data, metadata, fileMetadata, decision);
+        if (storeBatcher != null && data.length <= batchMaxFileBytes) {
+            try {
+                storeBatcher.add(request);
+                return request;
+            } catch (RejectedExecutionException e) {
+                logger.debug("Storing {} unbatched: {}", path, e.getMessage());
+            }
         }
+        storeBatch(Collections.singletonList(request));
+        return request;
+    }
 
+    /**
+     * Stores a batch of files: one metadata write for the batch, then every file's plan at once
+     * so the writes run in parallel, then one journal append and cache update when all are done.
+     */
+    private void storeBatch(List<StoreRequest> batch) {
         try {
-            Plan plan = decisionMaker.choosePlan(fileMetadata);
+            if (batch.size() == 1) {
+                metadataStore.store(batch.get(0).fileMetadata);
+            } else {
+                List<FileMetadata> files = new ArrayList<>(batch.size());
+                for (StoreRequest request : batch) {
+                    files.add(request.fileMetadata);
+                }
+                metadataStore.storeAll(files);
+            }
+        } catch (MetadataStoreException | RuntimeException e) {
+            logger.error("Error storing metadata: {}", e.getMessage(), e);
+            IOException failure = new IOException("Error storing metadata: " + e.getMessage(), e);
+            for (StoreRequest request : batch) {
+                request.metadataStored.completeExceptionally(failure);
+                request.stored.completeExceptionally(failure);
+            }
+            return;
+        }
 
-            // Submit storage tasks to executorService for concurrent execution
-            executorService.submit(() -> {
+        CompletableFuture<?>[] plans = new CompletableFuture<?>[batch.size()];
+        for (int i = 0; i < plans.length; i++) {
+            StoreRequest request = batch.get(i);
+            request.metadataStored.complete(null);
+            try {
+                Plan plan = decisionMaker.planFor(request.decision);
+                // The executor schedules the plan's steps itself; independent ones run concurrently
+                plans[i] = planExecutor.executePlan(plan, request.fileMetadata.getUuid(), request.data, request.metadata);
+            } catch (RuntimeException e) {
                 try {
-                    planExecutor.executePlan(plan, uuid, data, metadata);
-                    journal.log("File storage plan executed: " + path + " (UUID: " + uuid + ")");
-                    cache.put(uuid, data);
-                } catch (Exception e) {
-                    logger.error("Error executing storage plan for file: {}", path, e);
-                    journal.log("Error executing storage plan for file: " + path + " (UUID: " + uuid + ")");
+                    metadataStore.delete(request.fileMetadata.getUuid());
+                } catch (MetadataStoreException ex) {
+                    logger.error("Error deleting metadata after storage failure: {}", ex.getMessage(), ex);
                 }
-            });
-        } catch (RuntimeException e) {
+                plans[i] = CompletableFuture.failedFuture(e);
+            }
+        }
+        CompletableFuture.allOf(plans).whenComplete((ignored, failure) -> finishBatch(batch, plans));
+    }
+
+    private void finishBatch(List<StoreRequest> batch, CompletableFuture<?>[] plans) {
+        List<String> entries = new ArrayList<>(batch.size());
+        Map<UUID, byte[]> admitted = new HashMap<>();
+        Throwable[] failures = new Throwable[plans.length];
+        for (int i = 0; i < plans.length; i++) {
+            StoreRequest request = batch.get(i);
+            UUID uuid = request.fileMetadata.getUuid();
             try {
-                metadataStore.delete(uuid);
-            } catch (MetadataStoreException ex) {
-                logger.error("Error deleting metadata after storage failure: {}", ex.getMessage(), ex);
+                plans[i].join();
+                entries.add("File storage plan executed: " + request.path + " (UUID: " + uuid + ")");
+                if (cacheAdmission.admitOnStore(uuid, request.data.length)) {
+                    admitted.put(uuid, request.data);
+                }
+            } catch (CompletionException | CancellationException e) {
+                failures[i] = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                logger.error("Error executing storage plan for file: {}", request.path, failures[i]);
+                entries.add("Error executing storage plan for file: " + request.path + " (UUID: " + uuid + ")");
+            }
+        }
+        try {
+            journal.logAll(entries);
+        } catch (RuntimeException e) {
+            logger.error("Error journaling {} stored files: {}", entries.size(), e.getMessage(), e);
+        }
+        try {
+            if (!admitted.isEmpty()) {
+                cache.putAll(admitted);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error caching {} stored files: {}", admitted.size(), e.getMessage(), e);
+        }
+        for (int i = 0; i < plans.length; i++) {
+            StoreRequest request = batch.get(i);
+            if (failures[i] == null) {
+                request.stored.complete(request.fileMetadata.getUuid());
+            } else {
+                request.stored.completeExceptionally(failures[i]);
             }
-            throw e;
         }
     }
 
+    /**
+     * Finds every file stored with the given user metadata entry, using the metadata store's tag
+     * index rather than listing the storage backend.
+     */
+    public List<FileMetadata> findFilesByTag(String key, String value) throws IOException {
+        try {
+            MetadataQuery query = new MetadataQuery().tag(key, value).limit(config.snapshot().getMetadataScanFetchSize());
+            List<FileMetadata> files = new ArrayList<>();
+            List<FileMetadata> page = metadataStore.query(query);
+            while (!page.isEmpty()) {
+                files.addAll(page);
+                page = metadataStore.query(query.startAfter(page.get(page.size() - 1)));
+            }
+            return files;
+        } catch (MetadataStoreException e) {
+            logger.error("Error finding files by tag: {}", e.getMessage(), e);
+            throw new IOException("Error finding files by tag: " + e.getMessage(), e);
+        }
+    }
+
+    /** Blocking form of {@link #retrieveFileAsync(String)}. */
     public byte[] retrieveFile(String uuid) throws IOException {
-        // Check cache first
-        byte[] cachedData = cache.get(UUID.fromString(uuid));
+        return await(uuid, retrieveFileAsync(uuid));
+    }
+
+    public CompletableFuture<byte[]> retrieveFileAsync(String uuid) {
+        return retrieveFileAsync(uuid, Duration.ofMillis(config.snapshot().getRetrieveTimeoutMillis()));
+    }
+
+    /**
+     * Retrieves a file without blocking the caller. The fetch runs on the planner's executor and
+     * is shared with concurrent requests for the same file. The returned future fails with a
+     * {@link java.util.concurrent.TimeoutException} once {@code timeout} elapses (zero or null for
+     * no deadline). Cancelling it, or letting it time out, interrupts the storage fetch when no
+     * other request still waits for it.
+     */
+    public CompletableFuture<byte[]> retrieveFileAsync(String uuid, Duration timeout) {
+        UUID id;
+        try {
+            id = UUID.fromString(uuid);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException("Invalid file UUID: " + uuid, e));
+        }
+        accessStats.record(id);
+
+        try {
+            // Check cache first
+            byte[] cachedData = cache.get(id);
+            if (cachedData != null) {
+                return CompletableFuture.completedFuture(cachedData);
+            }
+
+            if (staleCopies != null) {
+                byte[] stale = staleCopies.get(id);
+                if (stale != null) {
+                    // Serve the last copy while a single background fetch refreshes the cache
+                    retrievals.executeAsync(id, () -> fetch(id, false), background)
+                            .whenComplete((data, e) -> {
+                                if (e != null) {
+                                    logger.warn("Background refresh failed for UUID: {}", uuid, e);
+                                }
+                            });
+                    return CompletableFuture.completedFuture(stale);
+                }
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // Concurrent misses for the same UUID share one metadata lookup and storage fetch
+        CompletableFuture<byte[]> retrieval = retrievals.executeAsync(id, () -> fetch(id, false), interactive);
+        if (timeout != null && !timeout.isZero() && !timeout.isNegative()) {
+            retrieval.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return retrieval;
+    }
+
+    // Loads a file into the cache ahead of demand; used by warmup and sibling prefetch
+    private byte[] prefetch(UUID uuid) throws IOException {
+        byte[] cachedData = cache.get(uuid);
         if (cachedData != null) {
             return cachedData;
         }
+        // Runs on the calling (warmup or executor) thread, so it never waits on a queued task
+        return await(uuid.toString(), retrievals.execute(uuid, () -> fetch(uuid, true)));
+    }
 
+    private byte[] await(String uuid, CompletableFuture<byte[]> retrieval) throws IOException {
+        try {
+            return retrieval.get();
+        } catch (InterruptedException e) {
+            retrieval.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while retrieving file: " + uuid, e);
+        } catch (CancellationException e) {
+            throw new IOException("Retrieval cancelled: " + uuid, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof TimeoutException) {
+                throw new IOException("Timed out retrieving file: " + uuid, e.getCause());
+            }
+            logger.error("Error retrieving file for UUID: " + uuid, e.getCause());
+            throw new IOException("Error retrieving file: " + uuid, e.getCause());
+        }
+    }
+
+    private byte[] fetch(UUID uuid, boolean prefetch) throws IOException {
         // If not cached, retrieve from metadata store
         FileMetadata metadata;
         try {
-            metadata = metadataStore.get(UUID.fromString(uuid));
+            metadata = metadataStore.get(uuid);
         } catch (MetadataStoreException e) {
             logger.error("Error retrieving metadata: {}", e.getMessage(), e);
             throw new IOException("Error retrieving metadata: " + e.getMessage(), e);
         }
 
         if (metadata == null) {
+            accessStats.remove(uuid);
+            if (staleCopies != null) {
+                staleCopies.remove(uuid);
+            }
             throw new IOException("File not found: " + uuid);
         }
 
-        try {
-            Plan plan = decisionMaker.choosePlan(metadata);
+        Plan plan = planFactory.createRetrievePlan(metadata);
+        RetrieveAction action = plan.getActions().stream()
+                .filter(RetrieveAction.class::isInstance)
+                .map(RetrieveAction.class::cast)
+                .findFirst()
+                .orElseThrow(() -> new IOException("No retrieve action in plan for UUID: " + uuid));
+
+        AtomicReference<byte[]> retrievedDataHolder = new AtomicReference<>();
+        planExecutor.getRetryPolicy(RetrieveAction.class).call(() -> {
+            action.retrieveAndProcess(uuid, retrievedDataHolder::set);
+            return null;
+        });
 
-            // Using AtomicReference to hold the retrieved data
-            AtomicReference<byte[]> retrievedDataHolder = new AtomicReference<>();
+        byte[] retrievedData = retrievedDataHolder.get();
+        if (retrievedData != null && (prefetch
+                ? cacheAdmission.admitOnPrefetch(uuid, retrievedData.length)
+                : cacheAdmission.admitOnRetrieve(uuid, retrievedData.length))) {
+            cache.put(uuid, retrievedData);
+            if (staleCopies != null) {
+                staleCopies.put(uuid, retrievedData);
+            }
+        }
+        if (!prefetch) {
+            prefetchSiblings(metadata);
+        }
+        return retrievedData;
+    }
 
-            // Execute retrieve action asynchronously using executorService
-            executorService.submit(() -> {
+    /**
+     * Files under the same directory are often read together, so after a miss the next few
+     * files in the directory are loaded in the background. Each directory is prefetched at most
+     * once a minute.
+     */
+    private void prefetchSiblings(FileMetadata metadata) {
+        String path = metadata.getPath();
+        int slash = path == null ? -1 : path.lastIndexOf('/');
+        int prefetchSiblings = config.snapshot().getPrefetchSiblings();
+        if (prefetchSiblings <= 0 || slash <= 0) {
+            return;
+        }
+        String prefix = path.substring(0, slash + 1);
+        long now = System.currentTimeMillis();
+        synchronized (recentPrefetches) {
+            Long last = recentPrefetches.get(prefix);
+            if (last != null && now - last < PREFETCH_COOLDOWN_MS) {
+                return;
+            }
+            recentPrefetches.put(prefix, now);
+        }
+        try {
+            background.execute(() -> {
                 try {
-                    plan.getActions().stream()
-                            .filter(RetrieveAction.class::isInstance)
-                            .findFirst()
-                            .ifPresent(action -> {
-                                try {
-                                    ((RetrieveAction) action).retrieveAndProcess(UUID.fromString(uuid), retrievedDataHolder::set);
-                                } catch (IOException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            });
+                    // Extra rows leave room for files in subdirectories, which are skipped
+                    MetadataQuery query = new MetadataQuery().pathPrefix(prefix).limit(prefetchSiblings * 4 + 1);
+                    int prefetched = 0;
+                    for (FileMetadata sibling : metadataStore.query(query)) {
+                        if (prefetched == prefetchSiblings) {
+                            break;
+                        }
+                        if (sibling.getUuid().equals(metadata.getUuid()) || sibling.getPath().indexOf('/', prefix.length()) >= 0) {
+                            continue;
+                        }
+                        prefetch(sibling.getUuid());
+                        prefetched++;
+                    }
                 } catch (Exception e) {
-                    logger.error("Error retrieving data for UUID: " + uuid, e);
+                    logger.debug("Sibling prefetch under {} failed: {}", prefix, e.getMessage());
                 }
             });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Skipping sibling prefetch under {}: {}", prefix, e.getMessage());
+        }
+    }
 
-            // Wait for data to be retrieved
-            byte[] retrievedData = retrievedDataHolder.get();
-            if (retrievedData != null) {
-                cache.put(UUID.fromString(uuid), retrievedData);
-            }
+    /** The latest store strategy decisions with their inputs and estimates, oldest first. */
+    public List<StoreDecision> getRecentStoreDecisions() {
+        return decisionMaker.getRecentDecisions();
+    }
 
-            return retrievedData;
-        } catch (Exception e) {
-            logger.error("Error retrieving file for UUID: " + uuid, e);
-            throw new IOException("Error retrieving file: " + uuid, e);
-        }
+    public BackendStats.Snapshot getBackendStats() {
+        return backendStats.snapshot();
+    }
+
+    /** The current limit on concurrent I/O tasks, which adapts to latency with {@code planner.io.adaptive}. */
+    public int getIoConcurrencyLimit() {
+        return scheduler.getConcurrencyLimit();
+    }
+
+    /** Queue and concurrency counters of each workload class. */
+    public List<WorkloadStats> getWorkloadStats() {
+        return scheduler.stats();
+    }
+
+    public AdmissionStats getCacheAdmissionStats() {
+        return cacheAdmission.stats();
     }
 
     private String expandHomeDirectory(String path) {
@@ -185,6 +738,6 @@ public class Planner {
     }
 
     public boolean isDeleteEnabled() {
-        return config.getBooleanOrDefault("storage.enableDelete", true);
+        return config.snapshot().isDeleteEnabled();
     }
 }
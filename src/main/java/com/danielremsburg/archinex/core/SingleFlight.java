@@ -0,0 +1,122 @@
+package com.danielremsburg.archinex.core;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces concurrent loads of the same key: while a load is running, later callers for that key
+ * wait for it instead of starting their own. Nothing is kept once a load completes, so the next
+ * caller after that loads again.
+ * <p>
+ * Each caller gets its own future, which it may cancel or put a timeout on without affecting the
+ * others. When every caller of a load running on an executor has given up, the load itself is
+ * cancelled and its thread interrupted.
+ */
+public class SingleFlight<K, V> {
+
+    private final class Flight {
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        final AtomicInteger waiters = new AtomicInteger(); // -1 once abandoned
+        volatile Future<?> task;
+    }
+
+    private final ConcurrentMap<K, Flight> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Runs {@code loader} on the calling thread unless a load of {@code key} is already running,
+     * in which case the returned future completes with that load's result.
+     */
+    public CompletableFuture<V> execute(K key, Callable<V> loader) {
+        while (true) {
+            Flight created = new Flight();
+            Flight flight = inFlight.putIfAbsent(key, created);
+            if (flight == null) {
+                CompletableFuture<V> waiter = join(created);
+                run(key, created, loader);
+                return waiter;
+            }
+            CompletableFuture<V> waiter = join(flight);
+            if (waiter != null) {
+                return waiter;
+            }
+            inFlight.remove(key, flight); // Abandoned just now; start a new load
+        }
+    }
+
+    /** Like {@link #execute}, but a new load runs on {@code executor}. */
+    public CompletableFuture<V> executeAsync(K key, Callable<V> loader, ExecutorService executor) {
+        while (true) {
+            Flight created = new Flight();
+            Flight flight = inFlight.putIfAbsent(key, created);
+            if (flight == null) {
+                CompletableFuture<V> waiter = join(created);
+                try {
+                    created.task = executor.submit(() -> run(key, created, loader));
+                } catch (RejectedExecutionException e) {
+                    inFlight.remove(key, created);
+                    created.result.completeExceptionally(e);
+                }
+                return waiter;
+            }
+            CompletableFuture<V> waiter = join(flight);
+            if (waiter != null) {
+                return waiter;
+            }
+            inFlight.remove(key, flight);
+        }
+    }
+
+    public boolean isInFlight(K key) {
+        return inFlight.containsKey(key);
+    }
+
+    // Returns null if the flight was abandoned before this caller could join it
+    private CompletableFuture<V> join(Flight flight) {
+        if (flight.waiters.getAndUpdate(n -> n < 0 ? n : n + 1) < 0) {
+            return null;
+        }
+        CompletableFuture<V> waiter = new CompletableFuture<>();
+        flight.result.whenComplete((value, failure) -> {
+            if (failure != null) {
+                waiter.completeExceptionally(failure);
+            } else {
+                waiter.complete(value);
+            }
+        });
+        waiter.whenComplete((value, failure) -> {
+            if (flight.waiters.decrementAndGet() == 0 && !flight.result.isDone()) {
+                abandon(flight);
+            }
+        });
+        return waiter;
+    }
+
+    // The last caller gave up (cancelled or timed out); stop a load that runs on an executor
+    private void abandon(Flight flight) {
+        Future<?> task = flight.task;
+        if (task != null && flight.waiters.compareAndSet(0, -1)) {
+            task.cancel(true);
+            flight.result.cancel(false);
+        }
+    }
+
+    private void run(K key, Flight flight, Callable<V> loader) {
+        V value;
+        try {
+            value = loader.call();
+        } catch (Throwable t) {
+            inFlight.remove(key, flight);
+            flight.result.completeExceptionally(t);
+            return;
+        }
+        // Removed first, so a caller arriving after the waiters wake starts a fresh load
+        inFlight.remove(key, flight);
+        flight.result.complete(value);
+    }
+}
@@ -0,0 +1,145 @@
+package com.danielremsburg.archinex.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Collects requests into batches, the way Nagle's algorithm collects small writes. A request that
+ * arrives while no batch is being flushed goes out at once, on its own. Requests that arrive
+ * during a flush wait for it, and are handed to the flush function on {@code executor} together
+ * when it returns, once they hold {@code maxItems} requests or {@code maxBytes} bytes, or
+ * {@code windowMillis} after the first of them arrived, whichever comes first. A caller storing
+ * one file at a time therefore never waits for the window; concurrent callers share flushes.
+ */
+public class StoreBatcher<T> implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreBatcher.class);
+
+    private final long windowMillis;
+    private final int maxItems;
+    private final long maxBytes;
+    private final ToLongFunction<T> sizer;
+    private final Consumer<List<T>> flush;
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+
+    private List<T> pending = new ArrayList<>();
+    private long pendingBytes;
+    private long generation; // Identifies the pending batch, so a late timer leaves the next one alone
+    private int flushing; // Batches handed to the flush function that it has not returned from
+    private boolean closed;
+
+    public StoreBatcher(long windowMillis, int maxItems, long maxBytes, ToLongFunction<T> sizer,
+                        Consumer<List<T>> flush, Executor executor) {
+        this.windowMillis = windowMillis;
+        this.maxItems = Math.max(1, maxItems);
+        this.maxBytes = maxBytes;
+        this.sizer = sizer;
+        this.flush = flush;
+        this.executor = executor;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "store-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void add(T request) {
+        List<T> full = null;
+        synchronized (this) {
+            if (closed) {
+                throw new RejectedExecutionException("Store batcher is closed");
+            }
+            boolean idle = pending.isEmpty() && flushing == 0;
+            if (pending.isEmpty() && !idle) {
+                long batch = generation;
+                timer.schedule(() -> flushIfPending(batch), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            pending.add(request);
+            pendingBytes += sizer.applyAsLong(request);
+            if (idle || pending.size() >= maxItems || pendingBytes >= maxBytes) {
+                full = take();
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+    }
+
+    /** Flushes the pending batch and stops accepting requests. */
+    @Override
+    public void close() {
+        List<T> last;
+        synchronized (this) {
+            closed = true;
+            last = pending.isEmpty() ? null : take();
+        }
+        timer.shutdownNow();
+        if (last != null) {
+            dispatch(last);
+        }
+    }
+
+    private void flushIfPending(long batch) {
+        List<T> due = null;
+        synchronized (this) {
+            if (generation == batch && !pending.isEmpty()) {
+                due = take();
+            }
+        }
+        if (due != null) {
+            dispatch(due);
+        }
+    }
+
+    // Hands the requests that waited for this flush on as soon as it returns
+    private void flushed() {
+        List<T> next = null;
+        synchronized (this) {
+            flushing--;
+            if (flushing == 0 && !pending.isEmpty()) {
+                next = take();
+            }
+        }
+        if (next != null) {
+            dispatch(next);
+        }
+    }
+
+    private List<T> take() {
+        List<T> batch = pending;
+        pending = new ArrayList<>();
+        pendingBytes = 0;
+        generation++;
+        flushing++;
+        return batch;
+    }
+
+    private void dispatch(List<T> batch) {
+        try {
+            executor.execute(() -> flush(batch));
+        } catch (RejectedExecutionException e) {
+            logger.debug("Flushing batch of {} on the calling thread: {}", batch.size(), e.getMessage());
+            flush(batch);
+        }
+    }
+
+    private void flush(List<T> batch) {
+        try {
+            flush.accept(batch);
+        } finally {
+            flushed();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.danielremsburg.archinex.core;
+
+import java.util.Locale;
+
+/**
+ * The kinds of work the planner schedules. Each has its own queue, weight and concurrency limit
+ * in the {@link WorkloadScheduler}.
+ */
+public enum WorkloadClass {
+
+    /** Retrieves a caller is waiting for. */
+    INTERACTIVE(16, 0),
+    /** Storing new files. */
+    INGEST(4, 0),
+    /** Retention sweeps, cache refreshes and prefetches that nobody waits for. */
+    BACKGROUND(1, 1);
+
+    private final int defaultWeight;
+    private final int defaultMaxConcurrency;
+
+    WorkloadClass(int defaultWeight, int defaultMaxConcurrency) {
+        this.defaultWeight = defaultWeight;
+        this.defaultMaxConcurrency = defaultMaxConcurrency;
+    }
+
+    int getDefaultWeight() {
+        return defaultWeight;
+    }
+
+    int getDefaultMaxConcurrency() {
+        return defaultMaxConcurrency;
+    }
+
+    /** Name used in configuration keys, e.g. {@code scheduler.background.weight}. */
+    String configName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
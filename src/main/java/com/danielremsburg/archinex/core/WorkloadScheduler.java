@@ -0,0 +1,365 @@
+package com.danielremsburg.archinex.core;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares one thread pool between the {@link WorkloadClass}es. Tasks wait in a queue per class and
+ * are only handed to the pool when a thread is free, so the pool's own queue stays empty and
+ * cannot put a burst of one class in front of another.
+ * <p>
+ * When threads free up, classes take turns in proportion to their weights (stride scheduling).
+ * A class whose queue was empty starts at the current position rather than with saved-up turns,
+ * so a retrieve arriving behind a long retention sweep starts next rather than after the queued
+ * background tasks. Each class can also be capped at a number of concurrent tasks, and
+ * {@code scheduler.interactive.reservedThreads} threads are kept for interactive work only.
+ * <p>
+ * With {@code planner.io.adaptive}, the number of tasks running at once is not fixed but found
+ * by an {@link AdaptiveConcurrencyLimit} from how long the tasks take, up to the pool's size.
+ */
+public class WorkloadScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkloadScheduler.class);
+
+    private static final double RECENT_WEIGHT = 0.1;
+
+    private static final class Queued {
+        final Runnable task;
+        final long enqueuedNanos = System.nanoTime();
+
+        Queued(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    private final class Lane {
+        final WorkloadClass workloadClass;
+        final ArrayDeque<Queued> queue = new ArrayDeque<>();
+        final ExecutorService executor;
+        int weight;
+        int maxConcurrency; // 0 for no limit beyond the pool
+        int queueSize;
+        double pass;
+        int active;
+        long submitted;
+        long completed;
+        long rejected;
+        long started;
+        long totalQueueNanos;
+        long maxQueueNanos;
+        double recentQueueMillis;
+
+        Lane(WorkloadClass workloadClass) {
+            this.workloadClass = workloadClass;
+            this.executor = new LaneExecutor(this);
+        }
+    }
+
+    private final ExecutorService pool;
+    private final ArchinexConfig config;
+    private final Map<WorkloadClass, Lane> lanes = new EnumMap<>(WorkloadClass.class);
+    private final Object lock = new Object();
+    private final AdaptiveConcurrencyLimit adaptiveLimit; // null unless planner.io.adaptive
+    private int maxConcurrency;
+    private int reservedThreads;
+    private int running;
+    private double virtualTime;
+
+    public WorkloadScheduler(ExecutorService pool, ArchinexConfig config) {
+        this.pool = pool;
+        this.config = config;
+        for (WorkloadClass workloadClass : WorkloadClass.values()) {
+            lanes.put(workloadClass, new Lane(workloadClass));
+        }
+        boolean adaptive = config.getBooleanOrDefault("planner.io.adaptive", true);
+        int initial = config.snapshot().getPlannerThreadPoolSize();
+        if (pool instanceof ThreadPoolExecutor) {
+            this.maxConcurrency = ((ThreadPoolExecutor) pool).getMaximumPoolSize();
+        } else {
+            this.maxConcurrency = adaptive ? config.getIntOrDefault("planner.io.maxConcurrency", 256) : initial;
+        }
+        this.adaptiveLimit = adaptive ? new AdaptiveConcurrencyLimit(initial, 1, maxConcurrency, 1.5, 0.9) : null;
+        reconfigure();
+    }
+
+    /** Re-reads the per-class settings from the configuration. */
+    public void reconfigure() {
+        synchronized (lock) {
+            for (Lane lane : lanes.values()) {
+                String prefix = "scheduler." + lane.workloadClass.configName() + ".";
+                lane.weight = Math.max(1, config.getIntOrDefault(prefix + "weight", lane.workloadClass.getDefaultWeight()));
+                lane.maxConcurrency = Math.max(0, config.getIntOrDefault(prefix + "maxConcurrency",
+                        lane.workloadClass.getDefaultMaxConcurrency()));
+                lane.queueSize = Math.max(1, config.getIntOrDefault(prefix + "queueSize", 10_000));
+            }
+            reservedThreads = Math.max(0, config.getIntOrDefault("scheduler.interactive.reservedThreads", 1));
+            if (adaptiveLimit != null) {
+                adaptiveLimit.configure(config.getIntOrDefault("planner.io.minConcurrency", 2),
+                        Math.min(config.getIntOrDefault("planner.io.maxConcurrency", 256), maxConcurrency),
+                        config.getDoubleOrDefault("planner.io.latencyTolerance", 1.5),
+                        config.getDoubleOrDefault("planner.io.backoff", 0.9));
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Call after resizing the pool, so the scheduler uses every thread and no more. With an
+     * adaptive limit, this only caps it.
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        synchronized (lock) {
+            this.maxConcurrency = Math.max(1, maxConcurrency);
+        }
+        reconfigure();
+    }
+
+    /**
+     * An executor that queues tasks in the given class. Its lifecycle is the underlying pool's,
+     * so it cannot be shut down on its own.
+     */
+    public ExecutorService executor(WorkloadClass workloadClass) {
+        return lanes.get(workloadClass).executor;
+    }
+
+    public boolean isAdaptive() {
+        return adaptiveLimit != null;
+    }
+
+    /** How many tasks may run at once right now. */
+    public int getConcurrencyLimit() {
+        synchronized (lock) {
+            return limit();
+        }
+    }
+
+    public WorkloadStats stats(WorkloadClass workloadClass) {
+        Lane lane = lanes.get(workloadClass);
+        synchronized (lock) {
+            return new WorkloadStats(workloadClass, lane.submitted, lane.completed, lane.rejected, lane.queue.size(),
+                    lane.active, lane.started == 0 ? 0.0 : lane.totalQueueNanos / 1e6 / lane.started,
+                    lane.recentQueueMillis, lane.maxQueueNanos / 1e6);
+        }
+    }
+
+    public List<WorkloadStats> stats() {
+        List<WorkloadStats> stats = new ArrayList<>(lanes.size());
+        for (WorkloadClass workloadClass : lanes.keySet()) {
+            stats.add(stats(workloadClass));
+        }
+        return stats;
+    }
+
+    private void enqueue(Lane lane, Runnable task) {
+        synchronized (lock) {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+            if (lane.queue.size() >= lane.queueSize) {
+                lane.rejected++;
+                throw new RejectedExecutionException(lane.workloadClass + " queue is full (" + lane.queueSize + " tasks)");
+            }
+            if (lane.queue.isEmpty()) {
+                lane.pass = Math.max(lane.pass, virtualTime); // No credit for time spent idle
+            }
+            lane.queue.add(new Queued(task));
+            lane.submitted++;
+        }
+        dispatch();
+    }
+
+    // Hands queued tasks to the pool while threads are free; the pool is called outside the lock
+    private void dispatch() {
+        while (true) {
+            Lane lane;
+            Queued queued;
+            long waited;
+            synchronized (lock) {
+                lane = next();
+                if (lane == null) {
+                    return;
+                }
+                queued = lane.queue.peek();
+                waited = start(lane);
+            }
+            try {
+                pool.execute(new Worker(lane, queued));
+            } catch (RejectedExecutionException e) {
+                if (pool.isShutdown()) {
+                    synchronized (lock) {
+                        lane.active--;
+                        running--;
+                    }
+                    logger.warn("Dropping queued {} task: pool is shut down", lane.workloadClass);
+                    if (queued.task instanceof Future) {
+                        ((Future<?>) queued.task).cancel(false);
+                    }
+                    return;
+                }
+                // A bounded pool can be full of threads that have finished their task but not yet
+                // returned. Put the task back in front; the next worker to finish a task takes it.
+                synchronized (lock) {
+                    lane.active--;
+                    running--;
+                    lane.started--;
+                    lane.totalQueueNanos -= waited;
+                    lane.pass -= 1.0 / lane.weight;
+                    lane.queue.addFirst(queued);
+                }
+                logger.debug("Pool rejected a {} task, requeued it: {}", lane.workloadClass, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    // Takes the head of the lane's queue as running and returns how long it waited
+    private long start(Lane lane) {
+        Queued queued = lane.queue.poll();
+        virtualTime = lane.pass;
+        lane.pass += 1.0 / lane.weight;
+        lane.active++;
+        running++;
+
+        long waited = System.nanoTime() - queued.enqueuedNanos;
+        lane.started++;
+        lane.totalQueueNanos += waited;
+        lane.maxQueueNanos = Math.max(lane.maxQueueNanos, waited);
+        lane.recentQueueMillis += RECENT_WEIGHT * (waited / 1e6 - lane.recentQueueMillis);
+        return waited;
+    }
+
+    private void finished(Lane lane, long elapsedNanos) {
+        lane.active--;
+        lane.completed++;
+        running--;
+        if (adaptiveLimit != null) {
+            adaptiveLimit.onCompleted(elapsedNanos, running);
+        }
+    }
+
+    // The lane with the lowest pass among those with queued work and room to run; ties go to the
+    // higher priority class
+    private Lane next() {
+        int limit = limit();
+        if (running >= limit) {
+            return null;
+        }
+        int reserved = Math.min(reservedThreads, limit - 1);
+        Lane best = null;
+        for (Lane lane : lanes.values()) {
+            if (lane.queue.isEmpty()
+                    || (lane.maxConcurrency > 0 && lane.active >= lane.maxConcurrency)
+                    || (lane.workloadClass != WorkloadClass.INTERACTIVE && running >= limit - reserved)) {
+                continue;
+            }
+            if (best == null || lane.pass < best.pass) {
+                best = lane;
+            }
+        }
+        return best;
+    }
+
+    private int limit() {
+        return adaptiveLimit == null ? maxConcurrency : Math.min(maxConcurrency, adaptiveLimit.getLimit());
+    }
+
+    /**
+     * Runs a task and then, while the scheduler has a task this thread may run, the next ones.
+     * Handing the next task to the pool instead could be rejected by a bounded pool at its
+     * maximum, since this thread still counts as busy there until it returns.
+     */
+    private final class Worker implements Runnable {
+
+        private Lane lane;
+        private Queued queued;
+
+        Worker(Lane lane, Queued queued) {
+            this.lane = lane;
+            this.queued = queued;
+        }
+
+        @Override
+        public void run() {
+            while (queued != null) {
+                long startedNanos = System.nanoTime();
+                try {
+                    queued.task.run();
+                } catch (RuntimeException e) {
+                    logger.error("Uncaught exception in {} task", lane.workloadClass, e);
+                } catch (Error e) {
+                    synchronized (lock) {
+                        finished(lane, System.nanoTime() - startedNanos);
+                    }
+                    dispatch();
+                    throw e;
+                }
+                synchronized (lock) {
+                    finished(lane, System.nanoTime() - startedNanos);
+                    Lane nextLane = pool.isShutdown() ? null : next();
+                    queued = nextLane != null ? nextLane.queue.peek() : null;
+                    if (nextLane != null) {
+                        start(nextLane);
+                        lane = nextLane;
+                    }
+                }
+                if (queued != null) {
+                    Thread.interrupted(); // A cancelled task's interrupt must not reach the next one
+                }
+            }
+            // The limit may have room for more tasks than this thread, e.g. after it was raised
+            dispatch();
+        }
+    }
+
+    private final class LaneExecutor extends AbstractExecutorService {
+
+        private final Lane lane;
+
+        LaneExecutor(Lane lane) {
+            this.lane = lane;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            enqueue(lane, command);
+        }
+
+        @Override
+        public void shutdown() {
+            throw new UnsupportedOperationException("Shut down the scheduler's pool instead");
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            throw new UnsupportedOperationException("Shut down the scheduler's pool instead");
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return pool.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return pool.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return pool.awaitTermination(timeout, unit);
+        }
+    }
+}
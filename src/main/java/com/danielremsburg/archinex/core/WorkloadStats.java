@@ -0,0 +1,84 @@
+package com.danielremsburg.archinex.core;
+
+/**
+ * Point-in-time counters and queue times of one {@link WorkloadClass}.
+ */
+public final class WorkloadStats {
+
+    private final WorkloadClass workloadClass;
+    private final long submitted;
+    private final long completed;
+    private final long rejected;
+    private final int queued;
+    private final int active;
+    private final double averageQueueMillis;
+    private final double recentQueueMillis;
+    private final double maxQueueMillis;
+
+    WorkloadStats(WorkloadClass workloadClass, long submitted, long completed, long rejected, int queued, int active,
+                  double averageQueueMillis, double recentQueueMillis, double maxQueueMillis) {
+        this.workloadClass = workloadClass;
+        this.submitted = submitted;
+        this.completed = completed;
+        this.rejected = rejected;
+        this.queued = queued;
+        this.active = active;
+        this.averageQueueMillis = averageQueueMillis;
+        this.recentQueueMillis = recentQueueMillis;
+        this.maxQueueMillis = maxQueueMillis;
+    }
+
+    public WorkloadClass getWorkloadClass() {
+        return workloadClass;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    /** Tasks refused because the class's queue was full. */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    /** Mean time tasks waited in the queue before starting, over all started tasks. */
+    public double getAverageQueueMillis() {
+        return averageQueueMillis;
+    }
+
+    /** Queue time as a moving average weighted towards the latest tasks. */
+    public double getRecentQueueMillis() {
+        return recentQueueMillis;
+    }
+
+    public double getMaxQueueMillis() {
+        return maxQueueMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkloadStats{" +
+                "workloadClass=" + workloadClass +
+                ", submitted=" + submitted +
+                ", completed=" + completed +
+                ", rejected=" + rejected +
+                ", queued=" + queued +
+                ", active=" + active +
+                ", averageQueueMillis=" + averageQueueMillis +
+                ", recentQueueMillis=" + recentQueueMillis +
+                ", maxQueueMillis=" + maxQueueMillis +
+                '}';
+    }
+}
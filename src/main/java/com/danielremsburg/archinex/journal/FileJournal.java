@@ -52,6 +52,24 @@ public class FileJournal implements Journal {
         }
     }
 
+    @Override
+    public void logAll(List<String> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        String prefix = Instant.now() + ": ";
+        StringBuilder entries = new StringBuilder(messages.size() * 64);
+        for (String message : messages) {
+            entries.append(prefix).append(message).append(System.lineSeparator());
+        }
+        try {
+            Files.write(journalFile, entries.toString().getBytes(), java.nio.file.StandardOpenOption.APPEND);
+            logger.info("Logged {} entries to file", messages.size());
+        } catch (IOException e) {
+            logger.error("Error writing to journal file: {}", e.getMessage(), e);
+            throw new RuntimeException("Error writing to journal file: " + e.getMessage(), e);
+        }
+    }
 
     public List<String> getLogs() {
         try {
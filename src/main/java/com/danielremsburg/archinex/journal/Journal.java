@@ -1,6 +1,7 @@
 package com.danielremsburg.archinex.journal;
 
 import java.time.Instant;
+import java.util.List;
 
 public interface Journal {
 
@@ -8,4 +9,12 @@ public interface Journal {
 
     void log(String message, Instant timestamp);
 
+    /** Logs several messages with one timestamp; file journals write them in one append. */
+    default void logAll(List<String> messages) {
+        Instant timestamp = Instant.now();
+        for (String message : messages) {
+            log(message, timestamp);
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,246 @@
+package com.danielremsburg.archinex.metadata;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Read-through cache for {@link MetadataStore#get}. Entries are bounded by count and evicted with a
+ * CLOCK (second chance) sweep; unknown UUIDs are negatively cached for a short TTL. Local writes
+ * invalidate immediately, and when the delegate is an {@link ObservableMetadataStore}, such as
+ * PostgreSQL or a sharded store over it, changes made by other daemons can be picked up as they
+ * happen.
+ */
+public class CachingMetadataStore implements MetadataStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingMetadataStore.class);
+
+    private static final class Entry {
+        final UUID uuid;
+        final FileMetadata metadata; // null for a negative entry
+        final long expiresAt;        // System.nanoTime() deadline, or 0 for no expiry
+        final boolean loading;       // Placeholder held while a miss loads; invalidating removes it
+        volatile boolean referenced;
+
+        Entry(UUID uuid, FileMetadata metadata, long expiresAt) {
+            this(uuid, metadata, expiresAt, false);
+        }
+
+        private Entry(UUID uuid, FileMetadata metadata, long expiresAt, boolean loading) {
+            this.uuid = uuid;
+            this.metadata = metadata;
+            this.expiresAt = expiresAt;
+            this.loading = loading;
+        }
+
+        static Entry placeholder(UUID uuid) {
+            return new Entry(uuid, null, 0, true);
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && now - expiresAt > 0;
+        }
+    }
+
+    private final MetadataStore delegate;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final ConcurrentMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger clockSize = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Closeable changeListener;
+
+    public CachingMetadataStore(MetadataStore delegate, ArchinexConfig config) {
+        this(delegate,
+                config.getIntOrDefault("metadata.cache.maxEntries", 100_000),
+                config.getLongOrDefault("metadata.cache.ttlMillis", 0L),
+                config.getLongOrDefault("metadata.cache.negativeTtlMillis", 5000L),
+                config.getBooleanOrDefault("metadata.cache.listen", false));
+    }
+
+    public CachingMetadataStore(MetadataStore delegate, int maxEntries, long ttlMillis, long negativeTtlMillis, boolean listen) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Metadata cache size must be positive: " + maxEntries);
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.negativeTtlNanos = negativeTtlMillis * 1_000_000L;
+
+        if (listen && delegate instanceof ObservableMetadataStore) {
+            this.changeListener = ((ObservableMetadataStore) delegate).listenForChanges(this::invalidate, this::invalidateAll);
+        } else {
+            if (listen) {
+                logger.warn("{} cannot report changes; cached metadata is only refreshed by its TTL",
+                        delegate.getClass().getSimpleName());
+            }
+            this.changeListener = null;
+        }
+        logger.info("Metadata cache initialized with max entries: {}", maxEntries);
+    }
+
+    @Override
+    public FileMetadata get(UUID uuid) throws MetadataStoreException {
+        Entry entry = entries.get(uuid);
+        if (entry != null && !entry.loading && !entry.isExpired(System.nanoTime())) {
+            entry.referenced = true;
+            hits.increment();
+            return entry.metadata;
+        }
+        misses.increment();
+
+        // Claim the key with a placeholder; the loaded value only replaces it if no invalidation of
+        // this key removed it meanwhile. A caller that finds another's placeholder reads through.
+        Entry placeholder = Entry.placeholder(uuid);
+        boolean claimed = entry == null ? entries.putIfAbsent(uuid, placeholder) == null
+                : !entry.loading && entries.replace(uuid, entry, placeholder);
+        if (!claimed) {
+            return delegate.get(uuid);
+        }
+        FileMetadata metadata;
+        try {
+            metadata = delegate.get(uuid);
+        } catch (MetadataStoreException | RuntimeException e) {
+            entries.remove(uuid, placeholder);
+            throw e;
+        }
+        if (metadata == null && negativeTtlNanos <= 0) {
+            entries.remove(uuid, placeholder);
+            return null;
+        }
+        long ttl = metadata != null ? ttlNanos : negativeTtlNanos;
+        Entry loaded = new Entry(uuid, metadata, ttl > 0 ? System.nanoTime() + ttl : 0);
+        if (entries.replace(uuid, placeholder, loaded)) {
+            offer(loaded);
+            evictIfNeeded();
+        }
+        return metadata;
+    }
+
+    @Override
+    public void store(FileMetadata metadata) throws MetadataStoreException {
+        delegate.store(metadata);
+        invalidate(metadata.getUuid());
+    }
+
+    @Override
+    public void storeAll(Collection<FileMetadata> metadata) throws MetadataStoreException {
+        delegate.storeAll(metadata);
+        for (FileMetadata file : metadata) {
+            invalidate(file.getUuid());
+        }
+    }
+
+    @Override
+    public String getBackendId() {
+        return delegate.getBackendId();
+    }
+
+    @Override
+    public void update(FileMetadata metadata) throws MetadataStoreException {
+        delegate.update(metadata);
+        invalidate(metadata.getUuid());
+    }
+
+    @Override
+    public void delete(UUID uuid) throws MetadataStoreException {
+        delegate.delete(uuid);
+        invalidate(uuid);
+    }
+
+    @Override
+    public void deleteAll() throws MetadataStoreException {
+        delegate.deleteAll();
+        invalidateAll();
+    }
+
+    @Override
+    public List<FileMetadata> getAllFiles() throws MetadataStoreException {
+        return delegate.getAllFiles();
+    }
+
+    @Override
+    public void scanFiles(int fetchSize, Predicate<FileMetadata> visitor) throws MetadataStoreException {
+        delegate.scanFiles(fetchSize, visitor);
+    }
+
+    @Override
+    public List<FileMetadata> query(MetadataQuery query) throws MetadataStoreException {
+        return delegate.query(query);
+    }
+
+    public void invalidate(UUID uuid) {
+        entries.remove(uuid);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+        clock.clear();
+        clockSize.set(0);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void close() {
+        if (changeListener != null) {
+            try {
+                changeListener.close();
+            } catch (IOException e) {
+                logger.error("Error stopping metadata change listener: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void offer(Entry entry) {
+        clock.offer(entry);
+        clockSize.incrementAndGet();
+    }
+
+    private void evictIfNeeded() {
+        // CLOCK sweep: recently read entries get a second chance, stale queue slots are dropped
+        int budget = 2 * maxEntries;
+        while ((entries.size() > maxEntries || clockSize.get() > 2 * maxEntries) && budget-- > 0) {
+            Entry candidate = clock.poll();
+            if (candidate == null) {
+                return;
+            }
+            clockSize.decrementAndGet();
+            if (entries.get(candidate.uuid) != candidate) {
+                continue;
+            }
+            if (candidate.referenced) {
+                candidate.referenced = false;
+                offer(candidate);
+            } else {
+                entries.remove(candidate.uuid, candidate);
+            }
+        }
+    }
+}
@@ -0,0 +1,662 @@
+package com.danielremsburg.archinex.metadata;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Memory-dense in-memory metadata store for very large catalogs. Entries live in parallel
+ * primitive arrays instead of object graphs: UUIDs as two longs, timestamps as epoch
+ * seconds/nanos, directories, content types and tag sets interned to ints, and file names packed as UTF-8
+ * into one shared byte arena. An open-addressing table maps UUIDs to slots, and an int array of
+ * slots kept in creation order serves range queries and keyset pages. {@link FileMetadata}
+ * objects are only created when a caller asks for one.
+ */
+public class CompactMetadataStore implements MetadataStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = -1;
+    private static final int NOT_INTERNED = -1;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final int MIN_MERGE = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Column storage, indexed by slot
+    private long[] uuidHigh = new long[INITIAL_CAPACITY];
+    private long[] uuidLow = new long[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+    private long[] createdSeconds = new long[INITIAL_CAPACITY];
+    private int[] createdNanos = new int[INITIAL_CAPACITY];
+    private long[] modifiedSeconds = new long[INITIAL_CAPACITY];
+    private int[] modifiedNanos = new int[INITIAL_CAPACITY];
+    private int[] directoryIds = new int[INITIAL_CAPACITY];
+    private int[] contentTypeIds = new int[INITIAL_CAPACITY];
+    private int[] tagSetIds = new int[INITIAL_CAPACITY];
+    private int[] nameOffsets = new int[INITIAL_CAPACITY];
+    private int[] nameLengths = new int[INITIAL_CAPACITY];
+    private boolean[] live = new boolean[INITIAL_CAPACITY];
+
+    // Free slots below the high-water mark are reused before growing
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int highWater;
+    private int count;
+
+    // Creation order index. Slots in `order` are sorted by creation date then UUID; new slots collect
+    // unsorted in `pending` and are merged in once there are enough of them. A deleted slot stays
+    // in place as a ghost, its key columns intact so binary searches still work, and is only freed
+    // for reuse when the next merge drops it.
+    private int[] order = new int[INITIAL_CAPACITY];
+    private int orderSize;
+    private int[] pending = new int[64];
+    private int pendingCount;
+    private int[] ghosts = new int[16];
+    private int ghostCount;
+
+    // Open addressing UUID -> slot + 1; EMPTY and TOMBSTONE are reserved
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+    private int tombstones;
+
+    private byte[] nameArena = new byte[INITIAL_CAPACITY * 16];
+    private int arenaUsed;
+    private int arenaGarbage;
+
+    private final InternTable<String> directories = new InternTable<>();
+    private final InternTable<String> contentTypes = new InternTable<>();
+    private final InternTable<Map<String, String>> tagSets = new InternTable<>(); // Files mostly share a few tag combinations
+
+    @Override
+    public void store(FileMetadata metadata) throws MetadataStoreException {
+        lock.writeLock().lock();
+        try {
+            UUID uuid = metadata.getUuid();
+            int slot = findSlot(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (slot < 0) {
+                slot = allocateSlot();
+                uuidHigh[slot] = uuid.getMostSignificantBits();
+                uuidLow[slot] = uuid.getLeastSignificantBits();
+                live[slot] = true;
+                insertIntoTable(slot);
+                addPending(slot);
+                count++;
+            } else if (compareCreated(slot, metadata.getCreationDate()) != 0) {
+                // Its place in creation order changes, so it moves to a new slot and the old one is retired
+                int position = findPosition(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+                retire(slot);
+                slot = allocateSlot();
+                uuidHigh[slot] = uuid.getMostSignificantBits();
+                uuidLow[slot] = uuid.getLeastSignificantBits();
+                live[slot] = true;
+                table[position] = slot + 1;
+                addPending(slot);
+            } else {
+                arenaGarbage += nameLengths[slot];
+            }
+            write(slot, metadata);
+            mergeIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public FileMetadata get(UUID uuid) throws MetadataStoreException {
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            return slot < 0 ? null : view(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(UUID uuid) throws MetadataStoreException {
+        lock.writeLock().lock();
+        try {
+            int position = findPosition(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (position < 0) {
+                return;
+            }
+            int slot = table[position] - 1;
+            table[position] = TOMBSTONE;
+            tombstones++;
+            retire(slot);
+            count--;
+            mergeIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<FileMetadata> getAllFiles() throws MetadataStoreException {
+        lock.readLock().lock();
+        try {
+            List<FileMetadata> files = new ArrayList<>(count);
+            for (int slot = 0; slot < highWater; slot++) {
+                if (live[slot]) {
+                    files.add(view(slot));
+                }
+            }
+            return files;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void scanFiles(int fetchSize, Predicate<FileMetadata> visitor) throws MetadataStoreException {
+        // Materialize one batch at a time and visit it unlocked, so visitors may write back
+        int batchSize = fetchSize > 0 ? fetchSize : 1000;
+        int cursor = 0;
+        while (true) {
+            List<FileMetadata> batch = new ArrayList<>(batchSize);
+            lock.readLock().lock();
+            try {
+                while (cursor < highWater && batch.size() < batchSize) {
+                    if (live[cursor]) {
+                        batch.add(view(cursor));
+                    }
+                    cursor++;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            for (FileMetadata metadata : batch) {
+                if (!visitor.test(metadata)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<FileMetadata> query(MetadataQuery query) throws MetadataStoreException {
+        // Seeks the creation order index to the lower bound and walks it, checking every other
+        // criterion on the primitive columns. Unmerged slots are few and checked separately; only
+        // the final page is turned into FileMetadata objects.
+        List<FileMetadata> results = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int contentTypeId = query.getContentType() != null ? contentTypes.find(query.getContentType()) : NOT_INTERNED;
+            if (count == 0 || (query.getContentType() != null && contentTypeId == NOT_INTERNED)) {
+                return results;
+            }
+            // Match the query's tags once per distinct tag set rather than once per row
+            boolean[] tagSetMatches = null;
+            if (!query.getTags().isEmpty()) {
+                tagSetMatches = new boolean[tagSets.size()];
+                for (int id = 0; id < tagSetMatches.length; id++) {
+                    tagSetMatches[id] = tagSets.get(id).entrySet().containsAll(query.getTags().entrySet());
+                }
+            }
+            int limit = Math.min(query.getLimit(), count);
+            Instant before = query.getCreatedBefore();
+
+            int[] ordered = new int[limit];
+            int orderedCount = 0;
+            for (int i = lowerBound(query); i < orderSize && orderedCount < limit; i++) {
+                int slot = order[i];
+                if (before != null && compareCreated(slot, before) >= 0) {
+                    break;
+                }
+                if (live[slot] && matches(slot, query, contentTypeId, tagSetMatches)) {
+                    ordered[orderedCount++] = slot;
+                }
+            }
+
+            // Unmerged slots can fall anywhere in the order, so keep the first `limit` of them in a heap
+            int[] heap = new int[Math.min(limit, pendingCount)]; // Latest slot in ORDER at the root
+            int heapSize = 0;
+            for (int i = 0; i < pendingCount; i++) {
+                int slot = pending[i];
+                if (!live[slot] || !inCreationRange(slot, query) || !matches(slot, query, contentTypeId, tagSetMatches)) {
+                    continue;
+                }
+                if (heapSize < heap.length) {
+                    heap[heapSize] = slot;
+                    siftUp(heap, heapSize++);
+                } else if (compareSlots(slot, heap[0]) < 0) {
+                    heap[0] = slot;
+                    siftDown(heap, heapSize);
+                }
+            }
+            sortSlots(heap, heapSize);
+
+            int a = 0;
+            int b = 0;
+            while (results.size() < limit && (a < orderedCount || b < heapSize)) {
+                boolean takeOrdered = b == heapSize || (a < orderedCount && compareSlots(ordered[a], heap[b]) < 0);
+                results.add(view(takeOrdered ? ordered[a++] : heap[b++]));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return results;
+    }
+
+    @Override
+    public void deleteAll() throws MetadataStoreException {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(live, 0, highWater, false);
+            Arrays.fill(table, EMPTY);
+            highWater = 0;
+            count = 0;
+            freeCount = 0;
+            orderSize = 0;
+            pendingCount = 0;
+            ghostCount = 0;
+            tombstones = 0;
+            arenaUsed = 0;
+            arenaGarbage = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void update(FileMetadata metadata) throws MetadataStoreException {
+        store(metadata);
+    }
+
+    public int count() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private FileMetadata view(int slot) {
+        String name = new String(nameArena, nameOffsets[slot], nameLengths[slot], StandardCharsets.UTF_8);
+        FileMetadata metadata = new FileMetadata(new UUID(uuidHigh[slot], uuidLow[slot]),
+                directories.get(directoryIds[slot]) + name, sizes[slot],
+                Instant.ofEpochSecond(createdSeconds[slot], createdNanos[slot]));
+        metadata.setLastModifiedDate(modifiedSeconds[slot] == NO_TIMESTAMP ? null
+                : Instant.ofEpochSecond(modifiedSeconds[slot], modifiedNanos[slot]));
+        if (contentTypeIds[slot] != NOT_INTERNED) {
+            metadata.setContentType(contentTypes.get(contentTypeIds[slot]));
+        }
+        if (tagSetIds[slot] != NOT_INTERNED) {
+            metadata.setTags(tagSets.get(tagSetIds[slot]));
+        }
+        return metadata;
+    }
+
+    private int compareCreated(int slot, Instant instant) {
+        int result = Long.compare(createdSeconds[slot], instant.getEpochSecond());
+        return result != 0 ? result : Integer.compare(createdNanos[slot], instant.getNano());
+    }
+
+    // Same order as MetadataQuery.ORDER: creation date, then the UUID byte-wise
+    private int compareToCursor(int slot, Instant creationDate, long high, long low) {
+        int result = compareCreated(slot, creationDate);
+        if (result != 0) {
+            return result;
+        }
+        result = Long.compareUnsigned(uuidHigh[slot], high);
+        return result != 0 ? result : Long.compareUnsigned(uuidLow[slot], low);
+    }
+
+    private int compareSlots(int a, int b) {
+        int result = Long.compare(createdSeconds[a], createdSeconds[b]);
+        if (result == 0) {
+            result = Integer.compare(createdNanos[a], createdNanos[b]);
+        }
+        if (result == 0) {
+            result = Long.compareUnsigned(uuidHigh[a], uuidHigh[b]);
+        }
+        return result != 0 ? result : Long.compareUnsigned(uuidLow[a], uuidLow[b]);
+    }
+
+    private boolean matches(int slot, MetadataQuery query, int contentTypeId, boolean[] tagSetMatches) {
+        return (query.getMinSize() == null || sizes[slot] >= query.getMinSize())
+                && (query.getMaxSize() == null || sizes[slot] <= query.getMaxSize())
+                && (query.getContentType() == null || contentTypeIds[slot] == contentTypeId)
+                && (tagSetMatches == null || (tagSetIds[slot] != NOT_INTERNED && tagSetMatches[tagSetIds[slot]]))
+                && (query.getPathPrefix() == null || pathStartsWith(slot, query.getPathPrefix()));
+    }
+
+    private boolean inCreationRange(int slot, MetadataQuery query) {
+        return (query.getCreatedFrom() == null || compareCreated(slot, query.getCreatedFrom()) >= 0)
+                && (query.getCreatedBefore() == null || compareCreated(slot, query.getCreatedBefore()) < 0)
+                && (!query.hasCursor() || compareToCursor(slot, query.getAfterCreationDate(),
+                        query.getAfterUuid().getMostSignificantBits(), query.getAfterUuid().getLeastSignificantBits()) > 0);
+    }
+
+    // First position in `order` at or after the creation lower bound and past the cursor
+    private int lowerBound(MetadataQuery query) {
+        int low = 0;
+        int high = orderSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (inLowerBound(order[middle], query)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private boolean inLowerBound(int slot, MetadataQuery query) {
+        return (query.getCreatedFrom() == null || compareCreated(slot, query.getCreatedFrom()) >= 0)
+                && (!query.hasCursor() || compareToCursor(slot, query.getAfterCreationDate(),
+                        query.getAfterUuid().getMostSignificantBits(), query.getAfterUuid().getLeastSignificantBits()) > 0);
+    }
+
+    // Heapsort into ascending ORDER
+    private void sortSlots(int[] slots, int size) {
+        for (int i = 1; i < size; i++) {
+            siftUp(slots, i);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            int top = slots[0];
+            slots[0] = slots[end];
+            slots[end] = top;
+            siftDown(slots, end);
+        }
+    }
+
+    private void siftUp(int[] heap, int index) {
+        int slot = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (compareSlots(slot, heap[parent]) <= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = slot;
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int slot = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && compareSlots(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (compareSlots(heap[child], slot) <= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = slot;
+    }
+
+    // Compares against the interned directory first; the name is only decoded when the prefix reaches into it
+    private boolean pathStartsWith(int slot, String prefix) {
+        String directory = directories.get(directoryIds[slot]);
+        if (prefix.length() <= directory.length()) {
+            return directory.startsWith(prefix);
+        }
+        if (!prefix.startsWith(directory)) {
+            return false;
+        }
+        String name = new String(nameArena, nameOffsets[slot], nameLengths[slot], StandardCharsets.UTF_8);
+        return name.startsWith(prefix.substring(directory.length()));
+    }
+
+    private void write(int slot, FileMetadata metadata) {
+        sizes[slot] = metadata.getSize();
+        createdSeconds[slot] = metadata.getCreationDate().getEpochSecond();
+        createdNanos[slot] = metadata.getCreationDate().getNano();
+        Instant modified = metadata.getLastModifiedDate();
+        modifiedSeconds[slot] = modified == null ? NO_TIMESTAMP : modified.getEpochSecond();
+        modifiedNanos[slot] = modified == null ? 0 : modified.getNano();
+        contentTypeIds[slot] = metadata.getContentType() == null ? NOT_INTERNED : contentTypes.intern(metadata.getContentType());
+        tagSetIds[slot] = metadata.getTags().isEmpty() ? NOT_INTERNED : tagSets.intern(metadata.getTags());
+
+        // Split the path so shared directory prefixes are stored once
+        String path = metadata.getPath();
+        nameLengths[slot] = 0; // The old name, if any, is already counted as garbage
+        int split = path.lastIndexOf('/') + 1;
+        directoryIds[slot] = directories.intern(path.substring(0, split));
+        byte[] name = path.substring(split).getBytes(StandardCharsets.UTF_8);
+        ensureArenaCapacity(name.length);
+        System.arraycopy(name, 0, nameArena, arenaUsed, name.length);
+        nameOffsets[slot] = arenaUsed;
+        nameLengths[slot] = name.length;
+        arenaUsed += name.length;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (highWater == live.length) {
+            growColumns(live.length * 2);
+        }
+        return highWater++;
+    }
+
+    private void releaseSlot(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    // The slot may still sit in the creation order index, so it is only released by the next merge
+    private void retire(int slot) {
+        live[slot] = false;
+        arenaGarbage += nameLengths[slot];
+        if (ghostCount == ghosts.length) {
+            ghosts = Arrays.copyOf(ghosts, ghosts.length * 2);
+        }
+        ghosts[ghostCount++] = slot;
+    }
+
+    private void addPending(int slot) {
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 2);
+        }
+        pending[pendingCount++] = slot;
+    }
+
+    // Queries scan every unmerged slot, so merges keep that set to a small fraction of the index;
+    // ghosts only cost skipped positions and wasted slots, so more of them are tolerated
+    private void mergeIfNeeded() {
+        if (pendingCount > Math.max(MIN_MERGE, orderSize >>> 6) || ghostCount > Math.max(MIN_MERGE, orderSize >>> 3)) {
+            merge();
+        }
+    }
+
+    private void merge() {
+        int livePending = 0;
+        for (int i = 0; i < pendingCount; i++) {
+            if (live[pending[i]]) {
+                pending[livePending++] = pending[i];
+            }
+        }
+        sortSlots(pending, livePending);
+
+        if (ghostCount == 0 && (orderSize == 0 || livePending == 0 || compareSlots(order[orderSize - 1], pending[0]) < 0)) {
+            // Files mostly arrive in creation order, so this is usually an append
+            if (orderSize + livePending > order.length) {
+                order = Arrays.copyOf(order, Math.max(order.length * 2, orderSize + livePending));
+            }
+            System.arraycopy(pending, 0, order, orderSize, livePending);
+            orderSize += livePending;
+        } else {
+            int[] merged = new int[Math.max(INITIAL_CAPACITY, (count + count / 2))];
+            int size = 0;
+            int a = 0;
+            int b = 0;
+            while (a < orderSize || b < livePending) {
+                if (a < orderSize && !live[order[a]]) {
+                    a++;
+                } else if (b == livePending || (a < orderSize && compareSlots(order[a], pending[b]) < 0)) {
+                    merged[size++] = order[a++];
+                } else {
+                    merged[size++] = pending[b++];
+                }
+            }
+            order = merged;
+            orderSize = size;
+            for (int i = 0; i < ghostCount; i++) {
+                releaseSlot(ghosts[i]);
+            }
+            ghostCount = 0;
+        }
+        pendingCount = 0;
+        if (pending.length > 4 * MIN_MERGE) {
+            pending = new int[64];
+        }
+    }
+
+    private void growColumns(int capacity) {
+        uuidHigh = Arrays.copyOf(uuidHigh, capacity);
+        uuidLow = Arrays.copyOf(uuidLow, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        createdSeconds = Arrays.copyOf(createdSeconds, capacity);
+        createdNanos = Arrays.copyOf(createdNanos, capacity);
+        modifiedSeconds = Arrays.copyOf(modifiedSeconds, capacity);
+        modifiedNanos = Arrays.copyOf(modifiedNanos, capacity);
+        directoryIds = Arrays.copyOf(directoryIds, capacity);
+        contentTypeIds = Arrays.copyOf(contentTypeIds, capacity);
+        tagSetIds = Arrays.copyOf(tagSetIds, capacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+        nameLengths = Arrays.copyOf(nameLengths, capacity);
+        live = Arrays.copyOf(live, capacity);
+    }
+
+    private void ensureArenaCapacity(int needed) {
+        if (arenaUsed + needed <= nameArena.length) {
+            return;
+        }
+        // Reclaim deleted names first when they make up most of the arena
+        if (arenaGarbage > arenaUsed / 2) {
+            compactArena();
+            if (arenaUsed + needed <= nameArena.length) {
+                return;
+            }
+        }
+        nameArena = Arrays.copyOf(nameArena, Math.max(nameArena.length * 2, arenaUsed + needed));
+    }
+
+    private void compactArena() {
+        byte[] compacted = new byte[nameArena.length];
+        int used = 0;
+        for (int slot = 0; slot < highWater; slot++) {
+            if (live[slot]) {
+                System.arraycopy(nameArena, nameOffsets[slot], compacted, used, nameLengths[slot]);
+                nameOffsets[slot] = used;
+                used += nameLengths[slot];
+            }
+        }
+        nameArena = compacted;
+        arenaUsed = used;
+        arenaGarbage = 0;
+    }
+
+    private int findSlot(long high, long low) {
+        int position = findPosition(high, low);
+        return position < 0 ? -1 : table[position] - 1;
+    }
+
+    private int findPosition(long high, long low) {
+        int mask = table.length - 1;
+        for (int position = hash(high, low) & mask; ; position = (position + 1) & mask) {
+            int entry = table[position];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry != TOMBSTONE && uuidHigh[entry - 1] == high && uuidLow[entry - 1] == low) {
+                return position;
+            }
+        }
+    }
+
+    private void insertIntoTable(int slot) {
+        // Keep the load factor including tombstones under one half
+        if ((count + tombstones + 1) * 2 > table.length) {
+            rehash(count + 1 > table.length / 4 ? table.length * 2 : table.length);
+        }
+        int mask = table.length - 1;
+        int position = hash(uuidHigh[slot], uuidLow[slot]) & mask;
+        while (table[position] != EMPTY && table[position] != TOMBSTONE) {
+            position = (position + 1) & mask;
+        }
+        if (table[position] == TOMBSTONE) {
+            tombstones--;
+        }
+        table[position] = slot + 1;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = table;
+        table = new int[capacity];
+        tombstones = 0;
+        int mask = capacity - 1;
+        for (int entry : old) {
+            if (entry > 0) {
+                int position = hash(uuidHigh[entry - 1], uuidLow[entry - 1]) & mask;
+                while (table[position] != EMPTY) {
+                    position = (position + 1) & mask;
+                }
+                table[position] = entry;
+            }
+        }
+    }
+
+    private static int hash(long high, long low) {
+        long h = high ^ low;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    // Append-only intern table; entries are never removed so ids stay stable
+    private static final class InternTable<T> {
+        private final Map<T, Integer> ids = new HashMap<>();
+        private final List<T> values = new ArrayList<>();
+
+        int intern(T value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                values.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        int find(T value) {
+            Integer id = ids.get(value);
+            return id == null ? NOT_INTERNED : id;
+        }
+
+        T get(int id) {
+            return values.get(id);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
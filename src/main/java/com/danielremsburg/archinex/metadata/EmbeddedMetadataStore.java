@@ -0,0 +1,187 @@
+package com.danielremsburg.archinex.metadata;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Durable single-node metadata store. Every mutation is appended to a checksummed log under
+ * {@code metadata.store.path} before it is applied to an in-memory {@link MemoryMetadataStore},
+ * so reads never leave the process. The log is replayed on startup and compacted once dead
+ * records outnumber live ones.
+ */
+public class EmbeddedMetadataStore implements MetadataStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedMetadataStore.class);
+
+    private static final long MIN_COMPACTION_GARBAGE = 10_000;
+
+    private final MemoryMetadataStore index = new MemoryMetadataStore();
+    private final MetadataLog log;
+    private long garbageRecords;
+
+    public EmbeddedMetadataStore(ArchinexConfig config) {
+        this(Paths.get(config.getMetadataStorePath()), config.getBooleanOrDefault("metadata.embedded.syncOnWrite", true));
+    }
+
+    public EmbeddedMetadataStore(Path file, boolean syncOnWrite) {
+        try {
+            this.log = new MetadataLog(file, syncOnWrite);
+            long records = log.replay(new MetadataLog.Visitor() {
+                @Override
+                public void store(FileMetadata metadata) throws MetadataStoreException {
+                    index.store(metadata);
+                }
+
+                @Override
+                public void delete(UUID uuid) throws MetadataStoreException {
+                    index.delete(uuid);
+                }
+
+                @Override
+                public void clear() throws MetadataStoreException {
+                    index.deleteAll();
+                }
+            });
+            garbageRecords = records - index.count();
+            logger.info("Embedded metadata store opened at {} with {} entries ({} log records)", file, index.count(), records);
+        } catch (IOException | MetadataStoreException e) {
+            throw new RuntimeException("Failed to initialize metadata store", e);
+        }
+    }
+
+    @Override
+    public synchronized void store(FileMetadata metadata) throws MetadataStoreException {
+        boolean replacing = index.get(metadata.getUuid()) != null;
+        try {
+            log.appendStore(metadata);
+        } catch (IOException e) {
+            logger.error("Error storing metadata: {}", e.getMessage(), e);
+            throw new MetadataStoreException("Error storing metadata: " + e.getMessage(), e);
+        }
+        index.store(metadata);
+        if (replacing) {
+            garbageRecords++;
+            maybeCompact();
+        }
+    }
+
+    @Override
+    public synchronized void storeAll(Collection<FileMetadata> metadata) throws MetadataStoreException {
+        int replacing = 0;
+        for (FileMetadata file : metadata) {
+            if (index.get(file.getUuid()) != null) {
+                replacing++;
+            }
+        }
+        try {
+            log.appendStoreAll(metadata);
+        } catch (IOException e) {
+            logger.error("Error storing metadata batch: {}", e.getMessage(), e);
+            throw new MetadataStoreException("Error storing metadata batch: " + e.getMessage(), e);
+        }
+        for (FileMetadata file : metadata) {
+            index.store(file);
+        }
+        if (replacing > 0) {
+            garbageRecords += replacing;
+            maybeCompact();
+        }
+    }
+
+    @Override
+    public FileMetadata get(UUID uuid) throws MetadataStoreException {
+        return index.get(uuid);
+    }
+
+    @Override
+    public synchronized void delete(UUID uuid) throws MetadataStoreException {
+        if (index.get(uuid) == null) {
+            return;
+        }
+        try {
+            log.appendDelete(uuid);
+        } catch (IOException e) {
+            logger.error("Error deleting metadata: {}", e.getMessage(), e);
+            throw new MetadataStoreException("Error deleting metadata: " + e.getMessage(), e);
+        }
+        index.delete(uuid);
+        garbageRecords += 2; // The dead store record and the tombstone itself
+        maybeCompact();
+    }
+
+    @Override
+    public List<FileMetadata> getAllFiles() throws MetadataStoreException {
+        return index.getAllFiles();
+    }
+
+    @Override
+    public void scanFiles(int fetchSize, Predicate<FileMetadata> visitor) throws MetadataStoreException {
+        index.scanFiles(fetchSize, visitor);
+    }
+
+    @Override
+    public List<FileMetadata> query(MetadataQuery query) throws MetadataStoreException {
+        return index.query(query);
+    }
+
+    @Override
+    public synchronized void deleteAll() throws MetadataStoreException {
+        try {
+            log.rewrite(List.of());
+        } catch (IOException e) {
+            logger.error("Error deleting all metadata: {}", e.getMessage(), e);
+            throw new MetadataStoreException("Error deleting all metadata: " + e.getMessage(), e);
+        }
+        index.deleteAll();
+        garbageRecords = 0;
+    }
+
+    @Override
+    public void update(FileMetadata metadata) throws MetadataStoreException {
+        store(metadata);
+    }
+
+    public FileMetadata getByPath(String path) throws MetadataStoreException {
+        return index.getByPath(path);
+    }
+
+    public int count() throws MetadataStoreException {
+        return index.count();
+    }
+
+    /**
+     * Rewrites the log with only live entries.
+     */
+    public synchronized void compact() throws MetadataStoreException {
+        try {
+            long before = log.size();
+            log.rewrite(index.getAllFiles());
+            garbageRecords = 0;
+            logger.info("Compacted metadata log {} from {} to {} bytes", log.getFile(), before, log.size());
+        } catch (IOException e) {
+            logger.error("Error compacting metadata log: {}", e.getMessage(), e);
+            throw new MetadataStoreException("Error compacting metadata log: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    private void maybeCompact() throws MetadataStoreException {
+        if (garbageRecords > MIN_COMPACTION_GARBAGE && garbageRecords > index.count()) {
+            compact();
+        }
+    }
+}
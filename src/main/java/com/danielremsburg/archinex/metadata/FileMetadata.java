@@ -1,17 +1,23 @@
 package com.danielremsburg.archinex.metadata;
 
 import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 
 public class FileMetadata {
 
+    /** Tags under this prefix are set by Archinex itself, never by callers. */
+    public static final String RESERVED_TAG_PREFIX = "archinex.";
+
     private final UUID uuid;
     private final String path;
     private final long size; // Size in bytes
     private final Instant creationDate;
     private Instant lastModifiedDate;
     private String contentType;
-
+    private Map<String, String> tags = Collections.emptyMap(); // User metadata, indexed for findByTag
 
     public FileMetadata(UUID uuid, String path, long size) {
         this.uuid = uuid;
@@ -61,6 +67,42 @@ public class FileMetadata {
         this.contentType = contentType;
     }
 
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public String getTag(String key) {
+        return tags.get(key);
+    }
+
+    public void setTags(Map<String, String> tags) {
+        this.tags = tags == null || tags.isEmpty() ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+    }
+
+    /**
+     * Applies the user metadata passed to {@code Storage.store}: {@code contentType} sets the
+     * content type and every other entry becomes a tag. Keys starting with
+     * {@value #RESERVED_TAG_PREFIX} are rejected, since they record how the file is stored.
+     */
+    public void setUserMetadata(Map<String, String> metadata) {
+        if (metadata == null) {
+            return;
+        }
+        Map<String, String> userTags = new LinkedHashMap<>();
+        metadata.forEach((key, value) -> {
+            if (key != null && key.startsWith(RESERVED_TAG_PREFIX)) {
+                throw new IllegalArgumentException("Metadata key is reserved: " + key);
+            }
+            if ("contentType".equals(key)) {
+                setContentType(value);
+            } else if (key != null && value != null) {
+                userTags.put(key, value);
+            }
+        });
+        setTags(userTags);
+    }
+
 
     @Override
     public String toString() {
@@ -71,6 +113,7 @@ public class FileMetadata {
                 ", creationDate=" + creationDate +
                 ", lastModifiedDate=" + lastModifiedDate +
                 ", contentType='" + contentType + '\'' +
+                ", tags=" + tags +
                 '}';
     }
 
@@ -87,7 +130,8 @@ public class FileMetadata {
         if (!creationDate.equals(that.creationDate)) return false;
         if (lastModifiedDate != null ? !lastModifiedDate.equals(that.lastModifiedDate) : that.lastModifiedDate != null)
             return false;
-        return contentType != null ? contentType.equals(that.contentType) : that.contentType == null;
+        if (contentType != null ? !contentType.equals(that.contentType) : that.contentType != null) return false;
+        return tags.equals(that.tags);
     }
 
     @Override
@@ -98,6 +142,7 @@ public class FileMetadata {
         result = 31 * result + creationDate.hashCode();
         result = 31 * result + (lastModifiedDate != null ? lastModifiedDate.hashCode() : 0);
         result = 31 * result + (contentType != null ? contentType.hashCode() : 0);
+        result = 31 * result + tags.hashCode();
         return result;
     }
 }
\ No newline at end of file
@@ -1,19 +1,66 @@
 package com.danielremsburg.archinex.metadata;
 
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+/**
+ * In-memory metadata store safe for concurrent use. Reads, including index lookups, are lock-free;
+ * writers are serialized so the primary map and the secondary indexes move together.
+ * <p>
+ * The indexes are keyed on the content type and tags, which {@link FileMetadata} lets callers
+ * change. {@link #store} therefore keeps a copy of what it is given, and the instances handed
+ * back by {@link #get} and {@link #query} must be treated as read-only: to change a file, store
+ * a new instance with the same UUID.
+ */
 public class MemoryMetadataStore implements MetadataStore {
 
-    private final Map<UUID, FileMetadata> metadataMap = new HashMap<>();
+    private static final UUID MIN_UUID = new UUID(0L, 0L);
+    private static final Comparator<FileMetadata> SIZE_ORDER = Comparator
+            .comparingLong(FileMetadata::getSize)
+            .thenComparing(MetadataQuery.ORDER);
+    private static final Comparator<FileMetadata> PATH_ORDER = Comparator
+            .comparing(FileMetadata::getPath)
+            .thenComparing(MetadataQuery.ORDER);
+
+    private final ConcurrentMap<UUID, FileMetadata> metadataMap = new ConcurrentHashMap<>();
+
+    // Secondary indexes. Exact path lookups use a hash map of small copy-on-write arrays; prefix
+    // searches use a separate skip list sorted by path.
+    private final NavigableSet<FileMetadata> creationIndex = new ConcurrentSkipListSet<>(MetadataQuery.ORDER);
+    private final NavigableSet<FileMetadata> sizeIndex = new ConcurrentSkipListSet<>(SIZE_ORDER);
+    private final ConcurrentMap<String, NavigableSet<FileMetadata>> contentTypeIndex = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Map.Entry<String, String>, NavigableSet<FileMetadata>> tagIndex = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, FileMetadata[]> pathIndex = new ConcurrentHashMap<>(); // Copy-on-write, usually one entry
+    private final NavigableSet<FileMetadata> pathPrefixIndex = new ConcurrentSkipListSet<>(PATH_ORDER);
+
+    private final Object writeLock = new Object();
 
     @Override
     public void store(FileMetadata metadata) throws MetadataStoreException {
-        metadataMap.put(metadata.getUuid(), metadata);
+        synchronized (writeLock) {
+            FileMetadata stored = copyOf(metadata);
+            FileMetadata previous = metadataMap.put(stored.getUuid(), stored);
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(stored);
+        }
     }
 
     @Override
@@ -23,7 +70,12 @@ public class MemoryMetadataStore implements MetadataStore {
 
     @Override
     public void delete(UUID uuid) throws MetadataStoreException {
-        metadataMap.remove(uuid);
+        synchronized (writeLock) {
+            FileMetadata removed = metadataMap.remove(uuid);
+            if (removed != null) {
+                unindex(removed);
+            }
+        }
     }
 
     @Override
@@ -31,16 +83,61 @@ public class MemoryMetadataStore implements MetadataStore {
         return new ArrayList<>(metadataMap.values());
     }
 
+    @Override
+    public void scanFiles(int fetchSize, Predicate<FileMetadata> visitor) throws MetadataStoreException {
+        // The concurrent map's iterator tolerates visitors deleting while scanning
+        for (FileMetadata metadata : metadataMap.values()) {
+            if (!visitor.test(metadata)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<FileMetadata> query(MetadataQuery query) throws MetadataStoreException {
+        // Tag, content type and creation date indexes are already in result order, so they can stop at the limit
+        if (query.getPathPrefix() == null && !query.getTags().isEmpty()) {
+            Map.Entry<String, String> tag = query.getTags().entrySet().iterator().next();
+            NavigableSet<FileMetadata> matches = tagIndex.get(Map.entry(tag.getKey(), tag.getValue()));
+            return matches == null ? new ArrayList<>() : collectOrdered(fromLowerBound(matches, query), query);
+        }
+        if (query.getPathPrefix() == null && query.getContentType() != null) {
+            NavigableSet<FileMetadata> matches = contentTypeIndex.get(query.getContentType());
+            return matches == null ? new ArrayList<>() : collectOrdered(fromLowerBound(matches, query), query);
+        }
+        if (query.getPathPrefix() != null) {
+            String prefix = query.getPathPrefix();
+            return collectEither(pathPrefixIndex.tailSet(probe(prefix, Instant.MIN, MIN_UUID, 0L), true),
+                    metadata -> metadata.getPath().startsWith(prefix), query);
+        }
+        if (query.getMinSize() != null || query.getMaxSize() != null) {
+            return collectEither(sizeRange(query), metadata -> true, query);
+        }
+        return collectOrdered(fromLowerBound(creationIndex, query), query);
+    }
+
     @Override
     public void deleteAll() throws MetadataStoreException {
-        metadataMap.clear(); // Clear the map to delete all entries
+        synchronized (writeLock) {
+            metadataMap.clear(); // Clear the map to delete all entries
+            creationIndex.clear();
+            sizeIndex.clear();
+            contentTypeIndex.clear();
+            tagIndex.clear();
+            pathIndex.clear();
+            pathPrefixIndex.clear();
+        }
     }
 
     public FileMetadata getByPath(String path) throws MetadataStoreException {
-        return metadataMap.values().stream()
-                .filter(metadata -> metadata.getPath().equals(path))
-                .findFirst()
-                .orElse(null);
+        FileMetadata[] entries = pathIndex.get(path);
+        return entries == null ? null : entries[0];
+    }
+
+    public List<FileMetadata> searchByPathPrefix(String prefix) throws MetadataStoreException {
+        List<FileMetadata> matches = pathRange(prefix);
+        matches.sort(MetadataQuery.ORDER);
+        return matches;
     }
 
     public List<FileMetadata> searchByPath(String path) throws MetadataStoreException {
@@ -50,10 +147,177 @@ public class MemoryMetadataStore implements MetadataStore {
     }
 
     public void update(FileMetadata metadata) throws MetadataStoreException {
-        metadataMap.put(metadata.getUuid(), metadata); // Update by replacing
+        store(metadata); // Update by replacing
     }
 
     public int count() throws MetadataStoreException {
         return metadataMap.size();
     }
-}
\ No newline at end of file
+
+    // Live, weakly consistent view for snapshotting without copying the catalog
+    Collection<FileMetadata> values() {
+        return metadataMap.values();
+    }
+
+    private void index(FileMetadata metadata) {
+        creationIndex.add(metadata);
+        sizeIndex.add(metadata);
+        if (metadata.getContentType() != null) {
+            contentTypeIndex.computeIfAbsent(metadata.getContentType(), key -> new ConcurrentSkipListSet<>(MetadataQuery.ORDER)).add(metadata);
+        }
+        for (Map.Entry<String, String> tag : metadata.getTags().entrySet()) {
+            tagIndex.computeIfAbsent(Map.entry(tag.getKey(), tag.getValue()), key -> new ConcurrentSkipListSet<>(MetadataQuery.ORDER)).add(metadata);
+        }
+        FileMetadata[] entries = pathIndex.get(metadata.getPath());
+        if (entries == null) {
+            pathIndex.put(metadata.getPath(), new FileMetadata[]{metadata});
+        } else {
+            FileMetadata[] grown = Arrays.copyOf(entries, entries.length + 1);
+            grown[entries.length] = metadata;
+            pathIndex.put(metadata.getPath(), grown);
+        }
+        pathPrefixIndex.add(metadata);
+    }
+
+    private void unindex(FileMetadata metadata) {
+        creationIndex.remove(metadata);
+        sizeIndex.remove(metadata);
+        if (metadata.getContentType() != null) {
+            removeFrom(contentTypeIndex, metadata.getContentType(), metadata);
+        }
+        for (Map.Entry<String, String> tag : metadata.getTags().entrySet()) {
+            removeFrom(tagIndex, Map.entry(tag.getKey(), tag.getValue()), metadata);
+        }
+        FileMetadata[] entries = pathIndex.get(metadata.getPath());
+        if (entries != null) {
+            FileMetadata[] remaining = Arrays.stream(entries).filter(entry -> entry != metadata).toArray(FileMetadata[]::new);
+            if (remaining.length == 0) {
+                pathIndex.remove(metadata.getPath());
+            } else {
+                pathIndex.put(metadata.getPath(), remaining);
+            }
+        }
+        pathPrefixIndex.remove(metadata);
+    }
+
+    // The caller keeps its instance, so changing it later cannot leave the indexes stale
+    private static FileMetadata copyOf(FileMetadata metadata) {
+        FileMetadata copy = new FileMetadata(metadata.getUuid(), metadata.getPath(), metadata.getSize(), metadata.getCreationDate());
+        copy.setLastModifiedDate(metadata.getLastModifiedDate());
+        copy.setContentType(metadata.getContentType());
+        copy.setTags(metadata.getTags());
+        return copy;
+    }
+
+    private static <K> void removeFrom(Map<K, ? extends Set<FileMetadata>> index, K key, FileMetadata metadata) {
+        Set<FileMetadata> entries = index.get(key);
+        if (entries != null) {
+            entries.remove(metadata);
+            if (entries.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    // Positions an ORDER-sorted index at the later of the cursor and the creation lower bound
+    private static NavigableSet<FileMetadata> fromLowerBound(NavigableSet<FileMetadata> index, MetadataQuery query) {
+        FileMetadata from = query.getCreatedFrom() != null ? probe(query.getCreatedFrom(), MIN_UUID, 0L) : null;
+        if (query.hasCursor()) {
+            FileMetadata cursor = probe(query.getAfterCreationDate(), query.getAfterUuid(), 0L);
+            if (from == null || MetadataQuery.ORDER.compare(cursor, from) >= 0) {
+                return index.tailSet(cursor, false);
+            }
+        }
+        return from != null ? index.tailSet(from, true) : index;
+    }
+
+    private NavigableSet<FileMetadata> sizeRange(MetadataQuery query) {
+        if (query.getMinSize() != null && query.getMaxSize() != null && query.getMinSize() > query.getMaxSize()) {
+            return new TreeSet<>(SIZE_ORDER);
+        }
+        NavigableSet<FileMetadata> view = sizeIndex;
+        if (query.getMinSize() != null) {
+            view = view.tailSet(probe(Instant.MIN, MIN_UUID, query.getMinSize()), true);
+        }
+        if (query.getMaxSize() != null && query.getMaxSize() < Long.MAX_VALUE) {
+            view = view.headSet(probe(Instant.MIN, MIN_UUID, query.getMaxSize() + 1), false);
+        }
+        return view;
+    }
+
+    private List<FileMetadata> pathRange(String prefix) {
+        List<FileMetadata> matches = new ArrayList<>();
+        for (FileMetadata metadata : pathPrefixIndex.tailSet(probe(prefix, Instant.MIN, MIN_UUID, 0L), true)) {
+            if (!metadata.getPath().startsWith(prefix)) {
+                break;
+            }
+            matches.add(metadata);
+        }
+        return matches;
+    }
+
+    private static List<FileMetadata> collectOrdered(Iterable<FileMetadata> ordered, MetadataQuery query) {
+        List<FileMetadata> results = new ArrayList<>();
+        for (FileMetadata metadata : ordered) {
+            if (query.getCreatedBefore() != null && !metadata.getCreationDate().isBefore(query.getCreatedBefore())) {
+                break;
+            }
+            if (query.matches(metadata)) {
+                results.add(metadata);
+                if (results.size() >= query.getLimit()) {
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Answers a query whose best index is not in result order. The creation index is walked from the
+     * cursor, which stops at the limit but may pass many misses; the range index is walked in step,
+     * keeping the first {@code limit} matches in result order, which only ends once the range does.
+     * Whichever finishes first answers, so the cost is at most twice the cheaper of the two.
+     */
+    private List<FileMetadata> collectEither(Iterable<FileMetadata> range, Predicate<FileMetadata> inRange, MetadataQuery query) {
+        Iterator<FileMetadata> ordered = fromLowerBound(creationIndex, query).iterator();
+        Iterator<FileMetadata> candidates = range.iterator();
+        List<FileMetadata> results = new ArrayList<>();
+        PriorityQueue<FileMetadata> best = new PriorityQueue<>(MetadataQuery.ORDER.reversed());
+        while (true) {
+            if (!ordered.hasNext()) {
+                return results;
+            }
+            FileMetadata next = ordered.next();
+            if (query.getCreatedBefore() != null && !next.getCreationDate().isBefore(query.getCreatedBefore())) {
+                return results;
+            }
+            if (query.matches(next)) {
+                results.add(next);
+                if (results.size() >= query.getLimit()) {
+                    return results;
+                }
+            }
+
+            FileMetadata candidate = candidates.hasNext() ? candidates.next() : null;
+            if (candidate == null || !inRange.test(candidate)) {
+                List<FileMetadata> page = new ArrayList<>(best);
+                page.sort(MetadataQuery.ORDER);
+                return page;
+            }
+            if (query.matches(candidate)) {
+                best.add(candidate);
+                if (best.size() > query.getLimit()) {
+                    best.poll();
+                }
+            }
+        }
+    }
+
+    private static FileMetadata probe(Instant creationDate, UUID uuid, long size) {
+        return probe("", creationDate, uuid, size);
+    }
+
+    private static FileMetadata probe(String path, Instant creationDate, UUID uuid, long size) {
+        return new FileMetadata(uuid, path, size, creationDate);
+    }
+}
@@ -0,0 +1,88 @@
+package com.danielremsburg.archinex.metadata;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of {@link FileMetadata} shared by the on-disk metadata formats.
+ */
+final class MetadataCodec {
+
+    private MetadataCodec() {
+    }
+
+    static void write(DataOutput out, FileMetadata metadata) throws IOException {
+        writeUuid(out, metadata.getUuid());
+        writeString(out, metadata.getPath());
+        out.writeLong(metadata.getSize());
+        writeInstant(out, metadata.getCreationDate());
+        out.writeBoolean(metadata.getLastModifiedDate() != null);
+        if (metadata.getLastModifiedDate() != null) {
+            writeInstant(out, metadata.getLastModifiedDate());
+        }
+        out.writeBoolean(metadata.getContentType() != null);
+        if (metadata.getContentType() != null) {
+            writeString(out, metadata.getContentType());
+        }
+        out.writeInt(metadata.getTags().size());
+        for (Map.Entry<String, String> tag : metadata.getTags().entrySet()) {
+            writeString(out, tag.getKey());
+            writeString(out, tag.getValue());
+        }
+    }
+
+    static FileMetadata read(DataInput in) throws IOException {
+        UUID uuid = readUuid(in);
+        String path = readString(in);
+        long size = in.readLong();
+        FileMetadata metadata = new FileMetadata(uuid, path, size, readInstant(in));
+        metadata.setLastModifiedDate(in.readBoolean() ? readInstant(in) : null);
+        if (in.readBoolean()) {
+            metadata.setContentType(readString(in));
+        }
+        int count = in.readInt();
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            tags.put(readString(in), readString(in));
+        }
+        metadata.setTags(tags);
+        return metadata;
+    }
+
+    static void writeUuid(DataOutput out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeInstant(DataOutput out, Instant instant) throws IOException {
+        out.writeLong(instant.getEpochSecond());
+        out.writeInt(instant.getNano());
+    }
+
+    private static Instant readInstant(DataInput in) throws IOException {
+        return Instant.ofEpochSecond(in.readLong(), in.readInt());
+    }
+
+    // Length-prefixed UTF-8; DataOutput.writeUTF caps strings at 64 KB
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,275 @@
+package com.danielremsburg.archinex.metadata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of metadata mutations. Each record is {@code [length][crc32][op][body]}; on
+ * replay a torn or corrupt tail (from a crash mid-write) is detected by its checksum and cut off.
+ * The file is locked while open, so a second store over the same log fails instead of
+ * interleaving its records.
+ */
+class MetadataLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetadataLog.class);
+
+    // Op code 1 was an untagged store record and is not reused
+    static final byte DELETE = 2;
+    static final byte CLEAR = 3;
+    static final byte STORE = 4;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    interface Visitor {
+        void store(FileMetadata metadata) throws MetadataStoreException;
+
+        void delete(UUID uuid) throws MetadataStoreException;
+
+        void clear() throws MetadataStoreException;
+    }
+
+    private final Path file;
+    private final boolean syncOnWrite;
+    private FileChannel channel;
+
+    MetadataLog(Path file, boolean syncOnWrite) throws IOException {
+        this.file = file;
+        this.syncOnWrite = syncOnWrite;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = open(file);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Feeds every intact record to the visitor and truncates anything after the last one.
+     * Returns the number of records replayed.
+     */
+    synchronized long replay(Visitor visitor) throws IOException, MetadataStoreException {
+        long validLength = 0;
+        long records = 0;
+        // Read through the locked channel itself; it must stay open, so the stream is not closed
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024));
+        while (true) {
+            byte[] payload = readRecord(in);
+            if (payload == null) {
+                break;
+            }
+            apply(payload, visitor);
+            validLength += HEADER_SIZE + payload.length;
+            records++;
+        }
+        if (validLength < channel.size()) {
+            logger.warn("Truncating {} bytes of incomplete metadata log tail in {}", channel.size() - validLength, file);
+            channel.truncate(validLength);
+            channel.force(true);
+        }
+        channel.position(validLength);
+        return records;
+    }
+
+    synchronized void appendStore(FileMetadata metadata) throws IOException {
+        append(encodeStore(metadata));
+        flush();
+    }
+
+    /** Appends one store record per file with a single write and, if enabled, a single sync. */
+    synchronized void appendStoreAll(Collection<FileMetadata> metadata) throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream(metadata.size() * 160);
+        for (FileMetadata file : metadata) {
+            byte[] payload = encodeStore(file);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(payload.length).putInt(checksum(payload));
+            records.write(header.array());
+            records.write(payload);
+        }
+        long position = channel.position();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(records.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            channel.truncate(position);
+            throw e;
+        }
+        flush();
+    }
+
+    synchronized void appendDelete(UUID uuid) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(17);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(DELETE);
+        MetadataCodec.writeUuid(out, uuid);
+        append(bytes.toByteArray());
+        flush();
+    }
+
+    synchronized void appendClear() throws IOException {
+        append(new byte[]{CLEAR});
+        flush();
+    }
+
+    /**
+     * Atomically replaces the log with one store record per live entry.
+     */
+    synchronized void rewrite(Iterable<FileMetadata> live) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel tempChannel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (FileMetadata metadata : live) {
+                write(tempChannel, encodeStore(metadata));
+            }
+            tempChannel.force(true);
+        }
+        // Some platforms refuse to replace a file that is open, so the lock is briefly let go
+        channel.close();
+        try {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        } finally {
+            // The old log is still complete if the move failed, so either way appends continue at the end
+            channel = open(file);
+            channel.position(channel.size());
+        }
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(true);
+        channel.close();
+    }
+
+    static byte[] readRecord(DataInputStream in) throws IOException {
+        int length;
+        int checksum;
+        try {
+            length = in.readInt();
+            checksum = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length <= 0 || length > MAX_RECORD_SIZE) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        try {
+            in.readFully(payload);
+        } catch (EOFException e) {
+            return null;
+        }
+        return checksum(payload) == checksum ? payload : null;
+    }
+
+    static void apply(byte[] payload, Visitor visitor) throws IOException, MetadataStoreException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        switch (op) {
+            case STORE:
+                visitor.store(MetadataCodec.read(in));
+                break;
+            case DELETE:
+                visitor.delete(MetadataCodec.readUuid(in));
+                break;
+            case CLEAR:
+                visitor.clear();
+                break;
+            default:
+                throw new IOException("Unknown metadata log operation: " + op);
+        }
+    }
+
+    private static byte[] encodeStore(FileMetadata metadata) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(STORE);
+        MetadataCodec.write(out, metadata);
+        return bytes.toByteArray();
+    }
+
+    private void append(byte[] payload) throws IOException {
+        long position = channel.position();
+        try {
+            write(channel, payload);
+        } catch (IOException e) {
+            // Drop the partial record so later appends are not hidden behind it on replay
+            channel.truncate(position);
+            throw e;
+        }
+    }
+
+    private void flush() throws IOException {
+        if (syncOnWrite) {
+            channel.force(false);
+        }
+    }
+
+    private static void write(FileChannel target, byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.tryLock() == null) {
+                throw new IOException("Metadata log " + file + " is in use by another process");
+            }
+        } catch (OverlappingFileLockException e) {
+            channel.close();
+            throw new IOException("Metadata log " + file + " is already open in this process", e);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    // Makes a rename durable; not every platform can open a directory, and those do not need it
+    static void syncDirectory(Path directory) {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not sync directory {}: {}", directory, e.getMessage());
+        }
+    }
+}
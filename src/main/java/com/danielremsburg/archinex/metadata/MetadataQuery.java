@@ -0,0 +1,190 @@
+package com.danielremsburg.archinex.metadata;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Range query over the metadata catalog. Every criterion is optional; results are ordered by
+ * creation date and then UUID, which is also the key used for keyset pagination via
+ * {@link #startAfter(FileMetadata)}.
+ */
+public class MetadataQuery {
+
+    public static final int DEFAULT_LIMIT = 1000;
+
+    // Byte-wise UUID order so in-memory results line up with PostgreSQL's uuid ordering
+    public static final Comparator<UUID> UUID_ORDER = (a, b) -> {
+        int result = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return result != 0 ? result : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
+
+    public static final Comparator<FileMetadata> ORDER = Comparator
+            .comparing(FileMetadata::getCreationDate)
+            .thenComparing(FileMetadata::getUuid, UUID_ORDER);
+
+    private Instant createdFrom;
+    private Instant createdBefore;
+    private Long minSize;
+    private Long maxSize;
+    private String contentType;
+    private String pathPrefix;
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private Instant afterCreationDate;
+    private UUID afterUuid;
+    private int limit = DEFAULT_LIMIT;
+
+    // Creation date lower bound, inclusive
+    public MetadataQuery createdFrom(Instant createdFrom) {
+        this.createdFrom = createdFrom;
+        return this;
+    }
+
+    // Creation date upper bound, exclusive
+    public MetadataQuery createdBefore(Instant createdBefore) {
+        this.createdBefore = createdBefore;
+        return this;
+    }
+
+    // Size bounds are inclusive
+    public MetadataQuery minSize(long minSize) {
+        this.minSize = minSize;
+        return this;
+    }
+
+    public MetadataQuery maxSize(long maxSize) {
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    public MetadataQuery contentType(String contentType) {
+        this.contentType = contentType;
+        return this;
+    }
+
+    public MetadataQuery pathPrefix(String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+        return this;
+    }
+
+    // Every tag given must be present with exactly this value
+    public MetadataQuery tag(String key, String value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("Tag key and value are required");
+        }
+        tags.put(key, value);
+        return this;
+    }
+
+    public MetadataQuery limit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Query limit must be positive: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Continues a previous query after the last row it returned.
+     */
+    public MetadataQuery startAfter(FileMetadata last) {
+        return startAfter(last.getCreationDate(), last.getUuid());
+    }
+
+    public MetadataQuery startAfter(Instant creationDate, UUID uuid) {
+        this.afterCreationDate = creationDate;
+        this.afterUuid = uuid;
+        return this;
+    }
+
+    public Instant getCreatedFrom() {
+        return createdFrom;
+    }
+
+    public Instant getCreatedBefore() {
+        return createdBefore;
+    }
+
+    public Long getMinSize() {
+        return minSize;
+    }
+
+    public Long getMaxSize() {
+        return maxSize;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getPathPrefix() {
+        return pathPrefix;
+    }
+
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    public Instant getAfterCreationDate() {
+        return afterCreationDate;
+    }
+
+    public UUID getAfterUuid() {
+        return afterUuid;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean hasCursor() {
+        return afterCreationDate != null && afterUuid != null;
+    }
+
+    /**
+     * Whether the given file satisfies every criterion, including the keyset cursor.
+     */
+    public boolean matches(FileMetadata metadata) {
+        if (createdFrom != null && metadata.getCreationDate().isBefore(createdFrom)) return false;
+        if (createdBefore != null && !metadata.getCreationDate().isBefore(createdBefore)) return false;
+        if (minSize != null && metadata.getSize() < minSize) return false;
+        if (maxSize != null && metadata.getSize() > maxSize) return false;
+        if (contentType != null && !contentType.equals(metadata.getContentType())) return false;
+        if (pathPrefix != null && !metadata.getPath().startsWith(pathPrefix)) return false;
+        if (!tags.isEmpty() && !hasTags(metadata)) return false;
+        return !hasCursor() || isAfterCursor(metadata);
+    }
+
+    private boolean hasTags(FileMetadata metadata) {
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!tag.getValue().equals(metadata.getTag(tag.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isAfterCursor(FileMetadata metadata) {
+        int result = metadata.getCreationDate().compareTo(afterCreationDate);
+        return result > 0 || (result == 0 && UUID_ORDER.compare(metadata.getUuid(), afterUuid) > 0);
+    }
+
+    @Override
+    public String toString() {
+        return "MetadataQuery{" +
+                "createdFrom=" + createdFrom +
+                ", createdBefore=" + createdBefore +
+                ", minSize=" + minSize +
+                ", maxSize=" + maxSize +
+                ", contentType='" + contentType + '\'' +
+                ", pathPrefix='" + pathPrefix + '\'' +
+                ", tags=" + tags +
+                ", afterCreationDate=" + afterCreationDate +
+                ", afterUuid=" + afterUuid +
+                ", limit=" + limit +
+                '}';
+    }
+}
@@ -0,0 +1,164 @@
+package com.danielremsburg.archinex.metadata;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary point-in-time image of a metadata catalog:
+ * {@code [magic][version][generation] (1 entry)* 0 [crc32]}. Snapshots are written to a temporary
+ * file, forced and atomically renamed into place, and loaded through read-only memory mappings
+ * of successive windows, since a single mapping is limited to 2GB.
+ */
+final class MetadataSnapshot {
+
+    private static final int MAGIC = 0x41584d53; // "AXMS"
+    private static final int VERSION = 2;
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    interface Sink {
+        void accept(FileMetadata metadata) throws MetadataStoreException;
+    }
+
+    private MetadataSnapshot() {
+    }
+
+    static void write(Path file, long generation, Iterable<FileMetadata> entries) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32 crc = new CRC32();
+            OutputStream channelOut = new ChannelOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(channelOut, 256 * 1024), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            // Entries are marker-prefixed rather than counted, since the source may change while it is written
+            for (FileMetadata metadata : entries) {
+                out.writeByte(1);
+                MetadataCodec.write(out, metadata);
+            }
+            out.writeByte(0);
+            out.flush();
+            new DataOutputStream(channelOut).writeInt((int) crc.getValue());
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        MetadataLog.syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Maps the snapshot, verifies its checksum and feeds every entry to the sink. Returns the
+     * snapshot's generation.
+     */
+    static long load(Path file, Sink sink) throws IOException, MetadataStoreException {
+        return load(file, sink, WINDOW_SIZE);
+    }
+
+    static long load(Path file, Sink sink, long windowSize) throws IOException, MetadataStoreException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < 21) {
+                throw new IOException("Invalid metadata snapshot size: " + length);
+            }
+            long bodyLength = length - 4;
+
+            // Verify the whole file before feeding anything to the sink
+            CRC32 crc = new CRC32();
+            for (long position = 0; position < bodyLength; position += windowSize) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, bodyLength - position)));
+            }
+            if ((int) crc.getValue() != channel.map(FileChannel.MapMode.READ_ONLY, bodyLength, 4).getInt()) {
+                throw new IOException("Metadata snapshot checksum mismatch: " + file);
+            }
+
+            DataInputStream in = new DataInputStream(new MappedInputStream(channel, bodyLength, windowSize));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a metadata snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported metadata snapshot version " + version + ": " + file);
+            }
+            long generation = in.readLong();
+            while (in.readByte() != 0) {
+                sink.accept(MetadataCodec.read(in));
+            }
+            return generation;
+        }
+    }
+
+    // Reads the first `end` bytes of the channel, mapping one window at a time
+    private static final class MappedInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private final long windowSize;
+        private long windowStart;
+        private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+        MappedInputStream(FileChannel channel, long end, long windowSize) {
+            this.channel = channel;
+            this.end = end;
+            this.windowSize = windowSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return nextWindowIfNeeded() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (!nextWindowIfNeeded()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        private boolean nextWindowIfNeeded() throws IOException {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+            windowStart += buffer.capacity();
+            if (windowStart >= end) {
+                return false;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(windowSize, end - windowStart));
+            return true;
+        }
+    }
+
+    private static final class ChannelOutputStream extends OutputStream {
+        private final FileChannel channel;
+
+        ChannelOutputStream(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -1,20 +1,52 @@
 package com.danielremsburg.archinex.metadata;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Predicate;
 
 public interface MetadataStore {
 
     void store(FileMetadata metadata) throws MetadataStoreException;
 
+    /**
+     * Stores several files at once. Stores backed by a log or database override this to write
+     * the batch in one append or transaction.
+     */
+    default void storeAll(Collection<FileMetadata> metadata) throws MetadataStoreException {
+        for (FileMetadata file : metadata) {
+            store(file);
+        }
+    }
+
     FileMetadata get(UUID uuid) throws MetadataStoreException;
 
     void delete(UUID uuid) throws MetadataStoreException;
 
     List<FileMetadata> getAllFiles() throws MetadataStoreException;
 
+    /**
+     * Visits every file without materializing the whole catalog. Rows are pulled in batches of
+     * {@code fetchSize}; the visitor returns {@code false} to stop the scan early.
+     */
+    void scanFiles(int fetchSize, Predicate<FileMetadata> visitor) throws MetadataStoreException;
+
+    /**
+     * Returns at most {@code query.getLimit()} files matching the query, ordered by creation
+     * date and UUID. Pass the last result to {@link MetadataQuery#startAfter} for the next page.
+     */
+    List<FileMetadata> query(MetadataQuery query) throws MetadataStoreException;
+
     void deleteAll() throws MetadataStoreException;
 
     void update(FileMetadata metadata) throws MetadataStoreException;
 
+    /**
+     * Identifies the database behind this store, so that two instances over the same data can be
+     * recognized as such. {@code null} when the data belongs to this instance alone.
+     */
+    default String getBackendId() {
+        return null;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.danielremsburg.archinex.metadata;
+
+import java.io.Closeable;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * A metadata store that can report changes made by other daemons, so caches in front of it can
+ * drop stale entries instead of waiting for their TTL.
+ */
+public interface ObservableMetadataStore extends MetadataStore {
+
+    /**
+     * Starts listening for changes until the returned handle is closed. {@code onChange} receives
+     * each changed UUID; {@code onReset} runs whenever changes may have been missed, such as after
+     * a reconnect, and whenever every entry changed.
+     */
+    Closeable listenForChanges(Consumer<UUID> onChange, Runnable onReset);
+}
@@ -0,0 +1,101 @@
+package com.danielremsburg.archinex.metadata;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Background LISTEN on the metadata change channel. Each notification carries the changed UUID,
+ * or {@code *} when every row changed. After a reconnect notifications may have been missed, so
+ * {@code onReset} runs before listening resumes.
+ */
+public class PostgresChangeListener implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostgresChangeListener.class);
+
+    private static final int POLL_TIMEOUT_MS = 1000;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final String jdbcUrl;
+    private final String username;
+    private final String password;
+    private final String channel;
+    private final Consumer<UUID> onChange;
+    private final Runnable onReset;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    PostgresChangeListener(String jdbcUrl, String username, String password, String channel,
+                           Consumer<UUID> onChange, Runnable onReset) {
+        this.jdbcUrl = jdbcUrl;
+        this.username = username;
+        this.password = password;
+        this.channel = channel;
+        this.onChange = onChange;
+        this.onReset = onReset;
+        this.thread = new Thread(this::run, "metadata-change-listener");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void run() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(jdbcUrl, username, password)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                onReset.run();
+                logger.info("Listening for metadata changes on channel {}", channel);
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        dispatch(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                logger.error("Metadata change listener failed, reconnecting: {}", e.getMessage(), e);
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private void dispatch(String payload) {
+        if ("*".equals(payload)) {
+            onReset.run();
+            return;
+        }
+        try {
+            onChange.accept(UUID.fromString(payload));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Ignoring malformed metadata change notification: {}", payload);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+    }
+}
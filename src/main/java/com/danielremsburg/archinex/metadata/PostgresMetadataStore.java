@@ -1,26 +1,46 @@
 package com.danielremsburg.archinex.metadata;
 
 import com.danielremsburg.archinex.config.ArchinexConfig;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Type;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
-public class PostgresMetadataStore implements MetadataStore {
+public class PostgresMetadataStore implements ObservableMetadataStore {
 
     private static final Logger logger = LoggerFactory.getLogger(PostgresMetadataStore.class);
 
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    static final String CHANGE_CHANNEL = "archinex_metadata";
+    private static final String COLUMNS = "uuid, path, size, creation_date, content_type, tags";
+    private static final Gson GSON = new Gson();
+    private static final Type TAGS_TYPE = new TypeToken<Map<String, String>>() { }.getType();
+
     private final String jdbcUrl;
     private final String username;
     private final String password;
+    private final boolean notifyChanges;
 
     public PostgresMetadataStore(ArchinexConfig config) {
-        this.jdbcUrl = config.getString("postgres.jdbcUrl");
-        this.username = config.getString("postgres.username");
-        this.password = config.getString("postgres.password");
+        this(config.getString("postgres.jdbcUrl"), config.getString("postgres.username"),
+                config.getString("postgres.password"), config.getBooleanOrDefault("postgres.notifyChanges", false));
+    }
+
+    public PostgresMetadataStore(String jdbcUrl, String username, String password, boolean notifyChanges) {
+        this.jdbcUrl = jdbcUrl;
+        this.username = username;
+        this.password = password;
+        this.notifyChanges = notifyChanges;
 
         if (jdbcUrl == null || jdbcUrl.isEmpty() || username == null || username.isEmpty() || password == null || password.isEmpty()) {
             throw new IllegalArgumentException("PostgreSQL configuration (JDBC URL, username, password) is missing.");
@@ -43,6 +63,15 @@ public class PostgresMetadataStore implements MetadataStore {
                     "size BIGINT NOT NULL," +
                     "creation_date TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP)";
             statement.execute(createTableSQL);
+            statement.execute("ALTER TABLE files ADD COLUMN IF NOT EXISTS content_type TEXT");
+            statement.execute("ALTER TABLE files ADD COLUMN IF NOT EXISTS tags JSONB NOT NULL DEFAULT '{}'");
+
+            // Indexes backing query(): keyset order, size ranges, content type, path prefixes and tag containment
+            statement.execute("CREATE INDEX IF NOT EXISTS files_creation_date_idx ON files (creation_date, uuid)");
+            statement.execute("CREATE INDEX IF NOT EXISTS files_size_idx ON files (size)");
+            statement.execute("CREATE INDEX IF NOT EXISTS files_content_type_idx ON files (content_type, creation_date, uuid)");
+            statement.execute("CREATE INDEX IF NOT EXISTS files_path_prefix_idx ON files (path text_pattern_ops)");
+            statement.execute("CREATE INDEX IF NOT EXISTS files_tags_idx ON files USING GIN (tags jsonb_path_ops)");
             logger.info("Files table created or already exists.");
 
         } catch (SQLException e) {
@@ -53,7 +82,7 @@ public class PostgresMetadataStore implements MetadataStore {
 
     @Override
     public void store(FileMetadata metadata) throws MetadataStoreException {
-        String insertSQL = "INSERT INTO files (uuid, path, size, creation_date) VALUES (?, ?, ?, ?)";
+        String insertSQL = "INSERT INTO files (uuid, path, size, creation_date, content_type, tags) VALUES (?, ?, ?, ?, ?, ?::jsonb)";
         try (Connection connection = DriverManager.getConnection(jdbcUrl, username, password);
              PreparedStatement statement = connection.prepareStatement(insertSQL)) {
 
@@ -61,7 +90,10 @@ public class PostgresMetadataStore implements MetadataStore {
             statement.setString(2, metadata.getPath());
             statement.setLong(3, metadata.getSize());
             statement.setTimestamp(4, Timestamp.from(metadata.getCreationDate()));
+            statement.setString(5, metadata.getContentType());
+            statement.setString(6, GSON.toJson(metadata.getTags()));
             statement.executeUpdate();
+            notifyChange(connection, metadata.getUuid().toString());
             logger.info("Stored metadata for UUID: {}", metadata.getUuid());
 
         } catch (SQLException e) {
@@ -70,19 +102,48 @@ public class PostgresMetadataStore implements MetadataStore {
         }
     }
 
+    /** Inserts the batch in one transaction, sent as a single JDBC batch. */
+    @Override
+    public void storeAll(Collection<FileMetadata> metadata) throws MetadataStoreException {
+        String insertSQL = "INSERT INTO files (uuid, path, size, creation_date, content_type, tags) VALUES (?, ?, ?, ?, ?, ?::jsonb)";
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, username, password)) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(insertSQL)) {
+                for (FileMetadata file : metadata) {
+                    statement.setObject(1, file.getUuid());
+                    statement.setString(2, file.getPath());
+                    statement.setLong(3, file.getSize());
+                    statement.setTimestamp(4, Timestamp.from(file.getCreationDate()));
+                    statement.setString(5, file.getContentType());
+                    statement.setString(6, GSON.toJson(file.getTags()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                for (FileMetadata file : metadata) {
+                    notifyChange(connection, file.getUuid().toString());
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+            logger.info("Stored metadata for {} files", metadata.size());
+        } catch (SQLException e) {
+            logger.error("Error storing metadata batch: {}", e.getMessage(), e);
+            throw new MetadataStoreException("Error storing metadata batch: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public FileMetadata get(UUID uuid) throws MetadataStoreException {
-        String selectSQL = "SELECT path, size, creation_date FROM files WHERE uuid = ?";
+        String selectSQL = "SELECT " + COLUMNS + " FROM files WHERE uuid = ?";
         try (Connection connection = DriverManager.getConnection(jdbcUrl, username, password);
              PreparedStatement statement = connection.prepareStatement(selectSQL)) {
 
             statement.setObject(1, uuid);
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-                    String path = resultSet.getString("path");
-                    long size = resultSet.getLong("size");
-                    Timestamp creationDate = resultSet.getTimestamp("creation_date");
-                    return new FileMetadata(uuid, path, size, creationDate.toInstant());
+                    return mapRow(resultSet);
                 } else {
                     return null;
                 }
@@ -101,6 +162,7 @@ public class PostgresMetadataStore implements MetadataStore {
 
             statement.setObject(1, uuid);
             statement.executeUpdate();
+            notifyChange(connection, uuid.toString());
             logger.info("Deleted metadata for UUID: {}", uuid);
 
         } catch (SQLException e) {
@@ -112,26 +174,113 @@ public class PostgresMetadataStore implements MetadataStore {
     @Override
     public List<FileMetadata> getAllFiles() throws MetadataStoreException {
         List<FileMetadata> files = new ArrayList<>();
-        String selectSQL = "SELECT uuid, path, size, creation_date FROM files";
+        scanFiles(DEFAULT_FETCH_SIZE, files::add);
+        return files;
+    }
+
+    @Override
+    public void scanFiles(int fetchSize, Predicate<FileMetadata> visitor) throws MetadataStoreException {
+        String selectSQL = "SELECT " + COLUMNS + " FROM files";
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, username, password)) {
+            // The driver only uses a server-side cursor inside a transaction with a fetch size set
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize > 0 ? fetchSize : DEFAULT_FETCH_SIZE);
+                try (ResultSet resultSet = statement.executeQuery(selectSQL)) {
+                    while (resultSet.next()) {
+                        if (!visitor.test(mapRow(resultSet))) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                connection.rollback(); // Read-only scan, just close the cursor's transaction
+            }
+
+        } catch (SQLException e) {
+            logger.error("Error scanning files: {}", e.getMessage(), e);
+            throw new MetadataStoreException("Error scanning files: " + e.getMessage(), e);
+        }
+    }
+
+    private FileMetadata mapRow(ResultSet resultSet) throws SQLException {
+        UUID uuid = (UUID) resultSet.getObject("uuid");
+        String path = resultSet.getString("path");
+        long size = resultSet.getLong("size");
+        Timestamp creationDate = resultSet.getTimestamp("creation_date");
+        FileMetadata metadata = new FileMetadata(uuid, path, size, creationDate.toInstant());
+        metadata.setContentType(resultSet.getString("content_type"));
+        String tags = resultSet.getString("tags");
+        if (tags != null) {
+            metadata.setTags(GSON.fromJson(tags, TAGS_TYPE));
+        }
+        return metadata;
+    }
+
+    @Override
+    public List<FileMetadata> query(MetadataQuery query) throws MetadataStoreException {
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM files WHERE TRUE");
+        List<Object> parameters = new ArrayList<>();
+        if (query.getCreatedFrom() != null) {
+            sql.append(" AND creation_date >= ?");
+            parameters.add(Timestamp.from(query.getCreatedFrom()));
+        }
+        if (query.getCreatedBefore() != null) {
+            sql.append(" AND creation_date < ?");
+            parameters.add(Timestamp.from(query.getCreatedBefore()));
+        }
+        if (query.getMinSize() != null) {
+            sql.append(" AND size >= ?");
+            parameters.add(query.getMinSize());
+        }
+        if (query.getMaxSize() != null) {
+            sql.append(" AND size <= ?");
+            parameters.add(query.getMaxSize());
+        }
+        if (query.getContentType() != null) {
+            sql.append(" AND content_type = ?");
+            parameters.add(query.getContentType());
+        }
+        if (query.getPathPrefix() != null) {
+            sql.append(" AND path LIKE ? ESCAPE '\\'");
+            parameters.add(escapeLike(query.getPathPrefix()) + "%");
+        }
+        if (!query.getTags().isEmpty()) {
+            sql.append(" AND tags @> ?::jsonb"); // Served by the GIN index
+            parameters.add(GSON.toJson(query.getTags()));
+        }
+        if (query.hasCursor()) {
+            sql.append(" AND (creation_date, uuid) > (?, ?)");
+            parameters.add(Timestamp.from(query.getAfterCreationDate()));
+            parameters.add(query.getAfterUuid());
+        }
+        sql.append(" ORDER BY creation_date, uuid LIMIT ?");
+        parameters.add(query.getLimit());
+
+        List<FileMetadata> files = new ArrayList<>();
         try (Connection connection = DriverManager.getConnection(jdbcUrl, username, password);
-             Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery(selectSQL)) {
-
-            while (resultSet.next()) {
-                UUID uuid = (UUID) resultSet.getObject("uuid");
-                String path = resultSet.getString("path");
-                long size = resultSet.getLong("size");
-                Timestamp creationDate = resultSet.getTimestamp("creation_date");
-                files.add(new FileMetadata(uuid, path, size, creationDate.toInstant()));
+             PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    files.add(mapRow(resultSet));
+                }
             }
             return files;
 
         } catch (SQLException e) {
-            logger.error("Error getting all files: {}", e.getMessage(), e);
-            throw new MetadataStoreException("Error getting all files: " + e.getMessage(), e);
+            logger.error("Error querying metadata: {}", e.getMessage(), e);
+            throw new MetadataStoreException("Error querying metadata: " + e.getMessage(), e);
         }
     }
 
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     @Override
     public void deleteAll() throws MetadataStoreException {
         String deleteSQL = "DELETE FROM files";
@@ -139,6 +288,7 @@ public class PostgresMetadataStore implements MetadataStore {
              Statement statement = connection.createStatement()) {
 
             statement.executeUpdate(deleteSQL);
+            notifyChange(connection, "*");
             logger.info("Deleted all metadata.");
 
         } catch (SQLException e) {
@@ -149,14 +299,17 @@ public class PostgresMetadataStore implements MetadataStore {
 
     @Override
     public void update(FileMetadata metadata) throws MetadataStoreException {
-        String updateSQL = "UPDATE files SET path = ?, size = ? WHERE uuid = ?";
+        String updateSQL = "UPDATE files SET path = ?, size = ?, content_type = ?, tags = ?::jsonb WHERE uuid = ?";
         try (Connection connection = DriverManager.getConnection(jdbcUrl, username, password);
              PreparedStatement statement = connection.prepareStatement(updateSQL)) {
 
             statement.setString(1, metadata.getPath());
             statement.setLong(2, metadata.getSize());
-            statement.setObject(3, metadata.getUuid());
+            statement.setString(3, metadata.getContentType());
+            statement.setString(4, GSON.toJson(metadata.getTags()));
+            statement.setObject(5, metadata.getUuid());
             statement.executeUpdate();
+            notifyChange(connection, metadata.getUuid().toString());
             logger.info("Updated metadata for UUID: {}", metadata.getUuid());
 
         } catch (SQLException e) {
@@ -164,4 +317,29 @@ public class PostgresMetadataStore implements MetadataStore {
             throw new MetadataStoreException("Error updating metadata: " + e.getMessage(), e);
         }
     }
+
+    @Override
+    public String getBackendId() {
+        return jdbcUrl;
+    }
+
+    /**
+     * Starts a LISTEN connection receiving the changes published by daemons with
+     * {@code postgres.notifyChanges} enabled.
+     */
+    @Override
+    public PostgresChangeListener listenForChanges(Consumer<UUID> onChange, Runnable onReset) {
+        return new PostgresChangeListener(jdbcUrl, username, password, CHANGE_CHANNEL, onChange, onReset);
+    }
+
+    private void notifyChange(Connection connection, String payload) throws SQLException {
+        if (!notifyChanges) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            statement.setString(1, CHANGE_CHANNEL);
+            statement.setString(2, payload);
+            statement.execute();
+        }
+    }
 }
@@ -0,0 +1,297 @@
+package com.danielremsburg.archinex.metadata;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Spreads the catalog over several metadata stores by UUID hash. Point operations go to a single
+ * shard; scans and queries fan out to every shard in parallel and are merged in
+ * {@link MetadataQuery#ORDER}. Shards are ordinary {@link MetadataStore}s, usually one
+ * {@link PostgresMetadataStore} per database, but any implementation works.
+ */
+public class ShardedMetadataStore implements ObservableMetadataStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedMetadataStore.class);
+
+    private interface ShardCall<T> {
+        T call(MetadataStore shard) throws MetadataStoreException;
+    }
+
+    private final List<MetadataStore> shards;
+    private final ExecutorService fanOut;
+
+    public ShardedMetadataStore(List<? extends MetadataStore> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one metadata shard is required.");
+        }
+        this.shards = List.copyOf(shards);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.fanOut = Executors.newFixedThreadPool(shards.size(), runnable -> {
+            Thread thread = new Thread(runnable, "metadata-shard-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Sharded metadata store initialized with {} shards", shards.size());
+    }
+
+    /**
+     * Builds one {@link PostgresMetadataStore} per entry of the {@code postgres.shards} array.
+     * Entries without credentials inherit {@code postgres.username} and {@code postgres.password}.
+     */
+    public static ShardedMetadataStore fromConfig(ArchinexConfig config) {
+        int count = config.getArrayLength("postgres.shards");
+        boolean notifyChanges = config.getBooleanOrDefault("postgres.notifyChanges", false);
+        List<MetadataStore> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String prefix = "postgres.shards." + i + ".";
+            shards.add(new PostgresMetadataStore(
+                    config.getString(prefix + "jdbcUrl"),
+                    config.getStringOrDefault(prefix + "username", config.getString("postgres.username")),
+                    config.getStringOrDefault(prefix + "password", config.getString("postgres.password")),
+                    notifyChanges));
+        }
+        return new ShardedMetadataStore(shards);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public MetadataStore shardFor(UUID uuid) {
+        return shards.get(shardIndex(uuid, shards.size()));
+    }
+
+    // Jump consistent hash (Lamping & Veach): stable across JVMs, and adding a shard at the end
+    // only moves the keys that land on the new shard
+    static int shardIndex(UUID uuid, int shardCount) {
+        long key = uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+        long bucket = -1;
+        long next = 0;
+        while (next < shardCount) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    @Override
+    public void store(FileMetadata metadata) throws MetadataStoreException {
+        shardFor(metadata.getUuid()).store(metadata);
+    }
+
+    @Override
+    public void storeAll(Collection<FileMetadata> metadata) throws MetadataStoreException {
+        List<List<FileMetadata>> byShard = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (FileMetadata file : metadata) {
+            byShard.get(shardIndex(file.getUuid(), shards.size())).add(file);
+        }
+        // Each shard writes its part of the batch, in parallel with the others
+        onAllShards(shard -> {
+            List<FileMetadata> part = byShard.get(shards.indexOf(shard));
+            if (!part.isEmpty()) {
+                shard.storeAll(part);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public FileMetadata get(UUID uuid) throws MetadataStoreException {
+        return shardFor(uuid).get(uuid);
+    }
+
+    @Override
+    public void delete(UUID uuid) throws MetadataStoreException {
+        shardFor(uuid).delete(uuid);
+    }
+
+    @Override
+    public void update(FileMetadata metadata) throws MetadataStoreException {
+        shardFor(metadata.getUuid()).update(metadata);
+    }
+
+    @Override
+    public List<FileMetadata> getAllFiles() throws MetadataStoreException {
+        List<FileMetadata> files = new ArrayList<>();
+        for (List<FileMetadata> shardFiles : onAllShards(MetadataStore::getAllFiles)) {
+            files.addAll(shardFiles);
+        }
+        return files;
+    }
+
+    @Override
+    public void scanFiles(int fetchSize, Predicate<FileMetadata> visitor) throws MetadataStoreException {
+        // Shards are scanned one after another so the visitor never runs concurrently
+        AtomicBoolean stopped = new AtomicBoolean();
+        for (MetadataStore shard : shards) {
+            shard.scanFiles(fetchSize, metadata -> {
+                if (!visitor.test(metadata)) {
+                    stopped.set(true);
+                    return false;
+                }
+                return true;
+            });
+            if (stopped.get()) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<FileMetadata> query(MetadataQuery query) throws MetadataStoreException {
+        // Each shard returns its first `limit` rows in order; a k-way merge keeps the global first `limit`
+        List<List<FileMetadata>> pages = onAllShards(shard -> shard.query(query));
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) ->
+                MetadataQuery.ORDER.compare(pages.get(a[0]).get(a[1]), pages.get(b[0]).get(b[1])));
+        for (int i = 0; i < pages.size(); i++) {
+            if (!pages.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        List<FileMetadata> results = new ArrayList<>(query.getLimit());
+        while (!heads.isEmpty() && results.size() < query.getLimit()) {
+            int[] head = heads.poll();
+            List<FileMetadata> page = pages.get(head[0]);
+            results.add(page.get(head[1]));
+            if (head[1] + 1 < page.size()) {
+                heads.add(new int[]{head[0], head[1] + 1});
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void deleteAll() throws MetadataStoreException {
+        onAllShards(shard -> {
+            shard.deleteAll();
+            return null;
+        });
+    }
+
+    /**
+     * Moves every entry to its shard under the new layout and returns a store over that layout.
+     * Shards are matched by {@link MetadataStore#getBackendId()}, so a database present in both
+     * layouts keeps the entries that still hash to it even when the new layout uses new store
+     * instances, and appending a shard only moves about 1/(N+1) of the rows.
+     * Each shard is read in keyset-ordered pages of {@code fetchSize}. Each entry is written to its
+     * new shard before it is deleted from the old one, so an interrupted run can simply be
+     * repeated. Writers should be paused while it runs.
+     */
+    public ShardedMetadataStore reshard(List<? extends MetadataStore> newShards, int fetchSize) throws MetadataStoreException {
+        ShardedMetadataStore target = new ShardedMetadataStore(newShards);
+        int pageSize = fetchSize > 0 ? fetchSize : MetadataQuery.DEFAULT_LIMIT;
+        long moved = 0;
+        for (MetadataStore source : shards) {
+            FileMetadata last = null;
+            while (true) {
+                MetadataQuery page = new MetadataQuery().limit(pageSize);
+                if (last != null) {
+                    page.startAfter(last);
+                }
+                List<FileMetadata> entries = source.query(page);
+                if (entries.isEmpty()) {
+                    break;
+                }
+                for (FileMetadata metadata : entries) {
+                    MetadataStore destination = target.shardFor(metadata.getUuid());
+                    if (sameBackend(destination, source)) {
+                        continue; // Already in place; writing and deleting would remove it
+                    }
+                    if (destination.get(metadata.getUuid()) == null) {
+                        destination.store(metadata);
+                    } else {
+                        destination.update(metadata);
+                    }
+                    source.delete(metadata.getUuid());
+                    moved++;
+                }
+                last = entries.get(entries.size() - 1);
+            }
+            logger.info("Resharding moved {} entries so far", moved);
+        }
+        return target;
+    }
+
+    private static boolean sameBackend(MetadataStore a, MetadataStore b) {
+        return a == b || (a.getBackendId() != null && a.getBackendId().equals(b.getBackendId()));
+    }
+
+    /**
+     * Listens on every shard that can report changes. Shards that cannot are logged, since their
+     * entries will only be refreshed by a cache's TTL.
+     */
+    @Override
+    public Closeable listenForChanges(Consumer<UUID> onChange, Runnable onReset) {
+        List<Closeable> listeners = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            MetadataStore shard = shards.get(i);
+            if (shard instanceof ObservableMetadataStore) {
+                listeners.add(((ObservableMetadataStore) shard).listenForChanges(onChange, onReset));
+            } else {
+                logger.warn("Metadata shard {} ({}) cannot report changes", i, shard.getClass().getSimpleName());
+            }
+        }
+        return () -> {
+            IOException failure = null;
+            for (Closeable listener : listeners) {
+                try {
+                    listener.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        fanOut.shutdown();
+    }
+
+    private <T> List<T> onAllShards(ShardCall<T> call) throws MetadataStoreException {
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (MetadataStore shard : shards) {
+            futures.add(fanOut.submit(() -> call.call(shard)));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MetadataStoreException("Interrupted waiting for metadata shards", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof MetadataStoreException) {
+                    throw (MetadataStoreException) cause;
+                }
+                throw new MetadataStoreException("Error on metadata shard: " + cause.getMessage(), cause);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,278 @@
+package com.danielremsburg.archinex.metadata;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * {@link MemoryMetadataStore} that survives restarts. Mutations go to an operation log; a background
+ * task periodically rotates the log and writes a binary snapshot of the catalog. On startup the
+ * newest snapshot is memory-mapped and only the logs written since it are replayed.
+ *
+ * <p>Files in the snapshot directory are {@code snapshot-<generation>.bin} and
+ * {@code oplog-<generation>.log}. Snapshot {@code g} holds everything logged before
+ * {@code oplog-g} was opened, and possibly some of its records; replaying a store or delete twice
+ * is harmless.
+ */
+public class SnapshottingMetadataStore implements MetadataStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshottingMetadataStore.class);
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String LOG_PREFIX = "oplog-";
+    private static final String LOG_SUFFIX = ".log";
+
+    private final MemoryMetadataStore index = new MemoryMetadataStore();
+    private final Path directory;
+    private final boolean syncOnWrite;
+    private final ScheduledExecutorService scheduler;
+    private final Object snapshotLock = new Object();
+
+    // Guarded by this
+    private MetadataLog log;
+    private long generation;
+
+    public SnapshottingMetadataStore(ArchinexConfig config) {
+        this(Paths.get(config.getMetadataSnapshotPath()),
+                config.getBooleanOrDefault("metadata.snapshot.syncOnWrite", false),
+                config.getLongOrDefault("metadata.snapshot.intervalSeconds", 300L));
+    }
+
+    public SnapshottingMetadataStore(Path directory, boolean syncOnWrite, long intervalSeconds) {
+        this.directory = directory;
+        this.syncOnWrite = syncOnWrite;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException | MetadataStoreException e) {
+            throw new RuntimeException("Failed to initialize metadata store", e);
+        }
+
+        if (intervalSeconds > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metadata-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    private void recover() throws IOException, MetadataStoreException {
+        long started = System.nanoTime();
+        TreeSet<Long> snapshots = generations(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long snapshotGeneration = snapshots.isEmpty() ? 0 : snapshots.last();
+        if (!snapshots.isEmpty()) {
+            MetadataSnapshot.load(snapshotFile(snapshotGeneration), index::store);
+        }
+
+        MetadataLog.Visitor replay = new MetadataLog.Visitor() {
+            @Override
+            public void store(FileMetadata metadata) throws MetadataStoreException {
+                index.store(metadata);
+            }
+
+            @Override
+            public void delete(UUID uuid) throws MetadataStoreException {
+                index.delete(uuid);
+            }
+
+            @Override
+            public void clear() throws MetadataStoreException {
+                index.deleteAll();
+            }
+        };
+        // More than one log survives if we crashed between a rotation and its snapshot
+        long replayed = 0;
+        for (long logGeneration : generations(LOG_PREFIX, LOG_SUFFIX).tailSet(snapshotGeneration, true)) {
+            if (log != null) {
+                log.close();
+            }
+            log = new MetadataLog(logFile(logGeneration), syncOnWrite);
+            replayed += log.replay(replay);
+            generation = logGeneration;
+        }
+        if (log == null) {
+            generation = snapshotGeneration;
+            log = new MetadataLog(logFile(generation), syncOnWrite);
+        }
+        logger.info("Metadata store recovered {} entries from snapshot generation {} and {} log records in {} ms",
+                index.count(), snapshotGeneration, replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Rotates the operation log and writes a snapshot of the catalog, then removes the files it
+     * supersedes.
+     */
+    public void snapshot() throws MetadataStoreException {
+        synchronized (snapshotLock) {
+            long next;
+            try {
+                synchronized (this) {
+                    log.close();
+                    next = generation + 1;
+                    log = new MetadataLog(logFile(next), syncOnWrite);
+                    generation = next;
+                }
+                MetadataSnapshot.write(snapshotFile(next), next, index.values());
+                for (long old : generations(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).headSet(next)) {
+                    Files.deleteIfExists(snapshotFile(old));
+                }
+                for (long old : generations(LOG_PREFIX, LOG_SUFFIX).headSet(next)) {
+                    Files.deleteIfExists(logFile(old));
+                }
+                logger.info("Wrote metadata snapshot generation {} with {} entries", next, index.count());
+            } catch (IOException e) {
+                logger.error("Error writing metadata snapshot: {}", e.getMessage(), e);
+                throw new MetadataStoreException("Error writing metadata snapshot: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (MetadataStoreException e) {
+            // Already logged; the previous snapshot and logs are still intact
+        }
+    }
+
+    @Override
+    public synchronized void store(FileMetadata metadata) throws MetadataStoreException {
+        try {
+            log.appendStore(metadata);
+        } catch (IOException e) {
+            logger.error("Error storing metadata: {}", e.getMessage(), e);
+            throw new MetadataStoreException("Error storing metadata: " + e.getMessage(), e);
+        }
+        index.store(metadata);
+    }
+
+    @Override
+    public synchronized void storeAll(Collection<FileMetadata> metadata) throws MetadataStoreException {
+        try {
+            log.appendStoreAll(metadata);
+        } catch (IOException e) {
+            logger.error("Error storing metadata batch: {}", e.getMessage(), e);
+            throw new MetadataStoreException("Error storing metadata batch: " + e.getMessage(), e);
+        }
+        for (FileMetadata file : metadata) {
+            index.store(file);
+        }
+    }
+
+    @Override
+    public FileMetadata get(UUID uuid) throws MetadataStoreException {
+        return index.get(uuid);
+    }
+
+    @Override
+    public synchronized void delete(UUID uuid) throws MetadataStoreException {
+        try {
+            log.appendDelete(uuid);
+        } catch (IOException e) {
+            logger.error("Error deleting metadata: {}", e.getMessage(), e);
+            throw new MetadataStoreException("Error deleting metadata: " + e.getMessage(), e);
+        }
+        index.delete(uuid);
+    }
+
+    @Override
+    public List<FileMetadata> getAllFiles() throws MetadataStoreException {
+        return index.getAllFiles();
+    }
+
+    @Override
+    public void scanFiles(int fetchSize, Predicate<FileMetadata> visitor) throws MetadataStoreException {
+        index.scanFiles(fetchSize, visitor);
+    }
+
+    @Override
+    public List<FileMetadata> query(MetadataQuery query) throws MetadataStoreException {
+        return index.query(query);
+    }
+
+    @Override
+    public synchronized void deleteAll() throws MetadataStoreException {
+        try {
+            log.appendClear();
+        } catch (IOException e) {
+            logger.error("Error deleting all metadata: {}", e.getMessage(), e);
+            throw new MetadataStoreException("Error deleting all metadata: " + e.getMessage(), e);
+        }
+        index.deleteAll();
+    }
+
+    @Override
+    public void update(FileMetadata metadata) throws MetadataStoreException {
+        store(metadata);
+    }
+
+    public FileMetadata getByPath(String path) throws MetadataStoreException {
+        return index.getByPath(path);
+    }
+
+    public int count() throws MetadataStoreException {
+        return index.count();
+    }
+
+    /**
+     * Stops periodic snapshots and writes a final one so the next start replays nothing.
+     */
+    @Override
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        try {
+            snapshot();
+        } catch (MetadataStoreException e) {
+            throw new IOException("Error writing final metadata snapshot", e);
+        } finally {
+            synchronized (this) {
+                log.close();
+            }
+        }
+    }
+
+    private TreeSet<Long> generations(String prefix, String suffix) throws IOException {
+        TreeSet<Long> generations = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unexpected file in metadata snapshot directory: {}", file);
+                }
+            }
+        }
+        return generations;
+    }
+
+    private Path snapshotFile(long generation) {
+        return directory.resolve(SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX);
+    }
+
+    private Path logFile(long generation) {
+        return directory.resolve(LOG_PREFIX + generation + LOG_SUFFIX);
+    }
+}
@@ -8,4 +8,9 @@ public interface Action {
 
     void execute(UUID uuid, byte[] data, Map<String, String> metadata) throws IOException;
 
+    /** Whether the action computes rather than blocks on I/O; such steps run on the CPU pool. */
+    default boolean isCpuBound() {
+        return false;
+    }
+
 }
\ No newline at end of file
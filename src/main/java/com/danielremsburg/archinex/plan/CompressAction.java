@@ -0,0 +1,26 @@
+package com.danielremsburg.archinex.plan;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Deflates the file for a following {@link CompressedStoreAction} in the same plan.
+ */
+public class CompressAction implements Action {
+
+    private volatile byte[] compressed;
+
+    @Override
+    public void execute(UUID uuid, byte[] data, Map<String, String> metadata) {
+        compressed = CompressedStoreAction.deflate(data);
+    }
+
+    @Override
+    public boolean isCpuBound() {
+        return true;
+    }
+
+    byte[] getCompressed() {
+        return compressed;
+    }
+}
@@ -0,0 +1,89 @@
+package com.danielremsburg.archinex.plan;
+
+import com.danielremsburg.archinex.storage.Storage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores the file as deflated by a preceding {@link CompressAction} step, which runs on the CPU
+ * pool. {@link #inflate} restores it on retrieval.
+ */
+public class CompressedStoreAction implements Action {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompressedStoreAction.class);
+
+    private final Storage storage;
+    private final CompressAction source;
+
+    public CompressedStoreAction(Storage storage, CompressAction source) {
+        this.storage = storage;
+        this.source = source;
+    }
+
+    @Override
+    public void execute(UUID uuid, byte[] data, Map<String, String> metadata) throws IOException {
+        byte[] compressed = source.getCompressed();
+        if (compressed == null) {
+            throw new IOException("No compressed data for UUID: " + uuid);
+        }
+        try {
+            // No user metadata, or a storage that catalogs it would overwrite the file's entry and its layout tag
+            storage.store(uuid, compressed, null);
+            logger.info("CompressedStoreAction executed for UUID: {} ({} -> {} bytes)", uuid, data.length, compressed.length);
+        } catch (IOException e) {
+            logger.error("Error storing compressed data for UUID: {}", uuid, e);
+            throw e;
+        }
+    }
+
+    static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] inflate(UUID uuid, byte[] stored, long size) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            byte[] data = new byte[Math.toIntExact(size)];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == data.length) {
+                    throw new IOException("Compressed object for UUID " + uuid + " is larger than " + size + " bytes");
+                }
+                int count = inflater.inflate(data, length, data.length - length);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed object for UUID: " + uuid);
+                }
+                length += count;
+            }
+            if (length != data.length) {
+                throw new IOException("Compressed object for UUID " + uuid + " holds " + length + " bytes, expected " + size);
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed object for UUID: " + uuid, e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -28,6 +28,11 @@ public class DataTransformationAction implements Action {
         });
     }
 
+    @Override
+    public boolean isCpuBound() {
+        return true;
+    }
+
     public void transformAndProcess(UUID uuid, byte[] data, Consumer<byte[]> dataConsumer) throws IOException {
         try {
             byte[] transformedData = transformer.transform(data);
@@ -1,27 +1,176 @@
 package com.danielremsburg.archinex.plan;
 
+import com.danielremsburg.archinex.config.ConfigSnapshot;
 import com.danielremsburg.archinex.metadata.FileMetadata;
 import com.danielremsburg.archinex.config.ArchinexConfig;
+import com.danielremsburg.archinex.storage.BackendStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Chooses how to store each file by estimating how long every applicable strategy would take:
+ * <ul>
+ *   <li>{@code DIRECT}: latency + size / throughput</li>
+ *   <li>{@code COMPRESSED}: compression time + latency + compressed size / throughput, using the
+ *       ratio and speed measured on a sample of the file</li>
+ *   <li>{@code MULTIPART}: per-round latency + size / (throughput * parallel parts), where the
+ *       parallelism left is reduced by the calls already in flight on the backend</li>
+ * </ul>
+ * Latency and throughput come from {@link BackendStats}, measured on live traffic. Files at or
+ * below {@code plan.fileSizeThreshold} are stored directly without estimating. Another strategy
+ * replaces DIRECT only when it is estimated to be clearly faster.
+ */
 public class DecisionMaker implements Decision {
 
+    private static final Logger logger = LoggerFactory.getLogger(DecisionMaker.class);
+
+    private static final int HISTORY = 100;
+    private static final double MIN_GAIN = 0.9; // Estimate must beat DIRECT by 10%
+
     private final PlanFactory planFactory;
     private final ArchinexConfig config;
+    private final BackendStats backendStats;
+    private final Deque<StoreDecision> recentDecisions = new ArrayDeque<>(HISTORY);
+    // Smoothed over samples; a single sample is too noisy, especially before the JIT warms up
+    private volatile double compressMillisPerByte = 1.0 / (100 * 1024 * 1024 / 1000.0); // 100 MB/s to start
 
     public DecisionMaker(PlanFactory planFactory, ArchinexConfig config) {
+        this(planFactory, config, new BackendStats(20.0, 50.0 * 1024 * 1024));
+    }
+
+    public DecisionMaker(PlanFactory planFactory, ArchinexConfig config, BackendStats backendStats) {
         this.planFactory = planFactory;
         this.config = config;
+        this.backendStats = backendStats;
     }
 
     @Override
     public Plan choosePlan(FileMetadata metadata) {
-        // default 1024 * 1024 = 1G
-        long fileSizeThreshold = config.getLongPropertyOrDefault("plan.fileSizeThreshold", 1024 * 1024);
+        return planFor(decide(metadata, null));
+    }
+
+    /**
+     * Chooses a strategy for storing {@code data}. Without the data, compression is not
+     * considered, since its ratio cannot be measured.
+     */
+    public StoreDecision decide(FileMetadata metadata, byte[] data) {
+        ConfigSnapshot snapshot = config.snapshot();
+        BackendStats.Snapshot backend = backendStats.snapshot();
+        long size = metadata.getSize();
+        Map<StoreStrategy, Double> estimates = new EnumMap<>(StoreStrategy.class);
+
+        if (size <= snapshot.getPlanFileSizeThreshold()) {
+            return record(new StoreDecision(metadata.getUuid(), size, metadata.getContentType(), Double.NaN, backend,
+                    estimates, StoreStrategy.DIRECT, 0, "at or below plan.fileSizeThreshold"));
+        }
+
+        double latency = backend.getLatencyMillis();
+        double bytesPerMilli = Math.max(backend.getThroughputBytesPerSecond(), 1.0) / 1000.0;
+        estimates.put(StoreStrategy.DIRECT, latency + size / bytesPerMilli);
+
+        double ratio = Double.NaN;
+        if (data != null && !isCompressed(metadata.getContentType())) {
+            int sampleLength = (int) Math.min(data.length, snapshot.getCompressionSampleBytes());
+            long started = System.nanoTime();
+            ratio = compressedSize(data, (data.length - sampleLength) / 2, sampleLength) / (double) sampleLength;
+            double sampled = (System.nanoTime() - started) / 1e6 / sampleLength;
+            double compressMillisPerByte = this.compressMillisPerByte + 0.2 * (sampled - this.compressMillisPerByte);
+            this.compressMillisPerByte = compressMillisPerByte;
+            if (ratio <= 1.0 - snapshot.getCompressionMinSavings()) {
+                estimates.put(StoreStrategy.COMPRESSED, size * compressMillisPerByte + latency + size * ratio / bytesPerMilli);
+            }
+        }
+
+        long partSize = snapshot.getMultipartPartBytes();
+        long parts = (size + partSize - 1) / partSize;
+        if (parts >= 2) {
+            long parallel = Math.max(1, Math.min(parts, snapshot.getMultipartMaxParallel() - backend.getInFlight()));
+            long rounds = (parts + parallel - 1) / parallel;
+            estimates.put(StoreStrategy.MULTIPART, rounds * latency + size / (bytesPerMilli * parallel));
+        }
+
+        StoreStrategy chosen = StoreStrategy.DIRECT;
+        double best = estimates.get(StoreStrategy.DIRECT) * MIN_GAIN;
+        for (Map.Entry<StoreStrategy, Double> estimate : estimates.entrySet()) {
+            if (estimate.getKey() != StoreStrategy.DIRECT && estimate.getValue() < best) {
+                chosen = estimate.getKey();
+                best = estimate.getValue();
+            }
+        }
+        return record(new StoreDecision(metadata.getUuid(), size, metadata.getContentType(), ratio, backend,
+                estimates, chosen, chosen == StoreStrategy.MULTIPART ? partSize : 0, "lowest estimated time"));
+    }
+
+    public Plan planFor(StoreDecision decision) {
+        switch (decision.getStrategy()) {
+            case COMPRESSED:
+                return planFactory.createCompressedStorePlan();
+            case MULTIPART:
+                return planFactory.createMultipartStorePlan(decision.getSize(), decision.getPartSize());
+            default:
+                return planFactory.createStorePlan();
+        }
+    }
+
+    /** The most recent decisions, oldest first. */
+    public List<StoreDecision> getRecentDecisions() {
+        synchronized (recentDecisions) {
+            return new ArrayList<>(recentDecisions);
+        }
+    }
+
+    public BackendStats getBackendStats() {
+        return backendStats;
+    }
+
+    private StoreDecision record(StoreDecision decision) {
+        logger.debug("{}", decision);
+        synchronized (recentDecisions) {
+            if (recentDecisions.size() == HISTORY) {
+                recentDecisions.removeFirst();
+            }
+            recentDecisions.addLast(decision);
+        }
+        return decision;
+    }
+
+    // Media and archive formats are compressed already; deflating them again only costs CPU
+    private static boolean isCompressed(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        if (type.startsWith("image/")) {
+            return !type.startsWith("image/svg") && !type.equals("image/bmp") && !type.equals("image/tiff");
+        }
+        return type.startsWith("video/") || (type.startsWith("audio/") && !type.equals("audio/wav"))
+                || type.equals("application/zip") || type.equals("application/gzip") || type.equals("application/x-gzip")
+                || type.equals("application/x-7z-compressed") || type.equals("application/x-rar-compressed")
+                || type.equals("application/x-xz") || type.equals("application/x-bzip2") || type.equals("application/zstd");
+    }
 
-        if (metadata.getSize() > fileSizeThreshold) {
-            return planFactory.createComplexPlan();
-        } else {
-            return planFactory.createStorePlan();
+    private static int compressedSize(byte[] data, int offset, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            int size = 0;
+            while (!deflater.finished()) {
+                size += deflater.deflate(buffer);
+            }
+            return size;
+        } finally {
+            deflater.end();
         }
     }
-}
\ No newline at end of file
+}
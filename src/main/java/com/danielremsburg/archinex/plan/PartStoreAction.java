@@ -0,0 +1,47 @@
+package com.danielremsburg.archinex.plan;
+
+import com.danielremsburg.archinex.storage.Storage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stores one part of a multipart file under {@link StoreStrategy#partId}. A multipart plan has
+ * one of these per part and no dependencies between them, so the parts upload in parallel.
+ */
+public class PartStoreAction implements Action {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartStoreAction.class);
+
+    private final Storage storage;
+    private final int part;
+    private final long partSize;
+
+    public PartStoreAction(Storage storage, int part, long partSize) {
+        this.storage = storage;
+        this.part = part;
+        this.partSize = partSize;
+    }
+
+    @Override
+    public void execute(UUID uuid, byte[] data, Map<String, String> metadata) throws IOException {
+        int from = Math.toIntExact(part * partSize);
+        int to = (int) Math.min(data.length, from + partSize);
+        try {
+            // No user metadata: a part is not a file, and must not get a catalog entry of its own
+            storage.store(StoreStrategy.partId(uuid, part), Arrays.copyOfRange(data, from, to), null);
+            logger.debug("Stored part {} ({} bytes) for UUID: {}", part, to - from, uuid);
+        } catch (IOException e) {
+            logger.error("Error storing part {} for UUID: {}", part, uuid, e);
+            throw e;
+        }
+    }
+
+    public int getPart() {
+        return part;
+    }
+}
@@ -2,25 +2,86 @@ package com.danielremsburg.archinex.plan;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+/**
+ * A dependency graph of actions. A step runs once every step it depends on has finished, and
+ * steps with no path between them may run concurrently (see {@link PlanExecutor}). Dependencies
+ * must already be in the plan when a step is added, so steps are always held in a valid
+ * topological order and the graph cannot contain cycles.
+ */
 public class Plan {
 
-    private final List<Action> actions = new ArrayList<>();
+    public static final class Step {
+        private final Action action;
+        private final List<Step> dependencies;
+        private final int index;
 
-    public void addAction(Action action) {
-        actions.add(action);
+        private Step(Action action, List<Step> dependencies, int index) {
+            this.action = action;
+            this.dependencies = dependencies;
+            this.index = index;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        public List<Step> getDependencies() {
+            return dependencies;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return "Step{" + index + ": " + action.getClass().getSimpleName() + "}";
+        }
     }
 
+    private final List<Step> steps = new ArrayList<>();
+
+    /** Adds an action that runs after the previously added one, as in a linear plan. */
+    public Step addAction(Action action) {
+        return steps.isEmpty() ? add(action) : add(action, steps.get(steps.size() - 1));
+    }
+
+    /** Adds an action that runs once all of {@code dependsOn} have finished; none means it can start at once. */
+    public Step add(Action action, Step... dependsOn) {
+        List<Step> dependencies = new ArrayList<>(dependsOn.length);
+        for (Step dependency : dependsOn) {
+            if (dependency.index >= steps.size() || steps.get(dependency.index) != dependency) {
+                throw new IllegalArgumentException("Dependency is not a step of this plan: " + dependency);
+            }
+            dependencies.add(dependency);
+        }
+        Step step = new Step(action, Collections.unmodifiableList(dependencies), steps.size());
+        steps.add(step);
+        return step;
+    }
+
+    /** Runs every step on the calling thread, in the order they were added. */
     public void execute(UUID uuid, byte[] data, Map<String, String> metadata) throws IOException {
-        for (Action action : actions) {
-            action.execute(uuid, data, metadata);
+        for (Step step : steps) {
+            step.action.execute(uuid, data, metadata);
         }
     }
 
+    /** Steps in the order they were added, which is a topological order. */
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
     public List<Action> getActions() {
-        return new ArrayList<>(actions); // Return a copy
+        List<Action> actions = new ArrayList<>(steps.size());
+        for (Step step : steps) {
+            actions.add(step.action);
+        }
+        return actions;
     }
-}
\ No newline at end of file
+}
@@ -1,39 +1,129 @@
 package com.danielremsburg.archinex.plan;
 
+import com.danielremsburg.archinex.config.ArchinexConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Runs a {@link Plan} on the executor. Each step is scheduled as soon as its dependencies have
+ * completed, so independent steps run in parallel, and no thread blocks waiting for another step.
+ * A failed step is retried according to the {@link RetryPolicy} for its action type. Only that
+ * step is retried, and the backoff is a delayed task rather than a sleeping thread. Once a step
+ * has failed for good, the steps depending on it are skipped and the returned future fails with
+ * its exception. Independent steps still run to completion.
+ * <p>
+ * Steps whose action is {@link Action#isCpuBound() CPU-bound} run on the CPU executor, all others
+ * on the I/O executor.
+ */
 public class PlanExecutor {
 
     private static final Logger logger = LoggerFactory.getLogger(PlanExecutor.class);
 
+    private static final CompletableFuture<?>[] NO_FUTURES = new CompletableFuture<?>[0];
+
     private final ExecutorService executorService;
+    private final ExecutorService cpuExecutorService;
+    private final ArchinexConfig config;
+    private final RetryBudget retryBudget;
+    private final ConcurrentMap<Class<?>, RetryPolicy> retryPolicies = new ConcurrentHashMap<>();
+
+    public PlanExecutor(ExecutorService executorService, ArchinexConfig config) {
+        this(executorService, executorService, config);
+    }
 
-    public PlanExecutor(ExecutorService executorService) {
+    public PlanExecutor(ExecutorService executorService, ExecutorService cpuExecutorService, ArchinexConfig config) {
         this.executorService = executorService;
+        this.cpuExecutorService = cpuExecutorService;
+        this.config = config;
+        this.retryBudget = new RetryBudget(config.getDoubleOrDefault("plan.retry.budgetRatio", 0.1),
+                config.getIntOrDefault("plan.retry.budgetBurst", 10));
     }
 
-    public void executePlan(Plan plan, UUID uuid, byte[] data, Map<String, String> metadata) {
-        executorService.submit(() -> {
-            try {
-                plan.execute(uuid, data, metadata);
-                logger.info("Plan executed successfully for UUID: {}", uuid);
-            } catch (IOException e) {
-                logger.error("Error executing plan for UUID: {}", uuid, e);
-                // Log the error and potentially implement a retry mechanism
-                logger.error("Retrying plan execution for UUID: {}", uuid);
-                try {
-                    plan.execute(uuid, data, metadata); // Retry once
-                    logger.info("Plan execution retried successfully for UUID: {}", uuid);
-                } catch (IOException retryException) {
-                    logger.error("Plan execution failed after retry for UUID: {}", uuid, retryException);
+    /** The retry policy for an action type; shares this executor's retry budget. */
+    public RetryPolicy getRetryPolicy(Class<? extends Action> actionClass) {
+        return retryPolicies.computeIfAbsent(actionClass, type -> RetryPolicy.forAction(config, type, retryBudget));
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    public CompletableFuture<Void> executePlan(Plan plan, UUID uuid, byte[] data, Map<String, String> metadata) {
+        List<Plan.Step> steps = plan.getSteps();
+        CompletableFuture<?>[] completions = new CompletableFuture<?>[steps.size()];
+        for (Plan.Step step : steps) {
+            List<Plan.Step> dependencies = step.getDependencies();
+            CompletableFuture<?> ready;
+            if (dependencies.isEmpty()) {
+                ready = CompletableFuture.completedFuture(null);
+            } else if (dependencies.size() == 1) {
+                ready = completions[dependencies.get(0).getIndex()];
+            } else {
+                CompletableFuture<?>[] inputs = new CompletableFuture<?>[dependencies.size()];
+                for (int i = 0; i < inputs.length; i++) {
+                    inputs[i] = completions[dependencies.get(i).getIndex()];
                 }
+                ready = CompletableFuture.allOf(inputs);
+            }
+            completions[step.getIndex()] = ready.thenComposeAsync(ignored -> runStep(step, uuid, data, metadata), executorFor(step));
+        }
+
+        CompletableFuture<Void> done = CompletableFuture.allOf(steps.isEmpty() ? NO_FUTURES : completions);
+        done.whenComplete((ignored, failure) -> {
+            if (failure == null) {
+                logger.info("Plan executed successfully for UUID: {}", uuid);
+            } else {
+                logger.error("Plan execution failed for UUID: {}", uuid, failure);
             }
         });
+        return done;
+    }
+
+    private CompletableFuture<Void> runStep(Plan.Step step, UUID uuid, byte[] data, Map<String, String> metadata) {
+        RetryPolicy policy = getRetryPolicy(step.getAction().getClass());
+        policy.recordRequest();
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        attempt(step, policy, 1, uuid, data, metadata, result);
+        return result;
+    }
+
+    private void attempt(Plan.Step step, RetryPolicy policy, int attempt, UUID uuid, byte[] data,
+                         Map<String, String> metadata, CompletableFuture<Void> result) {
+        try {
+            step.getAction().execute(uuid, data, metadata);
+            result.complete(null);
+            return;
+        } catch (Exception e) {
+            long delay = policy.retryDelayMillis(attempt, e);
+            if (delay < 0) {
+                result.completeExceptionally(e);
+                return;
+            }
+            logger.warn("{} failed for UUID: {} (attempt {} of {}), retrying in {} ms: {}",
+                    step, uuid, attempt, policy.getMaxAttempts(), delay, e.getMessage());
+            // The timer only hands the retry back to the pool, which may have shut down meanwhile
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+                try {
+                    executorFor(step).execute(() -> attempt(step, policy, attempt + 1, uuid, data, metadata, result));
+                } catch (RejectedExecutionException rejected) {
+                    e.addSuppressed(rejected);
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+    }
+
+    private ExecutorService executorFor(Plan.Step step) {
+        return step.getAction().isCpuBound() ? cpuExecutorService : executorService;
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.danielremsburg.archinex.plan;
 
+import com.danielremsburg.archinex.metadata.FileMetadata;
 import com.danielremsburg.archinex.storage.Storage;
 
 public class PlanFactory {
@@ -12,32 +13,69 @@ public class PlanFactory {
 
     public Plan createStorePlan() {
         Plan plan = new Plan();
-        plan.addAction(new StoreAction(storage));
+        plan.add(new StoreAction(storage));
         return plan;
     }
 
     public Plan createRetrievePlan() {
         Plan plan = new Plan();
-        plan.addAction(new RetrieveAction(storage));
+        plan.add(new RetrieveAction(storage));
+        return plan;
+    }
+
+    public Plan createRetrievePlan(FileMetadata metadata) {
+        Plan plan = new Plan();
+        plan.add(new RetrieveAction(storage, metadata));
+        return plan;
+    }
+
+    public Plan createCompressedStorePlan() {
+        Plan plan = new Plan();
+        CompressAction compress = new CompressAction();
+        Plan.Step compressed = plan.add(compress); // Runs on the CPU pool, the store on the I/O pool
+        plan.add(new CompressedStoreAction(storage, compress), compressed);
+        return plan;
+    }
+
+    /** One independent step per part, so the executor uploads the parts in parallel. */
+    public Plan createMultipartStorePlan(long size, long partSize) {
+        Plan plan = new Plan();
+        int parts = (int) ((size + partSize - 1) / partSize);
+        for (int part = 0; part < parts; part++) {
+            plan.add(new PartStoreAction(storage, part, partSize));
+        }
         return plan;
     }
 
     public Plan createDeletePlan() {
         Plan plan = new Plan();
-        plan.addAction(new DeleteAction(storage));
+        plan.add(new DeleteAction(storage));
         return plan;
     }
 
     public Plan createStoreAndRetrievePlan() {
         Plan plan = new Plan();
-        plan.addAction(new StoreAction(storage));
-        plan.addAction(new RetrieveAction(storage));
+        Plan.Step store = plan.add(new StoreAction(storage));
+        plan.add(new RetrieveAction(storage), store); // Read back only once the write has finished
+        return plan;
+    }
+
+    /**
+     * Stores the file to every given backend at once; the writes do not depend on each other, so
+     * the executor runs them in parallel.
+     */
+    public Plan createReplicatedStorePlan(Storage... replicas) {
+        Plan plan = new Plan();
+        plan.add(new StoreAction(storage));
+        for (Storage replica : replicas) {
+            plan.add(new StoreAction(replica));
+        }
         return plan;
     }
 
     public Plan createComplexPlan() {
         Plan plan = new Plan();
-        plan.addAction(new StoreAction(storage));
+        plan.add(new StoreAction(storage));
         return plan;
     }
 }
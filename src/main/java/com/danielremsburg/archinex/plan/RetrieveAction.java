@@ -1,9 +1,11 @@
 package com.danielremsburg.archinex.plan;
 
+import com.danielremsburg.archinex.metadata.FileMetadata;
 import com.danielremsburg.archinex.storage.Storage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Map;
 import java.util.UUID;
@@ -14,15 +16,30 @@ public class RetrieveAction implements Action {
     private static final Logger logger = LoggerFactory.getLogger(RetrieveAction.class);
 
     private final Storage storage;
+    private final StoreStrategy strategy;
+    private final int parts;
+    private final long size;
 
     public RetrieveAction(Storage storage) {
+        this(storage, StoreStrategy.DIRECT, 0, -1);
+    }
+
+    /** Reads the file back in the layout it was stored with, as recorded in its metadata. */
+    public RetrieveAction(Storage storage, FileMetadata metadata) {
+        this(storage, StoreStrategy.of(metadata), StoreStrategy.partCount(metadata), metadata.getSize());
+    }
+
+    private RetrieveAction(Storage storage, StoreStrategy strategy, int parts, long size) {
         this.storage = storage;
+        this.strategy = strategy;
+        this.parts = parts;
+        this.size = size;
     }
 
     @Override
     public void execute(UUID uuid, byte[] data, Map<String, String> metadata) throws IOException {
         try {
-            byte[] retrievedData = storage.retrieve(uuid);
+            byte[] retrievedData = read(uuid);
             logger.info("RetrieveAction executed for UUID: {}", uuid);
             // Here, we're directly using the retrievedData to do something
             processRetrievedData(retrievedData);
@@ -41,7 +58,7 @@ public class RetrieveAction implements Action {
      */
     public void retrieveAndProcess(UUID uuid, Consumer<byte[]> dataConsumer) throws IOException {
         try {
-            byte[] retrievedData = storage.retrieve(uuid);
+            byte[] retrievedData = read(uuid);
             logger.info("File retrieved for UUID: {}", uuid);
             dataConsumer.accept(retrievedData); // Process the data through the consumer
         } catch (IOException e) {
@@ -50,6 +67,25 @@ public class RetrieveAction implements Action {
         }
     }
 
+    private byte[] read(UUID uuid) throws IOException {
+        switch (strategy) {
+            case COMPRESSED:
+                return CompressedStoreAction.inflate(uuid, storage.retrieve(uuid), size);
+            case MULTIPART:
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.toIntExact(size));
+                for (int part = 0; part < parts; part++) {
+                    byte[] data = storage.retrieve(StoreStrategy.partId(uuid, part));
+                    out.write(data, 0, data.length);
+                }
+                if (out.size() != size) {
+                    throw new IOException("Parts of UUID " + uuid + " hold " + out.size() + " bytes, expected " + size);
+                }
+                return out.toByteArray();
+            default:
+                return storage.retrieve(uuid);
+        }
+    }
+
     /**
      * Process the retrieved data as part of the execute method. This can be customized further.
      * Default just log the retrieved data length.
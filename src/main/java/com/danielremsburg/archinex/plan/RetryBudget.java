@@ -0,0 +1,41 @@
+package com.danielremsburg.archinex.plan;
+
+/**
+ * Caps retries at a fraction of requests, so a failing backend sees at most
+ * {@code 1 + ratio} times its normal load instead of {@code maxAttempts} times. Every request
+ * earns {@code ratio} of a token, up to {@code maxTokens}, and every retry spends a whole token.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+    private long exhausted;
+
+    public RetryBudget(double ratio, double maxTokens) {
+        if (ratio < 0 || maxTokens < 1) {
+            throw new IllegalArgumentException("Retry budget ratio must be >= 0 and burst >= 1");
+        }
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+    }
+
+    public synchronized void recordRequest() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        exhausted++;
+        return false;
+    }
+
+    /** Retries refused because the budget was spent. */
+    public synchronized long getExhaustedCount() {
+        return exhausted;
+    }
+}
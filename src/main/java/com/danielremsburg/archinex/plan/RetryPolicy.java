@@ -0,0 +1,139 @@
+package com.danielremsburg.archinex.plan;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import com.danielremsburg.archinex.storage.CircuitOpenException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.NoSuchFileException;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter: retry {@code n} waits a random time up to
+ * {@code min(maxDelay, baseDelay * 2^(n-1))}. Only I/O failures are retried, except missing files
+ * and cancellations. Every retry needs a token from the shared {@link RetryBudget}. A call
+ * refused by an open circuit breaker has not touched the backend: a blocking {@link #call} reports
+ * it at once, since its caller is waiting, while an asynchronous plan retry waits at least until
+ * the breaker lets a trial through.
+ */
+public class RetryPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryPolicy.class);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final RetryBudget budget;
+
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, RetryBudget budget) {
+        if (maxAttempts < 1 || baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Invalid retry policy: " + maxAttempts + " attempts, "
+                    + baseDelayMillis + "-" + maxDelayMillis + " ms");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.budget = budget;
+    }
+
+    /**
+     * Reads {@code plan.retry.<actionType>.*}, falling back to {@code plan.retry.*}. The action type
+     * is the class name without the {@code Action} suffix, e.g. {@code store} or {@code retrieve}.
+     */
+    public static RetryPolicy forAction(ArchinexConfig config, Class<?> actionClass, RetryBudget budget) {
+        String prefix = "plan.retry." + actionType(actionClass) + ".";
+        return new RetryPolicy(
+                config.getIntOrDefault(prefix + "maxAttempts", config.getIntOrDefault("plan.retry.maxAttempts", 3)),
+                config.getLongOrDefault(prefix + "baseDelayMillis", config.getLongOrDefault("plan.retry.baseDelayMillis", 100L)),
+                config.getLongOrDefault(prefix + "maxDelayMillis", config.getLongOrDefault("plan.retry.maxDelayMillis", 10_000L)),
+                budget);
+    }
+
+    static String actionType(Class<?> actionClass) {
+        String name = actionClass.getSimpleName();
+        if (name.endsWith("Action")) {
+            name = name.substring(0, name.length() - "Action".length());
+        }
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /** Call once per request, before its first attempt. */
+    public void recordRequest() {
+        budget.recordRequest();
+    }
+
+    /**
+     * Returns how long to wait before attempt {@code attempt + 1} after {@code failure}, or -1 if
+     * the failure should be reported instead.
+     */
+    public long retryDelayMillis(int attempt, Throwable failure) {
+        if (attempt >= maxAttempts || !isRetryable(failure)) {
+            return -1;
+        }
+        if (!budget.tryAcquire()) {
+            logger.debug("Retry budget exhausted; not retrying: {}", failure.getMessage());
+            return -1;
+        }
+        long backoff = backoffMillis(attempt);
+        if (failure instanceof CircuitOpenException) {
+            return Math.max(backoff, ((CircuitOpenException) failure).getRetryAfterMillis());
+        }
+        return backoff;
+    }
+
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static boolean isRetryable(Throwable failure) {
+        if (!(failure instanceof IOException) || Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        return !(failure instanceof FileNotFoundException || failure instanceof NoSuchFileException
+                || failure instanceof InterruptedIOException || failure instanceof ClosedByInterruptException);
+    }
+
+    /**
+     * Runs {@code operation} with retries on the calling thread, sleeping between attempts. An open
+     * circuit fails the call at once rather than holding the caller until the breaker half-opens.
+     */
+    public <T> T call(Callable<T> operation) throws IOException {
+        recordRequest();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return operation.call();
+            } catch (Exception e) {
+                long delay = e instanceof CircuitOpenException ? -1 : retryDelayMillis(attempt, e);
+                if (delay < 0) {
+                    if (e instanceof IOException) {
+                        throw (IOException) e;
+                    }
+                    if (e instanceof RuntimeException) {
+                        throw (RuntimeException) e;
+                    }
+                    throw new IOException(e.getMessage(), e);
+                }
+                logger.warn("Attempt {} failed, retrying in {} ms: {}", attempt, delay, e.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    InterruptedIOException interrupted = new InterruptedIOException("Interrupted while waiting to retry");
+                    interrupted.addSuppressed(e);
+                    throw interrupted;
+                }
+            }
+        }
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+}
@@ -0,0 +1,102 @@
+package com.danielremsburg.archinex.plan;
+
+import com.danielremsburg.archinex.storage.BackendStats;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One store strategy choice and everything it was based on, kept for inspection.
+ */
+public final class StoreDecision {
+
+    private final Instant time = Instant.now();
+    private final UUID uuid;
+    private final long size;
+    private final String contentType;
+    private final double compressionRatio;
+    private final BackendStats.Snapshot backend;
+    private final Map<StoreStrategy, Double> estimatedMillis;
+    private final StoreStrategy strategy;
+    private final long partSize;
+    private final String reason;
+
+    StoreDecision(UUID uuid, long size, String contentType, double compressionRatio, BackendStats.Snapshot backend,
+                  Map<StoreStrategy, Double> estimatedMillis, StoreStrategy strategy, long partSize, String reason) {
+        this.uuid = uuid;
+        this.size = size;
+        this.contentType = contentType;
+        this.compressionRatio = compressionRatio;
+        this.backend = backend;
+        this.estimatedMillis = estimatedMillis.isEmpty() ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new EnumMap<>(estimatedMillis));
+        this.strategy = strategy;
+        this.partSize = partSize;
+        this.reason = reason;
+    }
+
+    public Instant getTime() {
+        return time;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /** Compressed size over original size of the sample, or NaN if no sample was compressed. */
+    public double getCompressionRatio() {
+        return compressionRatio;
+    }
+
+    public BackendStats.Snapshot getBackend() {
+        return backend;
+    }
+
+    /** Estimated store time of every strategy that was considered. */
+    public Map<StoreStrategy, Double> getEstimatedMillis() {
+        return estimatedMillis;
+    }
+
+    public StoreStrategy getStrategy() {
+        return strategy;
+    }
+
+    /** Bytes per part of a multipart store. */
+    public long getPartSize() {
+        return partSize;
+    }
+
+    public int getPartCount() {
+        return strategy == StoreStrategy.MULTIPART ? (int) ((size + partSize - 1) / partSize) : 0;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return "StoreDecision{" +
+                "uuid=" + uuid +
+                ", size=" + size +
+                ", contentType='" + contentType + '\'' +
+                ", compressionRatio=" + compressionRatio +
+                ", backend=" + backend +
+                ", estimatedMillis=" + estimatedMillis +
+                ", strategy=" + strategy +
+                ", partSize=" + partSize +
+                ", reason='" + reason + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+package com.danielremsburg.archinex.plan;
+
+import com.danielremsburg.archinex.metadata.FileMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * How a file's bytes are laid out in storage. Anything other than {@link #DIRECT} is recorded in
+ * the file's metadata tags, so reads and deletes can find the stored objects again.
+ */
+public enum StoreStrategy {
+
+    /** One object holding the file as is. */
+    DIRECT,
+    /** One object holding the file deflated. */
+    COMPRESSED,
+    /** The file split into parts, stored as separate objects in parallel. */
+    MULTIPART;
+
+    public static final String STRATEGY_TAG = FileMetadata.RESERVED_TAG_PREFIX + "strategy";
+    public static final String PARTS_TAG = FileMetadata.RESERVED_TAG_PREFIX + "parts";
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreStrategy.class);
+
+    /**
+     * The layout recorded in the file's tags. A tag this version does not recognize, or a
+     * multipart file without a part count, is read as {@link #DIRECT}: such tags can only have
+     * come from a caller, and the file was then stored as one object under its own UUID.
+     */
+    public static StoreStrategy of(FileMetadata metadata) {
+        String tag = metadata.getTag(STRATEGY_TAG);
+        if (tag == null) {
+            return DIRECT;
+        }
+        StoreStrategy strategy;
+        try {
+            strategy = valueOf(tag.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown store strategy '{}' for {}; reading it as direct", tag, metadata.getUuid());
+            return DIRECT;
+        }
+        if (strategy == MULTIPART && partCount(metadata) == 0) {
+            logger.warn("Multipart file {} has no valid part count; reading it as direct", metadata.getUuid());
+            return DIRECT;
+        }
+        return strategy;
+    }
+
+    /** The number of parts recorded for a multipart file, or 0 if none or not a valid count. */
+    public static int partCount(FileMetadata metadata) {
+        String parts = metadata.getTag(PARTS_TAG);
+        if (parts == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(parts));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** Part objects are keyed by a name-based UUID derived from the file's UUID. */
+    public static UUID partId(UUID uuid, int part) {
+        return UUID.nameUUIDFromBytes((uuid + "/" + part).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Every storage object that holds some of the file's bytes. */
+    public static List<UUID> storageKeys(FileMetadata metadata) {
+        if (of(metadata) != MULTIPART) {
+            return Collections.singletonList(metadata.getUuid());
+        }
+        int parts = partCount(metadata);
+        List<UUID> keys = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            keys.add(partId(metadata.getUuid(), i));
+        }
+        return keys;
+    }
+}
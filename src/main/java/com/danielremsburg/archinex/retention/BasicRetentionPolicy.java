@@ -4,32 +4,39 @@ import com.danielremsburg.archinex.cache.Cache;
 import com.danielremsburg.archinex.metadata.FileMetadata;
 import com.danielremsburg.archinex.metadata.MetadataStore;
 import com.danielremsburg.archinex.metadata.MetadataStoreException;
-import com.danielremsburg.archinex.storage.StorageFactory;
+import com.danielremsburg.archinex.plan.StoreStrategy;
+import com.danielremsburg.archinex.storage.Storage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.UUID;
 
 public class BasicRetentionPolicy implements RetentionPolicy {
 
     private static final Logger logger = LoggerFactory.getLogger(BasicRetentionPolicy.class);
+    private static final int CALENDAR_SLACK_DAYS = 3;
 
     private final String name;
     private final String description;
     private final List<RetentionRule> rules;
     private final MetadataStore metadataStore;
     private final Cache cache;
+    private final Storage storage;
 
-    // Constructor adjusted: removed storageSystem and used StorageFactory directly in methods
-    public BasicRetentionPolicy(String name, String description, List<RetentionRule> rules, MetadataStore metadataStore, Cache cache) {
+    // Takes the planner's storage: a fresh one per file would reopen the metadata store, whose log is locked
+    public BasicRetentionPolicy(String name, String description, List<RetentionRule> rules, MetadataStore metadataStore,
+                                Cache cache, Storage storage) {
         this.name = name;
         this.description = description;
         this.rules = rules;
         this.metadataStore = metadataStore;
         this.cache = cache;
+        this.storage = storage;
     }
 
     @Override
@@ -49,16 +56,17 @@ public class BasicRetentionPolicy implements RetentionPolicy {
                 Instant cutOffDate = calculateCutOffDate(metadata.getCreationDate(), rule.getUnit(), rule.getValue());
                 if (Instant.now().isAfter(cutOffDate)) {
                     RetentionAction action = rule.getAction();
-                    switch (action) {
-                        case ARCHIVE:
-                            // Use StorageFactory to get the appropriate storage system and archive the file
-                            StorageFactory.createStorage().archive(metadata.getUuid());
-                            break;
-                        case DELETE:
-                        default:
-                            // Use StorageFactory to get the appropriate storage system and delete the file
-                            StorageFactory.createStorage().delete(metadata.getUuid());
-                            break;
+                    // A multipart file is stored as several objects; all of them go
+                    for (UUID key : StoreStrategy.storageKeys(metadata)) {
+                        switch (action) {
+                            case ARCHIVE:
+                                storage.archive(key);
+                                break;
+                            case DELETE:
+                            default:
+                                storage.delete(key);
+                                break;
+                        }
                     }
                     metadataStore.delete(metadata.getUuid()); // Remove metadata from store
                     cache.remove(metadata.getUuid()); // Remove file from cache
@@ -74,11 +82,11 @@ public class BasicRetentionPolicy implements RetentionPolicy {
             case "days":
                 return creationDate.plus(value, ChronoUnit.DAYS);
             case "weeks":
-                return creationDate.plus(value, ChronoUnit.WEEKS);
+                return creationDate.atZone(ZoneOffset.UTC).plusWeeks(value).toInstant();
             case "months":
-                return creationDate.plus(value, ChronoUnit.MONTHS);
+                return creationDate.atZone(ZoneOffset.UTC).plusMonths(value).toInstant();
             case "years":
-                return creationDate.plus(value, ChronoUnit.YEARS);
+                return creationDate.atZone(ZoneOffset.UTC).plusYears(value).toInstant();
             case "seconds": // For testing
                 return creationDate.plus(value, ChronoUnit.SECONDS);
             default:
@@ -88,14 +96,53 @@ public class BasicRetentionPolicy implements RetentionPolicy {
 
     @Override
     public boolean shouldDelete(FileMetadata fileMetadata) {
+        return shouldDelete(fileMetadata, Instant.now());
+    }
+
+    boolean shouldDelete(FileMetadata fileMetadata, Instant now) {
         for (RetentionRule rule : rules) {
             if (rule.getType().equals("age")) {
                 Instant cutOffDate = calculateCutOffDate(fileMetadata.getCreationDate(), rule.getUnit(), rule.getValue());
-                if (Instant.now().isAfter(cutOffDate)) {
+                if (now.isAfter(cutOffDate)) {
                     return true;
                 }
             }
         }
         return false;
     }
+
+    @Override
+    public Instant getDeletionCutoff(Instant now) {
+        // A file is due once any age rule has passed, so the loosest rule bounds the sweep
+        Instant cutoff = null;
+        for (RetentionRule rule : rules) {
+            if (rule.getType().equals("age")) {
+                Instant ruleCutoff = subtract(now, rule.getUnit(), rule.getValue());
+                if (cutoff == null || ruleCutoff.isAfter(cutoff)) {
+                    cutoff = ruleCutoff;
+                }
+            }
+        }
+        return cutoff;
+    }
+
+    private Instant subtract(Instant instant, String unit, int value) {
+        // Months and years are calendar based and need a zone to be subtracted. Adding a month clamps
+        // to the end of a shorter month, so subtracting it back can land up to three days too early;
+        // the slack widens the cutoff and shouldDelete still decides each file exactly
+        switch (unit) {
+            case "days":
+                return instant.minus(value, ChronoUnit.DAYS);
+            case "weeks":
+                return instant.atZone(ZoneOffset.UTC).minusWeeks(value).toInstant();
+            case "months":
+                return instant.atZone(ZoneOffset.UTC).minusMonths(value).plusDays(CALENDAR_SLACK_DAYS).toInstant();
+            case "years":
+                return instant.atZone(ZoneOffset.UTC).minusYears(value).plusDays(CALENDAR_SLACK_DAYS).toInstant();
+            case "seconds": // For testing
+                return instant.minus(value, ChronoUnit.SECONDS);
+            default:
+                throw new IllegalArgumentException("Invalid time unit: " + unit);
+        }
+    }
 }
@@ -3,6 +3,7 @@ package com.danielremsburg.archinex.retention;
 import com.danielremsburg.archinex.metadata.FileMetadata;
 import com.danielremsburg.archinex.metadata.MetadataStoreException;
 import java.io.IOException;
+import java.time.Instant;
 
 public interface RetentionPolicy {
 
@@ -13,4 +14,11 @@ public interface RetentionPolicy {
     void apply(FileMetadata metadata) throws MetadataStoreException, IOException;
 
     boolean shouldDelete(FileMetadata fileMetadata);
+
+    /**
+     * Creation date before which every file that {@link #shouldDelete} at {@code now} lies, or null if
+     * no rule can match. It may be later than needed but never earlier, since it narrows retention
+     * sweeps to a creation date range query and files past it are never checked.
+     */
+    Instant getDeletionCutoff(Instant now);
 }
@@ -0,0 +1,97 @@
+package com.danielremsburg.archinex.storage;
+
+/**
+ * Live performance of a storage backend, as exponentially weighted moving averages. A call is
+ * modelled as a fixed latency plus size divided by throughput. Small calls update the latency,
+ * and large calls update the throughput once that latency is taken out. The number of calls in
+ * flight shows how busy the backend is right now.
+ */
+public class BackendStats {
+
+    private static final double ALPHA = 0.2;
+    private static final long SMALL_CALL_BYTES = 64 * 1024;
+    private static final long LARGE_CALL_BYTES = 1024 * 1024;
+
+    private double latencyMillis;
+    private double throughputBytesPerSecond;
+    private double errorRate;
+    private int inFlight;
+    private long calls;
+
+    public BackendStats(double initialLatencyMillis, double initialThroughputBytesPerSecond) {
+        this.latencyMillis = initialLatencyMillis;
+        this.throughputBytesPerSecond = initialThroughputBytesPerSecond;
+    }
+
+    public synchronized void callStarted() {
+        inFlight++;
+    }
+
+    public synchronized void callFinished(long bytes, long elapsedNanos, boolean succeeded) {
+        inFlight--;
+        calls++;
+        errorRate += ALPHA * ((succeeded ? 0.0 : 1.0) - errorRate);
+        if (!succeeded) {
+            return;
+        }
+        double elapsedMillis = elapsedNanos / 1e6;
+        if (bytes <= SMALL_CALL_BYTES) {
+            latencyMillis += ALPHA * (elapsedMillis - latencyMillis);
+        } else if (bytes >= LARGE_CALL_BYTES) {
+            double transferMillis = Math.max(elapsedMillis - latencyMillis, elapsedMillis * 0.1);
+            double observed = bytes / (transferMillis / 1000.0);
+            throughputBytesPerSecond += ALPHA * (observed - throughputBytesPerSecond);
+        }
+    }
+
+    /** Calls rejected before reaching the backend only count as in flight, never as timing. */
+    public synchronized void callRejected() {
+        inFlight--;
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(latencyMillis, throughputBytesPerSecond, errorRate, inFlight, calls);
+    }
+
+    public static final class Snapshot {
+        private final double latencyMillis;
+        private final double throughputBytesPerSecond;
+        private final double errorRate;
+        private final int inFlight;
+        private final long calls;
+
+        Snapshot(double latencyMillis, double throughputBytesPerSecond, double errorRate, int inFlight, long calls) {
+            this.latencyMillis = latencyMillis;
+            this.throughputBytesPerSecond = throughputBytesPerSecond;
+            this.errorRate = errorRate;
+            this.inFlight = inFlight;
+            this.calls = calls;
+        }
+
+        public double getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        public double getThroughputBytesPerSecond() {
+            return throughputBytesPerSecond;
+        }
+
+        public double getErrorRate() {
+            return errorRate;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("BackendStats{latency=%.1fms, throughput=%.1fMB/s, errorRate=%.3f, inFlight=%d, calls=%d}",
+                    latencyMillis, throughputBytesPerSecond / (1024 * 1024), errorRate, inFlight, calls);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.danielremsburg.archinex.storage;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.NoSuchFileException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Puts a {@link CircuitBreaker} in front of a storage backend. Missing files and interrupted
+ * calls do not count as backend failures. Runtime exceptions from client libraries are reported
+ * as {@link IOException}s.
+ */
+public class CircuitBreakerStorage implements Storage {
+
+    @FunctionalInterface
+    private interface StorageCall<T> {
+        T call() throws IOException;
+    }
+
+    private final Storage delegate;
+    private final CircuitBreaker breaker;
+
+    public CircuitBreakerStorage(Storage delegate, CircuitBreaker breaker) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+
+    /**
+     * Wraps {@code storage} unless it is already wrapped or {@code storage.circuitBreaker.failureThreshold}
+     * is 0.
+     */
+    public static Storage wrap(Storage storage, ArchinexConfig config) {
+        int failureThreshold = config.getIntOrDefault("storage.circuitBreaker.failureThreshold", 5);
+        if (storage instanceof CircuitBreakerStorage || failureThreshold <= 0) {
+            return storage;
+        }
+        long openMillis = config.getLongOrDefault("storage.circuitBreaker.openSeconds", 30L) * 1000L;
+        return new CircuitBreakerStorage(storage,
+                new CircuitBreaker(storage.getClass().getSimpleName(), failureThreshold, openMillis));
+    }
+
+    @Override
+    public void store(UUID uuid, byte[] data, Map<String, String> metadata) throws IOException {
+        guarded(() -> {
+            delegate.store(uuid, data, metadata);
+            return null;
+        });
+    }
+
+    @Override
+    public byte[] retrieve(UUID uuid) throws IOException {
+        return guarded(() -> delegate.retrieve(uuid));
+    }
+
+    @Override
+    public void delete(UUID uuid) throws IOException {
+        guarded(() -> {
+            delegate.delete(uuid);
+            return null;
+        });
+    }
+
+    @Override
+    public void archive(UUID uuid) throws IOException {
+        guarded(() -> {
+            delegate.archive(uuid);
+            return null;
+        });
+    }
+
+    public Storage getDelegate() {
+        return delegate;
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    private <T> T guarded(StorageCall<T> call) throws IOException {
+        breaker.acquire();
+        try {
+            T result = call.call();
+            breaker.onSuccess();
+            return result;
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            breaker.onSuccess(); // The backend answered
+            throw e;
+        } catch (InterruptedIOException | ClosedByInterruptException e) {
+            breaker.onIgnored(); // Cancelled by us, not a backend fault
+            throw e;
+        } catch (IOException e) {
+            breaker.onFailure();
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            throw new IOException("Storage backend error: " + e.getMessage(), e);
+        }
+    }
+}
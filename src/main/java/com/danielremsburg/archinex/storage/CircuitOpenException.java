@@ -0,0 +1,21 @@
+package com.danielremsburg.archinex.storage;
+
+import java.io.IOException;
+
+/**
+ * Thrown without calling the backend while its circuit breaker is open.
+ */
+public class CircuitOpenException extends IOException {
+
+    private final long retryAfterMillis;
+
+    public CircuitOpenException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /** How long until the breaker lets a trial call through. */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -1,15 +1,23 @@
 package com.danielremsburg.archinex.storage;
 
 import com.danielremsburg.archinex.config.ArchinexConfig;
+import com.danielremsburg.archinex.metadata.CachingMetadataStore;
+import com.danielremsburg.archinex.metadata.CompactMetadataStore;
+import com.danielremsburg.archinex.metadata.EmbeddedMetadataStore;
 import com.danielremsburg.archinex.metadata.FileMetadata;
 import com.danielremsburg.archinex.metadata.MetadataStore;
 import com.danielremsburg.archinex.metadata.MemoryMetadataStore;
 import com.danielremsburg.archinex.metadata.PostgresMetadataStore;
+import com.danielremsburg.archinex.metadata.ShardedMetadataStore;
+import com.danielremsburg.archinex.metadata.SnapshottingMetadataStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.UUID;
 
@@ -29,12 +37,27 @@ public class LocalStorage implements Storage {
         }
 
         // Initialize the metadataStore based on the config setting
-        if ("postgres".equalsIgnoreCase(metadataStoreType)) {
-            this.metadataStore = new PostgresMetadataStore(config);
+        MetadataStore store;
+        if ("postgres".equalsIgnoreCase(metadataStoreType) && config.getArrayLength("postgres.shards") > 0) {
+            store = ShardedMetadataStore.fromConfig(config); // One PostgreSQL database per shard
+        } else if ("postgres".equalsIgnoreCase(metadataStoreType)) {
+            store = new PostgresMetadataStore(config);
+        } else if ("embedded".equalsIgnoreCase(metadataStoreType)) {
+            store = new EmbeddedMetadataStore(config);
+        } else if ("compact".equalsIgnoreCase(metadataStoreType)) {
+            store = new CompactMetadataStore();
+        } else if (config.getBooleanOrDefault("metadata.snapshot.enabled", false)) {
+            store = new SnapshottingMetadataStore(config); // Memory store restored from snapshots
         } else {
-            this.metadataStore = new MemoryMetadataStore(); // Default to memory store
+            store = new MemoryMetadataStore(); // Default to memory store
         }
 
+        // Remote stores pay a round trip per lookup, so they can be fronted by a read-through cache
+        if (config.getBooleanOrDefault("metadata.cache.enabled", false)) {
+            store = new CachingMetadataStore(store, config);
+        }
+        this.metadataStore = store;
+
         // Get the storage path from the config
         String storagePath = config.getString("storage.local.path");
         String expandedPath = storagePath.replace("~", System.getProperty("user.home"));
@@ -63,11 +86,7 @@ public class LocalStorage implements Storage {
             String path = filePath.toString();
             long size = Files.size(filePath);
             FileMetadata fileMetadata = new FileMetadata(uuid, path, size);
-            metadata.forEach((key, value) -> {
-                if ("contentType".equals(key)) {
-                    fileMetadata.setContentType(value);
-                }
-            });
+            fileMetadata.setUserMetadata(metadata); // contentType plus indexed tags
             // Store metadata
             try {
                 metadataStore.store(fileMetadata);
@@ -86,10 +105,23 @@ public class LocalStorage implements Storage {
 
         // Check if file exists
         if (!Files.exists(filePath)) {
-            throw new IOException("File not found: " + uuid);
+            throw new NoSuchFileException(filePath.toString(), null, "File not found: " + uuid);
         }
 
-        return Files.readAllBytes(filePath);
+        // Read through a channel so an interrupt (a cancelled retrieve) aborts the read
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("File too large to retrieve: " + uuid);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break; // Truncated since size() was read
+                }
+            }
+            return buffer.position() == buffer.capacity() ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+        }
     }
 
     // Delete file and its metadata
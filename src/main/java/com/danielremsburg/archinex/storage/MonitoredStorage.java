@@ -0,0 +1,69 @@
+package com.danielremsburg.archinex.storage;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Records the timing of every store and retrieve in {@link BackendStats}.
+ */
+public class MonitoredStorage implements Storage {
+
+    private final Storage delegate;
+    private final BackendStats stats;
+
+    public MonitoredStorage(Storage delegate, BackendStats stats) {
+        this.delegate = delegate;
+        this.stats = stats;
+    }
+
+    @Override
+    public void store(UUID uuid, byte[] data, Map<String, String> metadata) throws IOException {
+        long started = begin();
+        try {
+            delegate.store(uuid, data, metadata);
+            stats.callFinished(data.length, System.nanoTime() - started, true);
+        } catch (CircuitOpenException e) {
+            stats.callRejected();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            stats.callFinished(data.length, System.nanoTime() - started, false);
+            throw e;
+        }
+    }
+
+    @Override
+    public byte[] retrieve(UUID uuid) throws IOException {
+        long started = begin();
+        try {
+            byte[] data = delegate.retrieve(uuid);
+            stats.callFinished(data == null ? 0 : data.length, System.nanoTime() - started, true);
+            return data;
+        } catch (CircuitOpenException e) {
+            stats.callRejected();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            stats.callFinished(0, System.nanoTime() - started, false);
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(UUID uuid) throws IOException {
+        delegate.delete(uuid);
+    }
+
+    @Override
+    public void archive(UUID uuid) throws IOException {
+        delegate.archive(uuid);
+    }
+
+    public BackendStats getStats() {
+        return stats;
+    }
+
+    private long begin() {
+        stats.callStarted();
+        return System.nanoTime();
+    }
+}
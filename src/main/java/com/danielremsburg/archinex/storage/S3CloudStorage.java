@@ -4,12 +4,15 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.Map;
 import java.util.UUID;
 import com.danielremsburg.archinex.config.ArchinexConfig;
@@ -45,8 +48,18 @@ public class S3CloudStorage implements CloudStorage {
     @Override
     public byte[] retrieve(UUID uuid) throws IOException {
         S3Object s3Object = s3Client.getObject(bucketName, uuid.toString());
-        try (InputStream inputStream = s3Object.getObjectContent()) {
-            return inputStream.readAllBytes();
+        try (S3ObjectInputStream inputStream = s3Object.getObjectContent()) {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                if (Thread.currentThread().isInterrupted()) {
+                    inputStream.abort(); // Drop the connection rather than draining the rest of the object
+                    throw new InterruptedIOException("Retrieve cancelled: " + uuid);
+                }
+                data.write(buffer, 0, read);
+            }
+            return data.toByteArray();
         }
     }
 
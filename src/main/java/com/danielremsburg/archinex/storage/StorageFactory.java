@@ -5,7 +5,12 @@ import java.io.IOException;
 
 public class StorageFactory {
 
+    /** Creates the configured backend behind a circuit breaker. */
     public static Storage createStorage(ArchinexConfig config) {
+        return CircuitBreakerStorage.wrap(createBackend(config), config);
+    }
+
+    private static Storage createBackend(ArchinexConfig config) {
         String storageType = config.getString("storage.type");
 
         if ("local".equals(storageType)) {
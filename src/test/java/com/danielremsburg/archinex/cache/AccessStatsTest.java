@@ -0,0 +1,112 @@
+package com.danielremsburg.archinex.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccessStatsTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("archinex-access");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void hottestOrdersByAccessCount() {
+        AccessStats stats = new AccessStats(100, HOUR);
+        UUID often = UUID.randomUUID();
+        UUID sometimes = UUID.randomUUID();
+        UUID once = UUID.randomUUID();
+        record(stats, once, 1);
+        record(stats, often, 5);
+        record(stats, sometimes, 3);
+
+        assertEquals(List.of(often, sometimes, once), stats.hottest(10));
+        assertEquals(List.of(often), stats.hottest(1));
+    }
+
+    @Test
+    void oldAccessesFade() throws InterruptedException {
+        AccessStats stats = new AccessStats(100, 20);
+        UUID old = UUID.randomUUID();
+        UUID recent = UUID.randomUUID();
+        record(stats, old, 10);
+        Thread.sleep(150); // Several half-lives: ten accesses are worth well under one now
+
+        record(stats, recent, 1);
+
+        assertEquals(List.of(recent, old), stats.hottest(2));
+    }
+
+    @Test
+    void keepsOnlyTheHottestEntries() {
+        AccessStats stats = new AccessStats(10, HOUR);
+        UUID hot = UUID.randomUUID();
+        record(stats, hot, 3);
+        for (int i = 0; i < 100; i++) {
+            stats.record(UUID.randomUUID());
+        }
+
+        assertTrue(stats.size() <= 10 + 10 / 4, "size " + stats.size());
+        assertEquals(hot, stats.hottest(1).get(0));
+    }
+
+    @Test
+    void saveAndLoadKeepScores() throws IOException {
+        AccessStats stats = new AccessStats(100, HOUR);
+        UUID often = UUID.randomUUID();
+        UUID once = UUID.randomUUID();
+        record(stats, often, 4);
+        record(stats, once, 1);
+        Path file = directory.resolve("access.stats");
+        stats.save(file);
+
+        AccessStats loaded = new AccessStats(100, HOUR);
+        assertEquals(2, loaded.load(file));
+        assertEquals(List.of(often, once), loaded.hottest(10));
+    }
+
+    @Test
+    void corruptFileIsRejected() throws IOException {
+        AccessStats stats = new AccessStats(100, HOUR);
+        record(stats, UUID.randomUUID(), 2);
+        Path file = directory.resolve("access.stats");
+        stats.save(file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[20] ^= 1;
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> new AccessStats(100, HOUR).load(file));
+    }
+
+    private static void record(AccessStats stats, UUID uuid, int times) {
+        for (int i = 0; i < times; i++) {
+            stats.record(uuid);
+        }
+    }
+}
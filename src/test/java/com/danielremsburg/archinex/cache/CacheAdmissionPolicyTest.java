@@ -0,0 +1,77 @@
+package com.danielremsburg.archinex.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheAdmissionPolicyTest {
+
+    @Test
+    void retrievedFilesAreAdmittedOnceTheyMissEnough() {
+        CacheAdmissionPolicy policy = new CacheAdmissionPolicy(true, 0, 3);
+        UUID uuid = UUID.randomUUID();
+
+        assertFalse(policy.admitOnRetrieve(uuid, 10));
+        assertFalse(policy.admitOnRetrieve(uuid, 10));
+        assertTrue(policy.admitOnRetrieve(uuid, 10));
+        // Other files keep their own counts
+        assertFalse(policy.admitOnRetrieve(UUID.randomUUID(), 10));
+
+        AdmissionStats stats = policy.stats();
+        assertEquals(1, stats.getRetrieveAdmitted());
+        assertEquals(3, stats.getRetrieveDeferred());
+    }
+
+    @Test
+    void oneAccessAdmitsOnFirstRead() {
+        CacheAdmissionPolicy policy = new CacheAdmissionPolicy(true, 0, 1);
+
+        assertTrue(policy.admitOnRetrieve(UUID.randomUUID(), 10));
+    }
+
+    @Test
+    void largeFilesAreNeverAdmitted() {
+        CacheAdmissionPolicy policy = new CacheAdmissionPolicy(true, 1_000, 1);
+        UUID uuid = UUID.randomUUID();
+
+        assertFalse(policy.admitOnStore(uuid, 1_001));
+        assertFalse(policy.admitOnRetrieve(uuid, 1_001));
+        assertFalse(policy.admitOnPrefetch(uuid, 1_001));
+        assertTrue(policy.admitOnRetrieve(uuid, 1_000));
+
+        assertEquals(3, policy.stats().getRejectedTooLarge());
+        assertEquals(3_003, policy.stats().getRejectedBytes());
+    }
+
+    @Test
+    void writeAroundSkipsStoresButNotPrefetches() {
+        CacheAdmissionPolicy policy = new CacheAdmissionPolicy(false, 0, 5);
+        UUID uuid = UUID.randomUUID();
+
+        assertFalse(policy.admitOnStore(uuid, 10));
+        assertTrue(policy.admitOnPrefetch(uuid, 10));
+        assertEquals(1, policy.stats().getStoreBypassed());
+
+        policy.reconfigure(true, 0, 5);
+        assertTrue(policy.admitOnStore(uuid, 10));
+    }
+
+    @Test
+    void reconfigureKeepsCountsAndRejectsUnsupportedThresholds() {
+        CacheAdmissionPolicy policy = new CacheAdmissionPolicy(true, 0, 4);
+        UUID uuid = UUID.randomUUID();
+        policy.admitOnRetrieve(uuid, 10);
+        policy.admitOnRetrieve(uuid, 10);
+
+        policy.reconfigure(true, 0, 3);
+        assertTrue(policy.admitOnRetrieve(uuid, 10));
+
+        assertThrows(IllegalArgumentException.class, () -> policy.reconfigure(true, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> policy.reconfigure(true, 0, 16));
+    }
+}
@@ -0,0 +1,105 @@
+package com.danielremsburg.archinex.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiskCacheTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+    private static final long MAX_BYTES = 4 * SEGMENT_SIZE;
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("archinex-disk-cache");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void entriesAndRemovalsSurviveARestart() {
+        UUID kept = UUID.randomUUID();
+        UUID removed = UUID.randomUUID();
+        DiskCache cache = open();
+        cache.put(kept, bytes("kept"));
+        cache.put(removed, bytes("removed"));
+        cache.remove(removed);
+        cache.close();
+
+        DiskCache reopened = open();
+        assertArrayEquals(bytes("kept"), reopened.get(kept));
+        assertNull(reopened.get(removed));
+        reopened.close();
+    }
+
+    @Test
+    void evictedSegmentsAreReusedWithoutReplayingTheirOldRecords() throws IOException {
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            keys.add(UUID.randomUUID());
+        }
+        Map<UUID, byte[]> latest = new HashMap<>();
+        DiskCache cache = open();
+        // Many rounds of rewrites, so every segment file is reused several times. Records all have
+        // the same size, so new records end exactly where an old one starts.
+        for (int round = 0; round < 201; round++) {
+            for (UUID key : keys) {
+                byte[] data = bytes(String.format("%s@%05d", key, round));
+                cache.put(key, data);
+                latest.put(key, data);
+            }
+            assertTrue(segmentFiles() <= MAX_BYTES / SEGMENT_SIZE + 3, "Segment files are piling up: " + segmentFiles());
+        }
+        cache.close();
+
+        DiskCache reopened = open();
+        for (UUID key : keys) {
+            byte[] data = reopened.get(key);
+            if (data != null) {
+                assertArrayEquals(latest.get(key), data, "Stale record replayed for " + key);
+            }
+        }
+        assertEquals(keys.size(), reopened.size());
+        reopened.close();
+    }
+
+    private DiskCache open() {
+        return new DiskCache(directory, MAX_BYTES, SEGMENT_SIZE, 0);
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,96 @@
+package com.danielremsburg.archinex.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryCacheTest {
+
+    private static final long MAX_BYTES = 1024 * 1024;
+    private static final int ENTRY_BYTES = 10 * 1024;
+
+    @Test
+    void weightNeverExceedsTheLimit() {
+        MemoryCache cache = new MemoryCache(MAX_BYTES, 0);
+        for (int i = 0; i < 500; i++) {
+            cache.put(UUID.randomUUID(), new byte[ENTRY_BYTES]);
+            assertTrue(cache.weightedSize() <= MAX_BYTES, "weight " + cache.weightedSize() + " after " + i);
+        }
+        assertTrue(cache.size() > 80, "only " + cache.size() + " entries kept");
+        // Newcomers that lose to the main segment's victim are counted as rejections
+        CacheStats stats = cache.stats();
+        assertEquals(500 - cache.size(), stats.getEvictionCount() + stats.getRejectionCount());
+    }
+
+    @Test
+    void frequentlyReadEntriesSurviveAScan() {
+        MemoryCache cache = new MemoryCache(MAX_BYTES, 0);
+        List<UUID> hot = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            UUID uuid = UUID.randomUUID();
+            hot.add(uuid);
+            cache.put(uuid, new byte[ENTRY_BYTES]);
+        }
+        for (int round = 0; round < 10; round++) {
+            hot.forEach(cache::get);
+        }
+
+        // Ten times the cache's size, each read once
+        for (int i = 0; i < 1_000; i++) {
+            UUID uuid = UUID.randomUUID();
+            cache.put(uuid, new byte[ENTRY_BYTES]);
+            cache.get(uuid);
+        }
+
+        long kept = hot.stream().filter(uuid -> cache.get(uuid) != null).count();
+        assertEquals(hot.size(), kept);
+    }
+
+    @Test
+    void oversizedValueRejectedWithoutLeavingTheOldOne() {
+        MemoryCache cache = new MemoryCache(MAX_BYTES, 0);
+        UUID uuid = UUID.randomUUID();
+        cache.put(uuid, new byte[ENTRY_BYTES]);
+
+        cache.put(uuid, new byte[(int) MAX_BYTES + 1]);
+
+        assertNull(cache.get(uuid));
+        assertEquals(1, cache.stats().getRejectionCount());
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    void shrinkingEvictsAtOnce() {
+        MemoryCache cache = new MemoryCache(MAX_BYTES, 0);
+        for (int i = 0; i < 50; i++) {
+            cache.put(UUID.randomUUID(), new byte[ENTRY_BYTES]);
+        }
+
+        cache.setMaximumBytes(MAX_BYTES / 4);
+
+        assertTrue(cache.weightedSize() <= MAX_BYTES / 4, "weight " + cache.weightedSize());
+        assertTrue(cache.stats().getEvictionCount() > 0);
+    }
+
+    @Test
+    void expiredEntriesAreMisses() throws InterruptedException {
+        MemoryCache cache = new MemoryCache(MAX_BYTES, 50);
+        UUID uuid = UUID.randomUUID();
+        byte[] data = {1, 2, 3};
+        cache.put(uuid, data);
+        assertArrayEquals(data, cache.get(uuid));
+
+        Thread.sleep(100);
+
+        assertNull(cache.get(uuid));
+        assertEquals(1, cache.stats().getExpirationCount());
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,122 @@
+package com.danielremsburg.archinex.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapCacheTest {
+
+    private static final int PAGE_SIZE = 4096;
+
+    private final Random random = new Random(3);
+
+    @Test
+    void payloadsOfEverySizeReadBackIntact() {
+        OffHeapCache cache = new OffHeapCache(64 * PAGE_SIZE, PAGE_SIZE, 0);
+        for (int size : new int[]{0, 1, 1000, 1024, 3000, PAGE_SIZE, PAGE_SIZE + 1, 3 * PAGE_SIZE + 777}) {
+            UUID uuid = UUID.randomUUID();
+            byte[] data = randomBytes(size);
+            cache.put(uuid, data);
+
+            assertArrayEquals(data, cache.get(uuid), "size " + size);
+            ByteArrayOutputStream viewed = new ByteArrayOutputStream();
+            assertTrue(cache.read(uuid, view -> {
+                byte[] chunk = new byte[view.remaining()];
+                view.get(chunk);
+                viewed.write(chunk, 0, chunk.length);
+            }));
+            assertArrayEquals(data, viewed.toByteArray(), "views of size " + size);
+        }
+        assertFalse(cache.read(UUID.randomUUID(), view -> { }));
+    }
+
+    @Test
+    void fullCacheEvictsAndStaysWithinItsPages() {
+        OffHeapCache cache = new OffHeapCache(16 * PAGE_SIZE, PAGE_SIZE, 0);
+        List<UUID> uuids = new ArrayList<>();
+        List<byte[]> payloads = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            UUID uuid = UUID.randomUUID();
+            byte[] data = randomBytes(500 + random.nextInt(6_000));
+            cache.put(uuid, data);
+            uuids.add(uuid);
+            payloads.add(data);
+            assertTrue(cache.allocatedBytes() <= 16 * PAGE_SIZE, "allocated " + cache.allocatedBytes());
+        }
+
+        assertTrue(cache.stats().getEvictionCount() > 0);
+        assertArrayEquals(payloads.get(199), cache.get(uuids.get(199)));
+        // Whatever survived eviction and compaction still holds its own bytes
+        for (int i = 0; i < uuids.size(); i++) {
+            byte[] cached = cache.get(uuids.get(i));
+            if (cached != null) {
+                assertArrayEquals(payloads.get(i), cached, "entry " + i);
+            }
+        }
+    }
+
+    @Test
+    void freedChunksAreCompactedForAnotherSizeClass() {
+        OffHeapCache cache = new OffHeapCache(4 * PAGE_SIZE, PAGE_SIZE, 0);
+        List<UUID> small = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            UUID uuid = UUID.randomUUID();
+            cache.put(uuid, filled(1024, i));
+            small.add(uuid);
+        }
+        // One live chunk left on each of three pages
+        for (int i = 0; i < 12; i++) {
+            if (i % 4 != i / 4) {
+                cache.remove(small.get(i));
+            }
+        }
+
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        cache.put(first, filled(PAGE_SIZE, 100));
+        cache.put(second, filled(PAGE_SIZE, 101));
+
+        assertEquals(0, cache.stats().getEvictionCount());
+        assertArrayEquals(filled(PAGE_SIZE, 100), cache.get(first));
+        assertArrayEquals(filled(PAGE_SIZE, 101), cache.get(second));
+        for (int i : new int[]{0, 5, 10}) {
+            assertArrayEquals(filled(1024, i), cache.get(small.get(i)), "small entry " + i);
+        }
+    }
+
+    @Test
+    void payloadLargerThanTheCacheIsRejected() {
+        OffHeapCache cache = new OffHeapCache(4 * PAGE_SIZE, PAGE_SIZE, 0);
+        UUID uuid = UUID.randomUUID();
+        cache.put(uuid, new byte[10]);
+
+        cache.put(uuid, new byte[5 * PAGE_SIZE]);
+
+        assertNull(cache.get(uuid));
+        assertEquals(1, cache.stats().getRejectionCount());
+        assertEquals(0, cache.storedBytes());
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return data;
+    }
+
+    private static byte[] filled(int size, int value) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+}
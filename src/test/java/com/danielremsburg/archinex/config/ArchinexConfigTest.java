@@ -0,0 +1,86 @@
+package com.danielremsburg.archinex.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchinexConfigTest {
+
+    private Path directory;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("archinex-config");
+        file = directory.resolve("archinex.json");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void reloadSwapsInTheNewSnapshotAndNotifiesListeners() throws IOException {
+        Files.writeString(file, "{\"metadata\": {\"scan\": {\"fetchSize\": 500}}}");
+        ArchinexConfig config = new ArchinexConfig(file.toString());
+        List<ConfigSnapshot> applied = new CopyOnWriteArrayList<>();
+        config.addReloadListener(applied::add);
+
+        Files.writeString(file, "{\"metadata\": {\"scan\": {\"fetchSize\": 50}}, \"cache\": {\"maxSize\": 2}}");
+        ConfigSnapshot reloaded = config.reload();
+
+        assertEquals(1, reloaded.getGeneration());
+        assertEquals(50, config.snapshot().getMetadataScanFetchSize());
+        assertEquals(2L * 1024 * 1024, config.snapshot().getCacheMaxBytes());
+        assertEquals(List.of(reloaded), applied);
+    }
+
+    @Test
+    void outOfRangeValuesKeepTheCurrentSnapshot() throws IOException {
+        Files.writeString(file, "{\"metadata\": {\"scan\": {\"fetchSize\": 500}}}");
+        ArchinexConfig config = new ArchinexConfig(file.toString());
+        ConfigSnapshot current = config.snapshot();
+        List<ConfigSnapshot> applied = new CopyOnWriteArrayList<>();
+        config.addReloadListener(applied::add);
+
+        for (String invalid : List.of(
+                "{\"metadata\": {\"scan\": {\"fetchSize\": 0}}}",
+                "{\"cache\": {\"admission\": {\"minAccesses\": 20}, \"maxSize\": 2}}",
+                "{\"cache\": {\"maxSize\": 0}}",
+                "{\"cache\": {\"maxSize\": 9000000000000000}}",
+                "{\"planner\": {\"threadPoolSize\": -1}}",
+                "{\"plan\": {\"compression\": {\"minSavings\": 1.5}}}",
+                "{\"plan\": {\"multipart\": {\"maxParallel\": 0}}}",
+                "{\"cache\": {\"admission\": {\"storeMode\": \"write-behind\"}}}")) {
+            Files.writeString(file, invalid);
+            IOException error = assertThrows(IOException.class, config::reload);
+            assertTrue(error.getMessage().contains(file.toString()), error.getMessage());
+            assertEquals(current, config.snapshot(), invalid);
+        }
+        assertTrue(applied.isEmpty());
+        assertEquals(500, config.snapshot().getMetadataScanFetchSize());
+    }
+
+    @Test
+    void outOfRangeValueFailsStartup() throws IOException {
+        Files.writeString(file, "{\"cache\": {\"admission\": {\"minAccesses\": 0}}}");
+        assertThrows(IllegalArgumentException.class, () -> new ArchinexConfig(file.toString()));
+    }
+}
@@ -0,0 +1,117 @@
+package com.danielremsburg.archinex.core;
+
+import com.danielremsburg.archinex.cache.AccessStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheWarmerTest {
+
+    private static final long FAST = Long.MAX_VALUE / 2;
+
+    private final AccessStats accessStats = new AccessStats(100, 60 * 60 * 1000L);
+    private final BlockingQueue<UUID> loaded = new LinkedBlockingQueue<>();
+    private CacheWarmer warmer;
+
+    @AfterEach
+    void tearDown() {
+        if (warmer != null) {
+            warmer.close();
+        }
+    }
+
+    @Test
+    void loadsTheHottestFilesUntilTheByteBudgetIsSpent() throws InterruptedException {
+        List<UUID> hottestFirst = recordDescending(4);
+
+        // The budget is crossed by the second 100-byte file
+        warmer = new CacheWarmer(accessStats, load(100), 10, 150, FAST);
+        warmer.start();
+
+        assertEquals(hottestFirst.get(0), loaded.poll(5, TimeUnit.SECONDS));
+        assertEquals(hottestFirst.get(1), loaded.poll(5, TimeUnit.SECONDS));
+        assertNull(loaded.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void loadsAtMostMaxFiles() throws InterruptedException {
+        recordDescending(4);
+
+        warmer = new CacheWarmer(accessStats, load(1), 3, Long.MAX_VALUE, FAST);
+        warmer.start();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(loaded.poll(5, TimeUnit.SECONDS) != null, "file " + i + " was not loaded");
+        }
+        assertNull(loaded.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void failedLoadsAreSkipped() throws InterruptedException {
+        List<UUID> hottestFirst = recordDescending(3);
+        CacheWarmer.Loader loader = load(1);
+
+        warmer = new CacheWarmer(accessStats, uuid -> {
+            if (uuid.equals(hottestFirst.get(1))) {
+                throw new IOException("unavailable");
+            }
+            return loader.load(uuid);
+        }, 10, Long.MAX_VALUE, FAST);
+        warmer.start();
+
+        assertEquals(hottestFirst.get(0), loaded.poll(5, TimeUnit.SECONDS));
+        assertEquals(hottestFirst.get(2), loaded.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void loadsArePacedToTheRate() throws InterruptedException {
+        recordDescending(4);
+
+        // 1000 bytes each at 10 KB/s: the fourth load is due 300 ms in
+        warmer = new CacheWarmer(accessStats, load(1_000), 10, Long.MAX_VALUE, 10_000);
+        long started = System.nanoTime();
+        warmer.start();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(loaded.poll(5, TimeUnit.SECONDS) != null, "file " + i + " was not loaded");
+        }
+
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(250),
+                "loaded in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+    }
+
+    @Test
+    void rateMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new CacheWarmer(accessStats, load(1), 10, 10, 0));
+    }
+
+    private List<UUID> recordDescending(int files) {
+        List<UUID> hottestFirst = new ArrayList<>();
+        for (int i = 0; i < files; i++) {
+            UUID uuid = UUID.randomUUID();
+            for (int access = 0; access < files - i; access++) {
+                accessStats.record(uuid);
+            }
+            hottestFirst.add(uuid);
+        }
+        return hottestFirst;
+    }
+
+    private CacheWarmer.Loader load(int size) {
+        return uuid -> {
+            loaded.add(uuid);
+            return new byte[size];
+        };
+    }
+}
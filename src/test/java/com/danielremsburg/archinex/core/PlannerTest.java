@@ -0,0 +1,223 @@
+package com.danielremsburg.archinex.core;
+
+import com.danielremsburg.archinex.cache.MemoryCache;
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import com.danielremsburg.archinex.journal.MemoryJournal;
+import com.danielremsburg.archinex.metadata.FileMetadata;
+import com.danielremsburg.archinex.metadata.MemoryMetadataStore;
+import com.danielremsburg.archinex.retention.BasicRetentionPolicy;
+import com.danielremsburg.archinex.storage.Storage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlannerTest {
+
+    private static final class MemoryStorage implements Storage {
+        final Map<UUID, byte[]> objects = new ConcurrentHashMap<>();
+        final AtomicInteger retrieves = new AtomicInteger();
+        volatile CountDownLatch retrieveStarted = new CountDownLatch(0);
+        volatile CountDownLatch releaseRetrieve = new CountDownLatch(0);
+        final CountDownLatch retrieveInterrupted = new CountDownLatch(1);
+
+        @Override
+        public void store(UUID uuid, byte[] data, Map<String, String> metadata) {
+            objects.put(uuid, data);
+        }
+
+        @Override
+        public byte[] retrieve(UUID uuid) throws IOException {
+            retrieves.incrementAndGet();
+            retrieveStarted.countDown();
+            try {
+                releaseRetrieve.await();
+            } catch (InterruptedException e) {
+                retrieveInterrupted.countDown();
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+            byte[] data = objects.get(uuid);
+            if (data == null) {
+                throw new IOException("No object " + uuid);
+            }
+            return data;
+        }
+
+        @Override
+        public void delete(UUID uuid) {
+            objects.remove(uuid);
+        }
+
+        @Override
+        public void archive(UUID uuid) {
+        }
+    }
+
+    private final MemoryStorage storage = new MemoryStorage();
+    private final MemoryMetadataStore metadataStore = new MemoryMetadataStore();
+    private ExecutorService pool;
+    private Planner planner;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ArchinexConfig config = new ArchinexConfig();
+        MemoryCache cache = new MemoryCache(64L * 1024 * 1024, 0);
+        pool = Executors.newFixedThreadPool(8);
+        planner = new Planner(config, storage, metadataStore, new MemoryJournal(),
+                new BasicRetentionPolicy("test", "test", new ArrayList<>(), metadataStore, cache, storage), cache, pool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        planner.stop();
+        pool.shutdownNow();
+    }
+
+    @Test
+    void cacheMissRetrievesFromStorage() throws Exception {
+        UUID uuid = storeDirectly("hello".getBytes(StandardCharsets.UTF_8));
+
+        assertArrayEquals("hello".getBytes(StandardCharsets.UTF_8), planner.retrieveFile(uuid.toString()));
+        assertEquals(1, storage.retrieves.get());
+    }
+
+    @Test
+    void concurrentMissesShareOneFetch() throws Exception {
+        byte[] data = "shared".getBytes(StandardCharsets.UTF_8);
+        UUID uuid = storeDirectly(data);
+        storage.retrieveStarted = new CountDownLatch(1);
+        storage.releaseRetrieve = new CountDownLatch(1);
+
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> planner.retrieveFile(uuid.toString())));
+            }
+            assertTrue(storage.retrieveStarted.await(5, TimeUnit.SECONDS), "Storage fetch never started");
+            Thread.sleep(100); // Let the other callers join the fetch in flight
+            storage.releaseRetrieve.countDown();
+
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(data, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, storage.retrieves.get());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void deadlineFailsTheRetrieveAndInterruptsTheFetch() throws Exception {
+        UUID uuid = storeDirectly("slow".getBytes(StandardCharsets.UTF_8));
+        storage.releaseRetrieve = new CountDownLatch(1);
+
+        CompletableFuture<byte[]> retrieval = planner.retrieveFileAsync(uuid.toString(), Duration.ofMillis(100));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> retrieval.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof TimeoutException, String.valueOf(failure.getCause()));
+        assertTrue(storage.retrieveInterrupted.await(5, TimeUnit.SECONDS), "Storage fetch was not interrupted");
+    }
+
+    @Test
+    void cancellingTheOnlyCallerInterruptsTheFetch() throws Exception {
+        UUID uuid = storeDirectly("slow".getBytes(StandardCharsets.UTF_8));
+        storage.retrieveStarted = new CountDownLatch(1);
+        storage.releaseRetrieve = new CountDownLatch(1);
+
+        CompletableFuture<byte[]> retrieval = planner.retrieveFileAsync(uuid.toString(), null);
+        assertTrue(storage.retrieveStarted.await(5, TimeUnit.SECONDS), "Storage fetch never started");
+        retrieval.cancel(true);
+
+        assertTrue(storage.retrieveInterrupted.await(5, TimeUnit.SECONDS), "Storage fetch was not interrupted");
+        // Nothing was cached, so the next read fetches again
+        storage.releaseRetrieve.countDown();
+        assertArrayEquals("slow".getBytes(StandardCharsets.UTF_8), planner.retrieveFile(uuid.toString()));
+        assertEquals(2, storage.retrieves.get());
+    }
+
+    @Test
+    void fromConfigBuildsTheConfiguredCacheAndClosesIt() throws Exception {
+        Path directory = Files.createTempDirectory("archinex-planner");
+        try {
+            Path configFile = directory.resolve("archinex.json");
+            Files.writeString(configFile, "{\"cache\": {\"type\": \"disk\", \"disk\": {\"path\": \""
+                    + directory.resolve("cache") + "\", \"maxSize\": 4, \"segmentSizeMB\": 1}}}");
+            ArchinexConfig config = new ArchinexConfig(configFile.toString());
+            UUID uuid = storeDirectly("cached".getBytes(StandardCharsets.UTF_8));
+
+            Planner first = Planner.fromConfig(config, storage, metadataStore, new MemoryJournal(), List.of());
+            first.retrieveFile(uuid.toString());
+            first.stop();
+
+            // Served from the disk cache the first planner wrote and closed
+            Planner second = Planner.fromConfig(config, storage, metadataStore, new MemoryJournal(), List.of());
+            assertArrayEquals("cached".getBytes(StandardCharsets.UTF_8), second.retrieveFile(uuid.toString()));
+            second.stop();
+            assertEquals(1, storage.retrieves.get());
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Test
+    void retrievedFileIsCachedOnceItHasMissedEnough() throws Exception {
+        Path configFile = Files.createTempFile("archinex-planner", ".json");
+        try {
+            Files.writeString(configFile, "{\"cache\": {\"type\": \"memory\", \"admission\": {\"minAccesses\": 2}}}");
+            Planner admitting = Planner.fromConfig(new ArchinexConfig(configFile.toString()), storage, metadataStore,
+                    new MemoryJournal(), List.of());
+            UUID uuid = storeDirectly("twice".getBytes(StandardCharsets.UTF_8));
+
+            for (int i = 0; i < 4; i++) {
+                admitting.retrieveFile(uuid.toString());
+            }
+            admitting.stop();
+
+            // The first miss is turned away, the second admits the file, the rest are hits
+            assertEquals(2, storage.retrieves.get());
+            assertEquals(1, admitting.getCacheAdmissionStats().getRetrieveDeferred());
+            assertEquals(1, admitting.getCacheAdmissionStats().getRetrieveAdmitted());
+        } finally {
+            Files.delete(configFile);
+        }
+    }
+
+    private UUID storeDirectly(byte[] data) throws Exception {
+        UUID uuid = UUID.randomUUID();
+        metadataStore.store(new FileMetadata(uuid, "/data/" + uuid, data.length));
+        storage.objects.put(uuid, data);
+        return uuid;
+    }
+}
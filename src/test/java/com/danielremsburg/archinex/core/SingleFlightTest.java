@@ -0,0 +1,107 @@
+package com.danielremsburg.archinex.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flights = new SingleFlight<>();
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CountDownLatch loadStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseLoad = new CountDownLatch(1);
+    private final CountDownLatch loadInterrupted = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    // Blocks until released, and notes an interrupt
+    private String load() throws InterruptedException {
+        loads.incrementAndGet();
+        loadStarted.countDown();
+        try {
+            releaseLoad.await();
+        } catch (InterruptedException e) {
+            loadInterrupted.countDown();
+            throw e;
+        }
+        return "value";
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        CompletableFuture<String> first = flights.executeAsync("key", this::load, pool);
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = flights.executeAsync("key", this::load, pool);
+
+        releaseLoad.countDown();
+
+        assertEquals("value", first.get(5, TimeUnit.SECONDS));
+        assertEquals("value", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertFalse(flights.isInFlight("key"));
+    }
+
+    @Test
+    void cancellingOneCallerLeavesTheLoadForTheOthers() throws Exception {
+        CompletableFuture<String> cancelled = flights.executeAsync("key", this::load, pool);
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> waiting = flights.executeAsync("key", this::load, pool);
+
+        cancelled.cancel(true);
+        releaseLoad.countDown();
+
+        assertEquals("value", waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loadInterrupted.getCount());
+    }
+
+    @Test
+    void lastCallerGivingUpInterruptsTheLoad() throws Exception {
+        CompletableFuture<String> caller = flights.executeAsync("key", this::load, pool);
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        caller.cancel(true);
+
+        assertTrue(loadInterrupted.await(5, TimeUnit.SECONDS), "Abandoned load was not interrupted");
+        // The next caller starts afresh rather than joining the abandoned load
+        assertEquals("fresh", flights.executeAsync("key", () -> "fresh", pool).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void deadlineFailsTheCallerAndStopsTheLoad() throws Exception {
+        CompletableFuture<String> caller = flights.executeAsync("key", this::load, pool);
+        caller.orTimeout(50, TimeUnit.MILLISECONDS);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> caller.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof TimeoutException, String.valueOf(failure.getCause()));
+        assertTrue(loadInterrupted.await(5, TimeUnit.SECONDS), "Timed out load was not interrupted");
+    }
+
+    @Test
+    void failureReachesEveryCallerAndIsNotKept() throws Exception {
+        CompletableFuture<String> failed = flights.execute("key", () -> {
+            throw new IOException("unavailable");
+        });
+
+        ExecutionException failure = assertThrows(ExecutionException.class, failed::get);
+        assertTrue(failure.getCause() instanceof IOException);
+        assertEquals("retried", flights.execute("key", () -> "retried").get());
+    }
+}
@@ -0,0 +1,114 @@
+package com.danielremsburg.archinex.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StoreBatcherTest {
+
+    // Long enough that a test passing in time cannot have waited for it
+    private static final long WINDOW_MILLIS = 60_000;
+
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+    private final BlockingQueue<List<Integer>> flushed = new LinkedBlockingQueue<>();
+    private volatile CountDownLatch flushStarted = new CountDownLatch(0);
+    private volatile CountDownLatch releaseFlush = new CountDownLatch(0);
+
+    private final StoreBatcher<Integer> batcher = new StoreBatcher<>(WINDOW_MILLIS, 4, 1_000, Integer::longValue,
+            batch -> {
+                flushStarted.countDown();
+                try {
+                    releaseFlush.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                flushed.add(batch);
+            }, pool);
+
+    @AfterEach
+    void tearDown() {
+        batcher.close();
+        pool.shutdownNow();
+    }
+
+    @Test
+    void requestsOneAtATimeDoNotWaitForTheWindow() throws InterruptedException {
+        for (int i = 1; i <= 3; i++) {
+            batcher.add(i);
+            assertEquals(List.of(i), flushed.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void requestsDuringAFlushGoOutTogetherWhenItReturns() throws InterruptedException {
+        holdNextFlush();
+        batcher.add(1);
+        assertTrue(flushStarted.await(5, TimeUnit.SECONDS), "First request was not flushed at once");
+
+        batcher.add(2);
+        batcher.add(3);
+        assertNull(flushed.poll(100, TimeUnit.MILLISECONDS));
+
+        releaseFlush.countDown();
+        assertEquals(List.of(1), flushed.poll(5, TimeUnit.SECONDS));
+        assertEquals(List.of(2, 3), flushed.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void fullBatchGoesOutWithoutWaitingForTheFlush() throws InterruptedException {
+        holdNextFlush();
+        batcher.add(1);
+        assertTrue(flushStarted.await(5, TimeUnit.SECONDS), "First request was not flushed at once");
+
+        // maxItems is 4; the size limit is 1000
+        for (int i = 2; i <= 5; i++) {
+            batcher.add(i);
+        }
+        batcher.add(600);
+        batcher.add(500);
+        releaseFlush.countDown();
+
+        // All three flushes were held together, so they may finish in any order
+        Set<List<Integer>> batches = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            batches.add(flushed.poll(5, TimeUnit.SECONDS));
+        }
+        assertEquals(Set.of(List.of(1), List.of(2, 3, 4, 5), List.of(600, 500)), batches);
+    }
+
+    @Test
+    void closeFlushesPendingRequestsAndRejectsNewOnes() throws InterruptedException {
+        holdNextFlush();
+        batcher.add(1);
+        assertTrue(flushStarted.await(5, TimeUnit.SECONDS), "First request was not flushed at once");
+        batcher.add(2);
+
+        releaseFlush.countDown();
+        batcher.close();
+        assertThrows(RejectedExecutionException.class, () -> batcher.add(3));
+        Set<List<Integer>> batches = new HashSet<>();
+        batches.add(flushed.poll(5, TimeUnit.SECONDS));
+        batches.add(flushed.poll(5, TimeUnit.SECONDS));
+        assertEquals(Set.of(List.of(1), List.of(2)), batches);
+    }
+
+    private void holdNextFlush() {
+        flushStarted = new CountDownLatch(1);
+        releaseFlush = new CountDownLatch(1);
+    }
+}
@@ -0,0 +1,85 @@
+package com.danielremsburg.archinex.core;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkloadSchedulerTest {
+
+    private static final int MAX_THREADS = 4;
+    private static final int TASKS = 2_000;
+
+    private ExecutorService pool;
+    private WorkloadScheduler scheduler;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // A hand-off pool capped at the limit rejects whenever all its threads count as busy
+        pool = new ThreadPoolExecutor(0, MAX_THREADS, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+        scheduler = new WorkloadScheduler(pool, new ArchinexConfig());
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void saturatedPoolRunsEveryRunnable() throws Exception {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            WorkloadClass workloadClass = WorkloadClass.values()[i % WorkloadClass.values().length];
+            scheduler.executor(workloadClass).execute(() -> {
+                spin();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS), done.getCount() + " of " + TASKS + " tasks never ran");
+    }
+
+    @Test
+    void saturatedPoolCompletesEveryFuture() throws Exception {
+        ExecutorService ingest = scheduler.executor(WorkloadClass.INGEST);
+        AtomicInteger ran = new AtomicInteger();
+        List<Future<?>> submitted = new ArrayList<>();
+        List<CompletableFuture<Integer>> chained = new ArrayList<>();
+        for (int i = 0; i < TASKS / 2; i++) {
+            submitted.add(ingest.submit(() -> {
+                spin();
+                ran.incrementAndGet();
+            }));
+            // Continuations are queued as plain Runnables, like the plan executor's next steps
+            chained.add(CompletableFuture.supplyAsync(() -> 1, ingest).thenApplyAsync(value -> value + 1, ingest));
+        }
+        for (Future<?> future : submitted) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        for (CompletableFuture<Integer> future : chained) {
+            assertEquals(Integer.valueOf(2), future.get(30, TimeUnit.SECONDS));
+        }
+        assertEquals(TASKS / 2, ran.get());
+    }
+
+    private static void spin() {
+        long until = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(50);
+        while (System.nanoTime() < until) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.danielremsburg.archinex.metadata;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingMetadataStoreTest {
+
+    // Lets a test hold a read in the delegate while writes happen around it
+    private static final class SlowStore extends MemoryMetadataStore {
+        final AtomicInteger gets = new AtomicInteger();
+        volatile CountDownLatch getStarted = new CountDownLatch(0);
+        volatile CountDownLatch releaseGet = new CountDownLatch(0);
+
+        @Override
+        public FileMetadata get(UUID uuid) throws MetadataStoreException {
+            gets.incrementAndGet();
+            FileMetadata metadata = super.get(uuid);
+            getStarted.countDown();
+            try {
+                releaseGet.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return metadata;
+        }
+    }
+
+    private final SlowStore delegate = new SlowStore();
+    private final CachingMetadataStore store = new CachingMetadataStore(delegate, 1_000, 0, 5_000, false);
+    private final ExecutorService readers = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        readers.shutdownNow();
+        store.close();
+    }
+
+    @Test
+    void writeDuringALoadIsNotOverwrittenByTheStaleValue() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        delegate.store(new FileMetadata(uuid, "/data/old", 1));
+
+        Future<FileMetadata> read = loadBlocked(uuid);
+        store.store(new FileMetadata(uuid, "/data/new", 2));
+        delegate.releaseGet.countDown();
+        assertEquals("/data/old", read.get(5, TimeUnit.SECONDS).getPath());
+
+        assertEquals("/data/new", store.get(uuid).getPath());
+    }
+
+    @Test
+    void writeToAnotherKeyDuringALoadStillCachesIt() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        delegate.store(new FileMetadata(uuid, "/data/file", 1));
+
+        Future<FileMetadata> read = loadBlocked(uuid);
+        store.store(new FileMetadata(UUID.randomUUID(), "/data/other", 2));
+        delegate.releaseGet.countDown();
+        read.get(5, TimeUnit.SECONDS);
+
+        int loads = delegate.gets.get();
+        store.get(uuid);
+        assertEquals(loads, delegate.gets.get());
+        assertEquals(1, store.getHitCount());
+    }
+
+    @Test
+    void createDuringANegativeLoadIsNotMaskedByIt() throws Exception {
+        UUID uuid = UUID.randomUUID();
+
+        Future<FileMetadata> read = loadBlocked(uuid);
+        store.store(new FileMetadata(uuid, "/data/created", 1));
+        delegate.releaseGet.countDown();
+        read.get(5, TimeUnit.SECONDS);
+
+        assertEquals("/data/created", store.get(uuid).getPath());
+    }
+
+    private Future<FileMetadata> loadBlocked(UUID uuid) throws InterruptedException {
+        delegate.getStarted = new CountDownLatch(1);
+        delegate.releaseGet = new CountDownLatch(1);
+        Future<FileMetadata> read = readers.submit(() -> store.get(uuid));
+        assertTrue(delegate.getStarted.await(5, TimeUnit.SECONDS), "Load never reached the delegate");
+        return read;
+    }
+}
@@ -0,0 +1,96 @@
+package com.danielremsburg.archinex.metadata;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompactMetadataStoreTest {
+
+    private static final Instant EPOCH = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final CompactMetadataStore store = new CompactMetadataStore();
+    private final MemoryMetadataStore reference = new MemoryMetadataStore();
+    private final List<UUID> uuids = new ArrayList<>();
+    private final Random random = new Random(7);
+
+    @Test
+    void pagesMatchTheReferenceStoreThroughWritesAndMerges() throws MetadataStoreException {
+        for (int round = 0; round < 6; round++) {
+            // Mostly in creation order, like live ingest, with some stragglers and rewrites
+            for (int i = 0; i < 3_000; i++) {
+                int op = random.nextInt(10);
+                if (op < 6 || uuids.isEmpty()) {
+                    UUID uuid = UUID.randomUUID();
+                    uuids.add(uuid);
+                    store(uuid, EPOCH.plusSeconds(round * 3_000L + i));
+                } else if (op < 8) {
+                    store(pick(), EPOCH.plusSeconds(random.nextInt(20_000)));
+                } else {
+                    UUID uuid = pick();
+                    store.delete(uuid);
+                    reference.delete(uuid);
+                }
+            }
+            assertEquals(reference.count(), store.count());
+            assertPagesMatch(new MetadataQuery());
+            assertPagesMatch(new MetadataQuery().createdFrom(EPOCH.plusSeconds(4_000)).createdBefore(EPOCH.plusSeconds(9_000)));
+            assertPagesMatch(new MetadataQuery().pathPrefix("/data/dir-3/"));
+            assertPagesMatch(new MetadataQuery().minSize(200).maxSize(400).contentType("text/plain"));
+            assertPagesMatch(new MetadataQuery().tag("tier", "hot"));
+        }
+    }
+
+    private void store(UUID uuid, Instant created) throws MetadataStoreException {
+        FileMetadata metadata = new FileMetadata(uuid, "/data/dir-" + random.nextInt(8) + "/" + uuid, random.nextInt(1_000), created);
+        metadata.setContentType(random.nextBoolean() ? "text/plain" : "image/png");
+        if (random.nextInt(3) == 0) {
+            metadata.setTags(Map.of("tier", random.nextBoolean() ? "hot" : "cold"));
+        }
+        store.store(metadata);
+        reference.store(metadata);
+    }
+
+    private UUID pick() {
+        return uuids.get(random.nextInt(uuids.size()));
+    }
+
+    private void assertPagesMatch(MetadataQuery criteria) throws MetadataStoreException {
+        for (int limit : new int[]{7, 1_000}) {
+            List<UUID> expected = new ArrayList<>();
+            List<UUID> actual = new ArrayList<>();
+            page(reference, criteria.limit(limit), expected);
+            page(store, criteria.limit(limit), actual);
+            assertEquals(expected, actual, criteria.toString());
+        }
+    }
+
+    private static void page(MetadataStore target, MetadataQuery criteria, List<UUID> into) throws MetadataStoreException {
+        MetadataQuery query = copy(criteria);
+        List<FileMetadata> page = target.query(query);
+        while (!page.isEmpty()) {
+            into.addAll(page.stream().map(FileMetadata::getUuid).collect(Collectors.toList()));
+            page = target.query(query.startAfter(page.get(page.size() - 1)));
+        }
+    }
+
+    // Each walk needs its own cursor
+    private static MetadataQuery copy(MetadataQuery criteria) {
+        MetadataQuery query = new MetadataQuery().limit(criteria.getLimit());
+        if (criteria.getCreatedFrom() != null) query.createdFrom(criteria.getCreatedFrom());
+        if (criteria.getCreatedBefore() != null) query.createdBefore(criteria.getCreatedBefore());
+        if (criteria.getMinSize() != null) query.minSize(criteria.getMinSize());
+        if (criteria.getMaxSize() != null) query.maxSize(criteria.getMaxSize());
+        if (criteria.getContentType() != null) query.contentType(criteria.getContentType());
+        if (criteria.getPathPrefix() != null) query.pathPrefix(criteria.getPathPrefix());
+        criteria.getTags().forEach(query::tag);
+        return query;
+    }
+}
@@ -0,0 +1,108 @@
+package com.danielremsburg.archinex.metadata;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmbeddedMetadataStoreTest {
+
+    private Path directory;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("archinex-metadata");
+        file = directory.resolve("metadata.log");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void reopenReplaysStoresAndDeletes() throws Exception {
+        UUID kept = UUID.randomUUID();
+        UUID deleted = UUID.randomUUID();
+        try (EmbeddedMetadataStore store = new EmbeddedMetadataStore(file, true)) {
+            store.store(new FileMetadata(kept, "/data/kept", 1));
+            store.store(new FileMetadata(deleted, "/data/deleted", 2));
+            store.delete(deleted);
+        }
+
+        try (EmbeddedMetadataStore store = new EmbeddedMetadataStore(file, true)) {
+            assertEquals(1, store.count());
+            assertNotNull(store.get(kept));
+            assertNull(store.get(deleted));
+        }
+    }
+
+    @Test
+    void tornTailIsCutOffOnReplay() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        try (EmbeddedMetadataStore store = new EmbeddedMetadataStore(file, true)) {
+            store.store(new FileMetadata(uuid, "/data/file", 1));
+        }
+        long intact = Files.size(file);
+        // Half a record header, as a crash mid-append leaves it
+        Files.write(file, new byte[]{0, 0, 0, 40, 1}, StandardOpenOption.APPEND);
+
+        try (EmbeddedMetadataStore store = new EmbeddedMetadataStore(file, true)) {
+            assertEquals(1, store.count());
+            assertEquals(intact, Files.size(file));
+            store.store(new FileMetadata(UUID.randomUUID(), "/data/after", 2));
+        }
+        try (EmbeddedMetadataStore store = new EmbeddedMetadataStore(file, true)) {
+            assertEquals(2, store.count());
+        }
+    }
+
+    @Test
+    void secondStoreOnTheSameLogFailsFast() throws Exception {
+        try (EmbeddedMetadataStore store = new EmbeddedMetadataStore(file, true)) {
+            assertThrows(RuntimeException.class, () -> new EmbeddedMetadataStore(file, true));
+            // The first store is unaffected
+            store.store(new FileMetadata(UUID.randomUUID(), "/data/file", 1));
+        }
+        try (EmbeddedMetadataStore store = new EmbeddedMetadataStore(file, true)) {
+            assertEquals(1, store.count());
+        }
+    }
+
+    @Test
+    void compactionKeepsTheLockAndLiveEntries() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        try (EmbeddedMetadataStore store = new EmbeddedMetadataStore(file, true)) {
+            for (int i = 0; i < 100; i++) {
+                store.store(new FileMetadata(uuid, "/data/file-" + i, i));
+            }
+            long before = Files.size(file);
+            store.compact();
+            assertTrue(Files.size(file) < before);
+            assertThrows(RuntimeException.class, () -> new EmbeddedMetadataStore(file, true));
+            store.store(new FileMetadata(UUID.randomUUID(), "/data/after", 1));
+        }
+        try (EmbeddedMetadataStore store = new EmbeddedMetadataStore(file, true)) {
+            assertEquals(2, store.count());
+            assertEquals("/data/file-99", store.get(uuid).getPath());
+        }
+    }
+}
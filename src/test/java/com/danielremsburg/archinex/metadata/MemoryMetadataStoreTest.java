@@ -0,0 +1,69 @@
+package com.danielremsburg.archinex.metadata;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MemoryMetadataStoreTest {
+
+    private static final int FILES = 3_000;
+
+    private final MemoryMetadataStore store = new MemoryMetadataStore();
+    private final List<FileMetadata> all = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws MetadataStoreException {
+        Random random = new Random(42);
+        Instant created = Instant.parse("2024-01-01T00:00:00Z");
+        for (int i = 0; i < FILES; i++) {
+            // Few directories and sizes, so both selective and broad ranges come up
+            FileMetadata metadata = new FileMetadata(UUID.randomUUID(), "/data/dir-" + random.nextInt(20) + "/file-" + i,
+                    random.nextInt(1_000), created.plusSeconds(random.nextInt(FILES / 4)));
+            store.store(metadata);
+            all.add(metadata);
+        }
+    }
+
+    @Test
+    void pathPrefixPagesMatchAFullScan() throws MetadataStoreException {
+        for (String prefix : List.of("/data/dir-1", "/data/dir-7/", "/data/", "/none")) {
+            assertPagesMatch(() -> new MetadataQuery().pathPrefix(prefix));
+            assertPagesMatch(() -> new MetadataQuery().pathPrefix(prefix).minSize(900));
+        }
+    }
+
+    @Test
+    void sizePagesMatchAFullScan() throws MetadataStoreException {
+        assertPagesMatch(() -> new MetadataQuery().minSize(995));
+        assertPagesMatch(() -> new MetadataQuery().maxSize(10));
+        assertPagesMatch(() -> new MetadataQuery().minSize(100).maxSize(800));
+        assertPagesMatch(() -> new MetadataQuery().minSize(500).createdFrom(Instant.parse("2024-01-01T00:05:00Z"))
+                .createdBefore(Instant.parse("2024-01-01T00:09:00Z")));
+    }
+
+    private void assertPagesMatch(Supplier<MetadataQuery> criteria) throws MetadataStoreException {
+        for (int limit : new int[]{1, 7, 100, 5_000}) {
+            MetadataQuery reference = criteria.get();
+            List<UUID> expected = all.stream().filter(reference::matches).sorted(MetadataQuery.ORDER)
+                    .map(FileMetadata::getUuid).collect(Collectors.toList());
+
+            List<UUID> paged = new ArrayList<>();
+            MetadataQuery query = criteria.get().limit(limit);
+            List<FileMetadata> page = store.query(query);
+            while (!page.isEmpty()) {
+                page.forEach(metadata -> paged.add(metadata.getUuid()));
+                page = store.query(query.startAfter(page.get(page.size() - 1)));
+            }
+            assertEquals(expected, paged, reference + " with limit " + limit);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.danielremsburg.archinex.metadata;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MetadataSnapshotTest {
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("archinex-snapshot");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void entriesSpanningMappedWindowsLoadIntact() throws Exception {
+        List<FileMetadata> entries = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            FileMetadata metadata = new FileMetadata(UUID.randomUUID(), "/data/file-" + i, i, Instant.ofEpochSecond(1_700_000_000L + i));
+            metadata.setTags(Map.of("index", Integer.toString(i)));
+            entries.add(metadata);
+        }
+        Path file = directory.resolve("snapshot-9.bin");
+        MetadataSnapshot.write(file, 9, entries);
+
+        // Windows far smaller than an entry, so records and the header straddle every boundary
+        for (long windowSize : new long[]{7, 4096, 256L * 1024 * 1024}) {
+            List<FileMetadata> loaded = new ArrayList<>();
+            assertEquals(9, MetadataSnapshot.load(file, loaded::add, windowSize));
+            assertEquals(entries.size(), loaded.size());
+            for (int i = 0; i < entries.size(); i++) {
+                assertEquals(entries.get(i).getUuid(), loaded.get(i).getUuid());
+                assertEquals(entries.get(i).getPath(), loaded.get(i).getPath());
+                assertEquals(entries.get(i).getTags(), loaded.get(i).getTags());
+            }
+        }
+    }
+
+    @Test
+    void corruptSnapshotIsRejectedBeforeAnyEntryIsApplied() throws Exception {
+        Path file = directory.resolve("snapshot-1.bin");
+        MetadataSnapshot.write(file, 1, List.of(new FileMetadata(UUID.randomUUID(), "/data/file", 1)));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+
+        List<FileMetadata> loaded = new ArrayList<>();
+        assertThrows(IOException.class, () -> MetadataSnapshot.load(file, loaded::add, 7));
+        assertEquals(0, loaded.size());
+    }
+
+    @Test
+    void storeRecoversFromSnapshotAndLaterLogs() throws Exception {
+        UUID snapshotted = UUID.randomUUID();
+        UUID logged = UUID.randomUUID();
+        UUID deleted = UUID.randomUUID();
+        try (SnapshottingMetadataStore store = new SnapshottingMetadataStore(directory, true, 0)) {
+            store.store(new FileMetadata(snapshotted, "/data/snapshotted", 1));
+            store.store(new FileMetadata(deleted, "/data/deleted", 2));
+            store.snapshot();
+            store.store(new FileMetadata(logged, "/data/logged", 3));
+            store.delete(deleted);
+        }
+
+        try (SnapshottingMetadataStore store = new SnapshottingMetadataStore(directory, true, 0)) {
+            assertEquals(2, store.count());
+            assertNotNull(store.get(snapshotted));
+            assertNotNull(store.get(logged));
+            assertNull(store.get(deleted));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.danielremsburg.archinex.metadata;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedMetadataStoreTest {
+
+    private static final int FILES = 2_000;
+
+    // A separate store instance over a shared catalog, like two PostgresMetadataStores for one jdbcUrl
+    private static final class SharedBackendStore implements MetadataStore {
+        private final String backendId;
+        private final MemoryMetadataStore backend;
+
+        SharedBackendStore(String backendId, MemoryMetadataStore backend) {
+            this.backendId = backendId;
+            this.backend = backend;
+        }
+
+        @Override
+        public void store(FileMetadata metadata) throws MetadataStoreException {
+            backend.store(metadata);
+        }
+
+        @Override
+        public FileMetadata get(UUID uuid) throws MetadataStoreException {
+            return backend.get(uuid);
+        }
+
+        @Override
+        public void delete(UUID uuid) throws MetadataStoreException {
+            backend.delete(uuid);
+        }
+
+        @Override
+        public List<FileMetadata> getAllFiles() throws MetadataStoreException {
+            return backend.getAllFiles();
+        }
+
+        @Override
+        public void scanFiles(int fetchSize, Predicate<FileMetadata> visitor) throws MetadataStoreException {
+            backend.scanFiles(fetchSize, visitor);
+        }
+
+        @Override
+        public List<FileMetadata> query(MetadataQuery query) throws MetadataStoreException {
+            return backend.query(query);
+        }
+
+        @Override
+        public void deleteAll() throws MetadataStoreException {
+            backend.deleteAll();
+        }
+
+        @Override
+        public void update(FileMetadata metadata) throws MetadataStoreException {
+            backend.update(metadata);
+        }
+
+        @Override
+        public String getBackendId() {
+            return backendId;
+        }
+    }
+
+    @Test
+    void reshardOverSameBackendsKeepsEveryRow() throws Exception {
+        MemoryMetadataStore first = new MemoryMetadataStore();
+        MemoryMetadataStore second = new MemoryMetadataStore();
+        ShardedMetadataStore store = new ShardedMetadataStore(List.of(
+                new SharedBackendStore("db-0", first), new SharedBackendStore("db-1", second)));
+        Set<UUID> uuids = fill(store);
+
+        // Fresh instances for the same databases, as fromConfig builds them
+        ShardedMetadataStore resharded = store.reshard(List.of(
+                new SharedBackendStore("db-0", first), new SharedBackendStore("db-1", second)), 100);
+
+        assertEquals(FILES, first.count() + second.count());
+        for (UUID uuid : uuids) {
+            assertNotNull(resharded.get(uuid), "Lost " + uuid);
+        }
+        store.close();
+        resharded.close();
+    }
+
+    @Test
+    void reshardOntoAddedShardMovesOnlyMisplacedRows() throws Exception {
+        MemoryMetadataStore first = new MemoryMetadataStore();
+        MemoryMetadataStore second = new MemoryMetadataStore();
+        MemoryMetadataStore third = new MemoryMetadataStore();
+        ShardedMetadataStore store = new ShardedMetadataStore(List.of(
+                new SharedBackendStore("db-0", first), new SharedBackendStore("db-1", second)));
+        Set<UUID> uuids = fill(store);
+
+        ShardedMetadataStore resharded = store.reshard(List.of(new SharedBackendStore("db-0", first),
+                new SharedBackendStore("db-1", second), new SharedBackendStore("db-2", third)), 64);
+
+        assertEquals(FILES, first.count() + second.count() + third.count());
+        assertTrue(third.count() > 0 && third.count() < FILES / 2, "Unexpected share on the new shard: " + third.count());
+        for (UUID uuid : uuids) {
+            int shard = ShardedMetadataStore.shardIndex(uuid, 3);
+            MemoryMetadataStore expected = shard == 0 ? first : shard == 1 ? second : third;
+            assertNotNull(expected.get(uuid), "Not on its shard: " + uuid);
+            assertNotNull(resharded.get(uuid));
+        }
+        store.close();
+        resharded.close();
+    }
+
+    private static Set<UUID> fill(MetadataStore store) throws MetadataStoreException {
+        Set<UUID> uuids = new HashSet<>();
+        Instant created = Instant.parse("2024-01-01T00:00:00Z");
+        for (int i = 0; i < FILES; i++) {
+            UUID uuid = UUID.randomUUID();
+            // Many files share a creation date, so pages break inside runs of equal timestamps
+            store.store(new FileMetadata(uuid, "/data/file-" + i, i, created.plusSeconds(i / 10)));
+            uuids.add(uuid);
+        }
+        return uuids;
+    }
+}
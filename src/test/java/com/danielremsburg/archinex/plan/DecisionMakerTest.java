@@ -0,0 +1,106 @@
+package com.danielremsburg.archinex.plan;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import com.danielremsburg.archinex.metadata.FileMetadata;
+import com.danielremsburg.archinex.storage.BackendStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecisionMakerTest {
+
+    private static final int SIZE = 8 * 1024 * 1024;
+    private static final double MB_PER_SECOND = 1024 * 1024;
+
+    private Path file;
+    private ArchinexConfig config;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("archinex-decisions", ".json");
+        // 1 MB parts, at most 4 at a time
+        Files.writeString(file, "{\"plan\": {\"fileSizeThreshold\": 1024, \"multipart\": {\"partSizeMB\": 1, \"maxParallel\": 4}}}");
+        config = new ArchinexConfig(file.toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Test
+    void smallFilesAreStoredDirectlyWithoutEstimating() {
+        StoreDecision decision = decide(new BackendStats(20, MB_PER_SECOND), 512, null, null);
+
+        assertEquals(StoreStrategy.DIRECT, decision.getStrategy());
+        assertTrue(decision.getEstimatedMillis().isEmpty());
+    }
+
+    @Test
+    void compressibleDataOnASlowBackendIsCompressed() {
+        StoreDecision decision = decide(new BackendStats(20, MB_PER_SECOND), SIZE, new byte[SIZE], "text/plain");
+
+        assertEquals(StoreStrategy.COMPRESSED, decision.getStrategy());
+        assertTrue(decision.getCompressionRatio() < 0.1, "ratio " + decision.getCompressionRatio());
+    }
+
+    @Test
+    void compressedContentTypesAreNeverDeflated() {
+        StoreDecision decision = decide(new BackendStats(20, MB_PER_SECOND), SIZE, new byte[SIZE], "image/jpeg");
+
+        assertFalse(decision.getEstimatedMillis().containsKey(StoreStrategy.COMPRESSED));
+        assertEquals(StoreStrategy.MULTIPART, decision.getStrategy());
+    }
+
+    @Test
+    void incompressibleDataIsSplitWhenThroughputIsTheBottleneck() {
+        StoreDecision decision = decide(new BackendStats(20, MB_PER_SECOND), SIZE, randomBytes(), null);
+
+        assertFalse(decision.getEstimatedMillis().containsKey(StoreStrategy.COMPRESSED));
+        assertEquals(StoreStrategy.MULTIPART, decision.getStrategy());
+        assertEquals(1024L * 1024, decision.getPartSize());
+        // 8 parts over 4 streams take two rounds: 2 * 20 ms + 8 s / 4
+        assertEquals(2 * 20 + 2_000.0, decision.getEstimatedMillis().get(StoreStrategy.MULTIPART), 1.0);
+    }
+
+    @Test
+    void latencyBoundBackendIsWrittenDirectly() {
+        // At 1 GB/s a part costs less than the extra round trip it needs
+        StoreDecision decision = decide(new BackendStats(500, 1024 * MB_PER_SECOND), SIZE, randomBytes(), null);
+
+        assertEquals(StoreStrategy.DIRECT, decision.getStrategy());
+    }
+
+    @Test
+    void callsInFlightLeaveNoRoomForParallelParts() {
+        BackendStats busy = new BackendStats(20, MB_PER_SECOND);
+        for (int i = 0; i < 4; i++) {
+            busy.callStarted();
+        }
+        StoreDecision decision = decide(busy, SIZE, randomBytes(), null);
+
+        assertEquals(StoreStrategy.DIRECT, decision.getStrategy());
+    }
+
+    private StoreDecision decide(BackendStats backendStats, long size, byte[] data, String contentType) {
+        FileMetadata metadata = new FileMetadata(UUID.randomUUID(), "/data/file", size);
+        metadata.setContentType(contentType);
+        return new DecisionMaker(null, config, backendStats).decide(metadata, data);
+    }
+
+    private static byte[] randomBytes() {
+        byte[] data = new byte[SIZE];
+        new Random(1).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,161 @@
+package com.danielremsburg.archinex.plan;
+
+import com.danielremsburg.archinex.config.ArchinexConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanExecutorTest {
+
+    private final ExecutorService ioPool = Executors.newFixedThreadPool(4, runnable -> new Thread(runnable, "test-io"));
+    private final ExecutorService cpuPool = Executors.newFixedThreadPool(2, runnable -> new Thread(runnable, "test-cpu"));
+    private final List<String> ran = new CopyOnWriteArrayList<>();
+    private Path file;
+    private PlanExecutor executor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("archinex-plans", ".json");
+        Files.writeString(file, "{\"plan\": {\"retry\": {\"maxAttempts\": 3, \"baseDelayMillis\": 1, \"maxDelayMillis\": 5}}}");
+        executor = new PlanExecutor(ioPool, cpuPool, new ArchinexConfig(file.toString()));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        ioPool.shutdownNow();
+        cpuPool.shutdownNow();
+        Files.delete(file);
+    }
+
+    @Test
+    void independentStepsRunConcurrently() throws Exception {
+        // Each side only gets past the barrier if the other runs at the same time
+        CyclicBarrier together = new CyclicBarrier(2);
+        Plan plan = new Plan();
+        Plan.Step left = plan.add(named("left", () -> together.await(5, TimeUnit.SECONDS)));
+        Plan.Step right = plan.add(named("right", () -> together.await(5, TimeUnit.SECONDS)));
+        plan.add(named("join", () -> { }), left, right);
+
+        run(plan);
+
+        assertEquals(3, ran.size());
+        assertEquals("join", ran.get(2));
+    }
+
+    @Test
+    void linearPlanRunsInOrder() throws Exception {
+        Plan plan = new Plan();
+        for (String name : List.of("first", "second", "third")) {
+            plan.addAction(named(name, () -> Thread.sleep(5)));
+        }
+
+        run(plan);
+
+        assertEquals(List.of("first", "second", "third"), ran);
+    }
+
+    @Test
+    void onlyTheFailedStepIsRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        Plan plan = new Plan();
+        Plan.Step flaky = plan.add(named("flaky", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IOException("transient");
+            }
+        }));
+        Plan.Step steady = plan.add(named("steady", () -> { }));
+        plan.add(named("join", () -> { }), flaky, steady);
+
+        run(plan);
+
+        assertEquals(2, attempts.get());
+        assertEquals(1, ran.stream().filter("steady"::equals).count());
+        assertEquals("join", ran.get(ran.size() - 1));
+    }
+
+    @Test
+    void permanentFailureSkipsDependentsButNotIndependentSteps() {
+        Plan plan = new Plan();
+        Plan.Step missing = plan.add(named("missing", () -> {
+            throw new FileNotFoundException("/data/missing");
+        }));
+        plan.add(named("dependent", () -> { }), missing);
+        plan.add(named("independent", () -> Thread.sleep(20)));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> run(plan));
+
+        assertTrue(failure.getCause() instanceof FileNotFoundException, String.valueOf(failure.getCause()));
+        assertEquals(List.of("independent"), ran);
+    }
+
+    @Test
+    void cpuBoundStepsRunOnTheCpuPool() throws Exception {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        Plan plan = new Plan();
+        plan.addAction((uuid, data, metadata) -> threads.add(Thread.currentThread().getName()));
+        plan.addAction(new Action() {
+            @Override
+            public void execute(UUID uuid, byte[] data, Map<String, String> metadata) {
+                threads.add(Thread.currentThread().getName());
+            }
+
+            @Override
+            public boolean isCpuBound() {
+                return true;
+            }
+        });
+
+        run(plan);
+
+        assertEquals(List.of("test-io", "test-cpu"), threads);
+    }
+
+    @Test
+    void dependenciesMustBelongToThePlan() {
+        Plan.Step foreign = new Plan().add(named("foreign", () -> { }));
+
+        assertThrows(IllegalArgumentException.class, () -> new Plan().add(named("step", () -> { }), foreign));
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void run() throws Exception;
+    }
+
+    // Records the step's name once its body has succeeded
+    private Action named(String name, Body body) {
+        return (uuid, data, metadata) -> {
+            try {
+                body.run();
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            ran.add(name);
+        };
+    }
+
+    private void run(Plan plan) throws Exception {
+        executor.executePlan(plan, UUID.randomUUID(), new byte[0], Map.of()).get(10, TimeUnit.SECONDS);
+    }
+}
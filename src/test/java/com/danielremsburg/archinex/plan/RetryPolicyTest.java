@@ -0,0 +1,112 @@
+package com.danielremsburg.archinex.plan;
+
+import com.danielremsburg.archinex.storage.CircuitOpenException;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+
+    @Test
+    void transientFailuresAreRetriedUntilSuccess() throws IOException {
+        RetryPolicy policy = new RetryPolicy(3, 1, 5, new RetryBudget(0.1, 10));
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = policy.call(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IOException("transient");
+            }
+            return "done";
+        });
+
+        assertEquals("done", result);
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void giveUpAfterMaxAttempts() {
+        RetryPolicy policy = new RetryPolicy(3, 1, 5, new RetryBudget(0.1, 10));
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IOException.class, () -> policy.call(() -> {
+            attempts.incrementAndGet();
+            throw new IOException("down");
+        }));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void missingFilesAreNotRetried() {
+        RetryPolicy policy = new RetryPolicy(5, 1, 5, new RetryBudget(0.1, 10));
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(FileNotFoundException.class, () -> policy.call(() -> {
+            attempts.incrementAndGet();
+            throw new FileNotFoundException("/data/missing");
+        }));
+        assertEquals(1, attempts.get());
+        assertEquals(-1, policy.retryDelayMillis(1, new IllegalStateException("bug")));
+    }
+
+    @Test
+    void backoffStaysUnderTheDoublingCeiling() {
+        RetryPolicy policy = new RetryPolicy(10, 10, 50, new RetryBudget(0, 100_000));
+        for (int attempt = 1; attempt < 10; attempt++) {
+            long ceiling = Math.min(50, 10L << (attempt - 1));
+            long longest = 0;
+            for (int i = 0; i < 1_000; i++) {
+                long delay = policy.retryDelayMillis(attempt, new IOException("transient"));
+                assertTrue(delay >= 0 && delay <= ceiling, "attempt " + attempt + " waited " + delay);
+                longest = Math.max(longest, delay);
+            }
+            // Full jitter uses the whole range
+            assertTrue(longest > ceiling / 2, "attempt " + attempt + " never waited past " + longest);
+        }
+    }
+
+    @Test
+    void exhaustedBudgetStopsRetries() {
+        RetryBudget budget = new RetryBudget(0.5, 1);
+        RetryPolicy policy = new RetryPolicy(5, 0, 0, budget);
+
+        assertEquals(0, policy.retryDelayMillis(1, new IOException("transient")));
+        assertEquals(-1, policy.retryDelayMillis(2, new IOException("transient")));
+        assertEquals(1, budget.getExhaustedCount());
+
+        // Two requests earn back one retry
+        policy.recordRequest();
+        policy.recordRequest();
+        assertEquals(0, policy.retryDelayMillis(1, new IOException("transient")));
+    }
+
+    @Test
+    void openCircuitFailsABlockingCallAtOnce() {
+        RetryBudget budget = new RetryBudget(0.1, 10);
+        RetryPolicy policy = new RetryPolicy(5, 1, 5, budget);
+        AtomicInteger attempts = new AtomicInteger();
+
+        long start = System.nanoTime();
+        assertThrows(CircuitOpenException.class, () -> policy.call(() -> {
+            attempts.incrementAndGet();
+            throw new CircuitOpenException("Circuit open for test", 60_000);
+        }));
+        assertEquals(1, attempts.get());
+        assertTrue(System.nanoTime() - start < 5_000_000_000L, "Call waited for the breaker");
+    }
+
+    @Test
+    void planRetryWaitsForTheBreakerAndSpendsBudget() {
+        RetryBudget budget = new RetryBudget(0, 1);
+        RetryPolicy policy = new RetryPolicy(5, 1, 5, budget);
+
+        assertTrue(policy.retryDelayMillis(1, new CircuitOpenException("Circuit open for test", 300)) >= 300);
+        assertEquals(-1, policy.retryDelayMillis(2, new CircuitOpenException("Circuit open for test", 300)));
+        assertEquals(1, budget.getExhaustedCount());
+    }
+}
@@ -0,0 +1,51 @@
+package com.danielremsburg.archinex.plan;
+
+import com.danielremsburg.archinex.metadata.FileMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StoreStrategyTest {
+
+    @Test
+    void recordedLayoutIsReadBack() {
+        FileMetadata metadata = tagged(Map.of(StoreStrategy.STRATEGY_TAG, "multipart", StoreStrategy.PARTS_TAG, "3"));
+
+        assertEquals(StoreStrategy.MULTIPART, StoreStrategy.of(metadata));
+        assertEquals(List.of(StoreStrategy.partId(metadata.getUuid(), 0), StoreStrategy.partId(metadata.getUuid(), 1),
+                StoreStrategy.partId(metadata.getUuid(), 2)), StoreStrategy.storageKeys(metadata));
+    }
+
+    @Test
+    void unknownOrIncompleteLayoutsAreReadAsDirect() {
+        for (Map<String, String> tags : List.of(
+                Map.of(StoreStrategy.STRATEGY_TAG, "striped"),
+                Map.of(StoreStrategy.STRATEGY_TAG, "multipart"),
+                Map.of(StoreStrategy.STRATEGY_TAG, "multipart", StoreStrategy.PARTS_TAG, "many"))) {
+            FileMetadata metadata = tagged(tags);
+            assertEquals(StoreStrategy.DIRECT, StoreStrategy.of(metadata), tags.toString());
+            assertEquals(List.of(metadata.getUuid()), StoreStrategy.storageKeys(metadata), tags.toString());
+        }
+    }
+
+    @Test
+    void userMetadataCannotSetReservedTags() {
+        FileMetadata metadata = new FileMetadata(UUID.randomUUID(), "/data/file", 1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> metadata.setUserMetadata(Map.of(StoreStrategy.STRATEGY_TAG, "compressed")));
+        metadata.setUserMetadata(Map.of("owner", "ops", "contentType", "text/plain"));
+        assertEquals(Map.of("owner", "ops"), metadata.getTags());
+    }
+
+    private static FileMetadata tagged(Map<String, String> tags) {
+        FileMetadata metadata = new FileMetadata(UUID.randomUUID(), "/data/file", 1);
+        metadata.setTags(tags);
+        return metadata;
+    }
+}
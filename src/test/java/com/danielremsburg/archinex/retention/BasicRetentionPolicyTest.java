@@ -0,0 +1,37 @@
+package com.danielremsburg.archinex.retention;
+
+import com.danielremsburg.archinex.cache.MemoryCache;
+import com.danielremsburg.archinex.metadata.FileMetadata;
+import com.danielremsburg.archinex.metadata.MemoryMetadataStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BasicRetentionPolicyTest {
+
+    @Test
+    void cutoffNeverExcludesADueFile() {
+        for (String unit : List.of("days", "weeks", "months", "years")) {
+            BasicRetentionPolicy policy = new BasicRetentionPolicy("test", "test",
+                    List.of(new RetentionRule("age", unit, 1)), new MemoryMetadataStore(), new MemoryCache(1024, 0), null);
+            // Month ends and leap days are where adding and subtracting a calendar unit disagree
+            Instant start = Instant.parse("2024-01-01T12:00:00Z");
+            for (int day = 0; day < 366; day++) {
+                Instant now = start.plus(day, ChronoUnit.DAYS);
+                Instant cutoff = policy.getDeletionCutoff(now);
+                for (int hours = 0; hours < 2 * 366 * 24; hours += 5) {
+                    Instant created = now.minus(hours, ChronoUnit.HOURS);
+                    if (policy.shouldDelete(new FileMetadata(UUID.randomUUID(), "/data/file", 1, created), now)) {
+                        assertTrue(created.isBefore(cutoff),
+                                unit + ": at " + now + " due file created " + created + " is past cutoff " + cutoff);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.danielremsburg.archinex.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 100;
+
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 3, OPEN_MILLIS);
+
+    @Test
+    void opensAfterConsecutiveFailures() throws CircuitOpenException {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.acquire();
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        CircuitOpenException refused = assertThrows(CircuitOpenException.class, breaker::acquire);
+        assertTrue(refused.getRetryAfterMillis() > 0 && refused.getRetryAfterMillis() <= OPEN_MILLIS);
+    }
+
+    @Test
+    void halfOpenTrialSuccessCloses() throws Exception {
+        open();
+        Thread.sleep(OPEN_MILLIS + 20);
+
+        breaker.acquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // Only one trial at a time
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.acquire();
+        breaker.acquire();
+    }
+
+    @Test
+    void halfOpenTrialFailureReopens() throws Exception {
+        open();
+        Thread.sleep(OPEN_MILLIS + 20);
+
+        breaker.acquire();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+    }
+
+    @Test
+    void ignoredTrialLetsTheNextOneThrough() throws Exception {
+        open();
+        Thread.sleep(OPEN_MILLIS + 20);
+
+        breaker.acquire();
+        breaker.onIgnored();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.acquire();
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}